@@ -0,0 +1,254 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This generic class answers a big batch of shortest distance queries over a
+ * GraphSnapshot. The queries are grouped by origin and up to 64 origins share a
+ * single bit-parallel multi-source BFS: every vertex has a long whose bit i
+ * tells if it was already reached from the i-th origin, so one scan of an edge
+ * moves the frontier of all the 64 traversals at the same time.
+ * The levels switch direction as in DirectionOptimizingBFS: when the frontier
+ * is large, every vertex not reached by all the origins ORs the frontier bits
+ * of its neighbors, and stops as soon as it has all the bits it misses.
+ * The batches run in parallel on a fork-join pool and every distance is passed
+ * to the listener as soon as it's known.
+ *
+ * @param <T> key type
+ */
+public class BatchDistance<T> {
+
+    //number of origins that share one traversal, one per bit of a long
+    private static final int BATCH_SIZE = Long.SIZE;
+
+    /**
+     * Receives the distances. It's called from the threads of the pool, so it
+     * has to be thread safe.
+     *
+     * @param <T> key type
+     */
+    public interface Listener<T> {
+
+        /**
+         * Called once for every query.
+         *
+         * @param origin      source vertex
+         * @param destination destination vertex
+         * @param distance    number of edges between them, -1 if there is no path or
+         *                    either of them is not in the graph
+         */
+        public void onDistance(T origin, T destination, int distance);
+    }
+
+    private GraphSnapshot<T> graph;
+    private ForkJoinPool pool;
+
+    /**
+     * initializes the batch job over the given snapshot and the common pool.
+     *
+     * @param graph snapshot to run on
+     */
+    public BatchDistance(GraphSnapshot<T> graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * initializes the batch job over the given snapshot and pool.
+     *
+     * @param graph snapshot to run on
+     * @param pool  pool to run the traversals on
+     */
+    public BatchDistance(GraphSnapshot<T> graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+    }
+
+    /**
+     * Computes the distance of every (origins[i], destinations[i]) pair and
+     * passes them to the listener. It returns after all of them are passed.
+     *
+     * @param origins      source vertices
+     * @param destinations destination vertices, same size as origins
+     * @param listener     receives the distances
+     */
+    public void compute(List<T> origins, List<T> destinations, Listener<T> listener) {
+        if (origins.size() != destinations.size()) {
+            throw new IllegalArgumentException("origins and destinations must have the same size");
+        }
+
+        //grouping the queries by origin, unknown vertices are answered right away
+        Map<Integer, List<Integer>> queriesByOrigin = new LinkedHashMap<>();
+        for (int q = 0; q < origins.size(); q++) {
+            int origin = graph.indexOf(origins.get(q));
+            if (origin == -1 || graph.indexOf(destinations.get(q)) == -1) {
+                listener.onDistance(origins.get(q), destinations.get(q), -1);
+            } else {
+                queriesByOrigin.computeIfAbsent(origin, k -> new ArrayList<>()).add(q);
+            }
+        }
+
+        //every 64 origins make a batch that is traversed together
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        List<Integer> batchOrigins = new ArrayList<>();
+        List<List<Integer>> batchQueries = new ArrayList<>();
+        for (Map.Entry<Integer, List<Integer>> entry : queriesByOrigin.entrySet()) {
+            batchOrigins.add(entry.getKey());
+            batchQueries.add(entry.getValue());
+            if (batchOrigins.size() == BATCH_SIZE) {
+                tasks.add(submit(batchOrigins, batchQueries, origins, destinations, listener));
+                batchOrigins = new ArrayList<>();
+                batchQueries = new ArrayList<>();
+            }
+        }
+        if (!batchOrigins.isEmpty()) {
+            tasks.add(submit(batchOrigins, batchQueries, origins, destinations, listener));
+        }
+
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Submits one batch to the pool.
+     */
+    private ForkJoinTask<?> submit(List<Integer> batchOrigins, List<List<Integer>> batchQueries,
+                                   List<T> origins, List<T> destinations, Listener<T> listener) {
+        //flattening the queries of the batch, bit[k] is the bit of the origin of the k-th query
+        int count = 0;
+        for (List<Integer> queries : batchQueries) {
+            count += queries.size();
+        }
+        int[] sources = new int[batchOrigins.size()];
+        int[] queryIds = new int[count];
+        int[] targets = new int[count];
+        int[] bits = new int[count];
+        int k = 0;
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = batchOrigins.get(i);
+            for (int q : batchQueries.get(i)) {
+                queryIds[k] = q;
+                targets[k] = graph.indexOf(destinations.get(q));
+                bits[k] = i;
+                k++;
+            }
+        }
+
+        return pool.submit(() -> traverse(sources, queryIds, targets, bits, origins, destinations, listener));
+    }
+
+    /**
+     * Runs the multi-source BFS of one batch and reports the distance of every
+     * query as soon as its destination is reached.
+     */
+    private void traverse(int[] sources, int[] queryIds, int[] targets, int[] bits,
+                          List<T> origins, List<T> destinations, Listener<T> listener) {
+        int n = graph.size();
+        int[] offsets = graph.getOffsets();
+        int[] neighbors = graph.getNeighbors();
+
+        //seen[v] bit i: v was reached from sources[i], visit: reached in the last level
+        long[] seen = new long[n];
+        long[] visit = new long[n];
+        long[] visitNext = new long[n];
+        for (int i = 0; i < sources.length; i++) {
+            seen[sources[i]] |= 1L << i;
+            visit[sources[i]] |= 1L << i;
+        }
+
+        //every bit of the batch, a vertex with all of them is reached from every source
+        long all = sources.length == BATCH_SIZE ? -1L : (1L << sources.length) - 1;
+        boolean bottomUp = false;
+
+        boolean[] answered = new boolean[queryIds.length];
+        int remaining = queryIds.length;
+        int level = 0;
+        boolean frontier = true;
+        while (frontier) {
+            //reporting the queries whose destination was reached in this level
+            for (int k = 0; k < queryIds.length; k++) {
+                if (!answered[k] && (seen[targets[k]] & (1L << bits[k])) != 0) {
+                    answered[k] = true;
+                    remaining--;
+                    listener.onDistance(origins.get(queryIds[k]), destinations.get(queryIds[k]), level);
+                }
+            }
+            if (remaining == 0) {
+                return;
+            }
+
+            //picking the direction from the edges of the frontier and of the vertices still missing bits
+            long frontierVertices = 0;
+            long frontierEdges = 0;
+            long unvisitedEdges = 0;
+            for (int v = 0; v < n; v++) {
+                if (visit[v] != 0) {
+                    frontierVertices++;
+                    frontierEdges += offsets[v + 1] - offsets[v];
+                }
+                if (seen[v] != all) {
+                    unvisitedEdges += offsets[v + 1] - offsets[v];
+                }
+            }
+            if (!bottomUp && frontierEdges > unvisitedEdges / DirectionOptimizingBFS.ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierVertices < n / DirectionOptimizingBFS.BETA) {
+                bottomUp = false;
+            }
+
+            //moving every traversal one level further
+            frontier = false;
+            if (bottomUp) {
+                for (int v = 0; v < n; v++) {
+                    long missing = all & ~seen[v];
+                    if (missing == 0) {
+                        continue;
+                    }
+                    long reached = 0;
+                    for (int i = offsets[v]; i < offsets[v + 1] && (reached & missing) != missing; i++) {
+                        reached |= visit[neighbors[i]];
+                    }
+                    reached &= missing;
+                    if (reached != 0) {
+                        visitNext[v] = reached;
+                        seen[v] |= reached;
+                        frontier = true;
+                    }
+                }
+            } else {
+                for (int v = 0; v < n; v++) {
+                    long bitsOfV = visit[v];
+                    if (bitsOfV == 0) {
+                        continue;
+                    }
+                    for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                        int u = neighbors[i];
+                        long reached = bitsOfV & ~seen[u];
+                        if (reached != 0) {
+                            visitNext[u] |= reached;
+                            seen[u] |= reached;
+                            frontier = true;
+                        }
+                    }
+                }
+            }
+
+            long[] tmp = visit;
+            visit = visitNext;
+            visitNext = tmp;
+            Arrays.fill(visitNext, 0);
+            level++;
+        }
+
+        //what is left is not reachable
+        for (int k = 0; k < queryIds.length; k++) {
+            if (!answered[k]) {
+                listener.onDistance(origins.get(queryIds[k]), destinations.get(queryIds[k]), -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This generic class is a read-only copy of a GraphSnapshot with its
+ * adjacency compressed. The sorted neighbors of every vertex are stored as
+ * gaps, as in the WebGraph format: the first neighbor as its zigzag-encoded
+ * difference from the vertex itself, every next one as its difference from the
+ * previous one minus one. Neighbors of a social network are mostly close to
+ * each other once the vertices are numbered well, so the gaps are small, and
+ * every gap is written as a varint: 7 bits per byte, the high bit set if more
+ * bytes follow. Most gaps take one byte instead of the 4 of the CSR.
+ * Decoding a one-byte gap is a load, a test and an add, so a traversal of the
+ * compressed form runs close to the speed of the CSR.
+ *
+ * @param <T> key type
+ */
+public class CompressedGraph<T> {
+
+    //label of every id, same ids as the snapshot
+    private Object[] labels;
+    private Map<T, Integer> index;
+    //start of the row of every vertex in adjacency, has size()+1 entries
+    private int[] offsets;
+    //degree of every vertex followed by its gaps, one row after another
+    private byte[] adjacency;
+    private int edges;
+
+    /**
+     * Compresses a snapshot.
+     *
+     * @param snapshot snapshot to compress
+     */
+    public CompressedGraph(GraphSnapshot<T> snapshot) {
+        int n = snapshot.size();
+        int[] rows = snapshot.getOffsets();
+        int[] neighbors = snapshot.getNeighbors();
+
+        labels = new Object[n];
+        index = new HashMap<>();
+        for (int v = 0; v < n; v++) {
+            labels[v] = snapshot.getLabel(v);
+            index.put(snapshot.getLabel(v), v);
+        }
+
+        offsets = new int[n + 1];
+        byte[] bytes = new byte[Math.max(16, neighbors.length + n)];
+        int size = 0;
+        for (int v = 0; v < n; v++) {
+            offsets[v] = size;
+            //at most 5 bytes for the degree and for every gap
+            int worst = size + 5 * (rows[v + 1] - rows[v] + 1);
+            if (worst > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(worst, bytes.length + (bytes.length >> 1)));
+            }
+
+            size = write(bytes, size, rows[v + 1] - rows[v]);
+            int previous = v;
+            for (int i = rows[v]; i < rows[v + 1]; i++) {
+                int gap = i == rows[v] ? zigzag(neighbors[i] - v) : neighbors[i] - previous - 1;
+                size = write(bytes, size, gap);
+                previous = neighbors[i];
+            }
+        }
+        offsets[n] = size;
+        adjacency = Arrays.copyOf(bytes, size);
+        edges = snapshot.getNumberOfEdges();
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return number of vertices
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Returns the number of edges, as in the snapshot.
+     *
+     * @return number of edges
+     */
+    public int getNumberOfEdges() {
+        return edges;
+    }
+
+    /**
+     * Returns the id of a label.
+     *
+     * @param label label
+     * @return id, -1 if the label is not in the graph
+     */
+    public int indexOf(T label) {
+        Integer id = index.get(label);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the label of an id.
+     *
+     * @param id id
+     * @return label
+     */
+    @SuppressWarnings("unchecked")
+    public T getLabel(int id) {
+        return (T) labels[id];
+    }
+
+    /**
+     * Returns the number of neighbors of a vertex.
+     *
+     * @param id id
+     * @return degree
+     */
+    public int degree(int id) {
+        return read(offsets[id]);
+    }
+
+    /**
+     * Decodes the neighbors of a vertex, in increasing order.
+     *
+     * @param id     id
+     * @param buffer receives the neighbors, at least degree(id) long
+     * @return number of neighbors
+     */
+    public int getNeighbors(int id, int[] buffer) {
+        int position = offsets[id];
+        int degree = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = adjacency[position++];
+            degree |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        int previous = id;
+        for (int i = 0; i < degree; i++) {
+            int gap = adjacency[position++];
+            if (gap < 0) {
+                //more than one byte
+                gap &= 0x7F;
+                shift = 7;
+                do {
+                    b = adjacency[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+            }
+            previous = i == 0 ? id + unzigzag(gap) : previous + gap + 1;
+            buffer[i] = previous;
+        }
+        return degree;
+    }
+
+    /**
+     * Returns the number of edges from an origin to every vertex, by a breadth
+     * first traversal of the compressed form.
+     *
+     * @param origin id to start from
+     * @return distance of every id, -1 if it's not reachable
+     */
+    public int[] getDistances(int origin) {
+        int[] distances = new int[size()];
+        Arrays.fill(distances, -1);
+        int[] queue = new int[size()];
+        int head = 0;
+        int tail = 0;
+        long scannedEdges = 0;
+
+        distances[origin] = 0;
+        queue[tail++] = origin;
+        while (head < tail) {
+            int u = queue[head++];
+            int next = distances[u] + 1;
+            //decoding in place, without copying the neighbors to a buffer
+            int position = offsets[u];
+            int end = offsets[u + 1];
+            int degree = adjacency[position++];
+            if (degree < 0) {
+                degree = read(position - 1);
+                while (adjacency[position++] < 0) {
+                    //skipping the rest of the degree
+                }
+            }
+            scannedEdges += degree;
+            int v = u;
+            boolean first = true;
+            while (position < end) {
+                int gap = adjacency[position++];
+                if (gap < 0) {
+                    gap &= 0x7F;
+                    int shift = 7;
+                    byte b;
+                    do {
+                        b = adjacency[position++];
+                        gap |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                }
+                if (first) {
+                    v = u + unzigzag(gap);
+                    first = false;
+                } else {
+                    v += gap + 1;
+                }
+                if (distances[v] == -1) {
+                    distances[v] = next;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        Metrics.scanned(tail, scannedEdges);
+        return distances;
+    }
+
+    /**
+     * Returns the number of bytes of the compressed adjacency and its offsets.
+     *
+     * @return bytes used
+     */
+    public long getBytesUsed() {
+        return adjacency.length + 4L * offsets.length;
+    }
+
+    /**
+     * Returns the average number of bits per neighbor of the compressed
+     * adjacency, the CSR uses 32.
+     *
+     * @return bits per neighbor
+     */
+    public double getBitsPerNeighbor() {
+        long neighbors = 0;
+        for (int v = 0; v < size(); v++) {
+            neighbors += degree(v);
+        }
+        return neighbors == 0 ? 0 : 8.0 * adjacency.length / neighbors;
+    }
+
+    /**
+     * Writes a non-negative int as a varint, returns the position after it.
+     */
+    private static int write(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Reads the varint at a position.
+     */
+    private int read(int position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = adjacency[position++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Maps a signed int to a non-negative one, small magnitudes to small values.
+     */
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
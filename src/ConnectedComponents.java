@@ -0,0 +1,201 @@
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * This generic class keeps track of the connected components of a graph while
+ * the graph is being mutated. It is a union-find (disjoint set) structure with
+ * union by size and path halving, so connected() answers in O(a(n)) amortized.
+ * Adding an edge merges the two components right away. Removing an edge or a
+ * vertex may split a component, which a union-find can not undo, so it only
+ * marks the structure stale and the next query rebuilds it from the graph.
+ * This way a burst of deletions costs a single rebuild.
+ *
+ * @param <T> key type
+ */
+public class ConnectedComponents<T> {
+
+    //the graph the components are computed from, used while rebuilding
+    private GraphInterface<T> graph;
+    //parent of every element, a root is its own parent
+    private Map<T, T> parent;
+    //number of elements in the component, only valid for roots
+    private Map<T, Integer> size;
+    //true if a deletion happened after the last rebuild
+    private boolean stale;
+
+    /**
+     * initializes the structure with the current components of the given graph.
+     *
+     * @param graph graph to track
+     */
+    public ConnectedComponents(GraphInterface<T> graph) {
+        this.graph = graph;
+        parent = new HashMap<>();
+        size = new HashMap<>();
+        rebuild();
+    }
+
+    /**
+     * Adds a new element as a component of its own. If it's already tracked
+     * nothing happens.
+     *
+     * @param label vertexLabel
+     */
+    public void add(T label) {
+        if (!stale && !parent.containsKey(label)) {
+            parent.put(label, label);
+            size.put(label, 1);
+        }
+    }
+
+    /**
+     * Removes an element. A singleton component can be dropped right away,
+     * otherwise the component may split, and we'll rebuild lazily.
+     *
+     * @param label vertexLabel
+     */
+    public void remove(T label) {
+        if (stale || !parent.containsKey(label)) {
+            return;
+        }
+
+        if (parent.get(label).equals(label) && size.get(label) == 1) {
+            parent.remove(label);
+            size.remove(label);
+        } else {
+            stale = true;
+        }
+    }
+
+    /**
+     * Merges the components of two elements, it has to be called after an edge
+     * is added between them.
+     *
+     * @param a a vertexLabel
+     * @param b another vertexLabel
+     */
+    public void union(T a, T b) {
+        if (!stale) {
+            link(a, b);
+        }
+    }
+
+    /**
+     * Marks the structure stale, it has to be called after an edge is removed.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Returns true if both elements are tracked and there is a path between
+     * them, false otherwise.
+     *
+     * @param a a vertexLabel
+     * @param b another vertexLabel
+     * @return true if they are in the same component, false otherwise.
+     */
+    public boolean connected(T a, T b) {
+        if (stale) {
+            rebuild();
+        }
+
+        if (!parent.containsKey(a) || !parent.containsKey(b)) {
+            return false;
+        }
+        return find(a).equals(find(b));
+    }
+
+    /**
+     * Returns the number of elements in the component of the given element, 0
+     * if it's not tracked.
+     *
+     * @param label vertexLabel
+     * @return size of the component
+     */
+    public int componentSize(T label) {
+        if (stale) {
+            rebuild();
+        }
+
+        if (!parent.containsKey(label)) {
+            return 0;
+        }
+        return size.get(find(label));
+    }
+
+    /**
+     * Returns the estimated number of bytes of the two maps, see
+     * MemoryFootprint.
+     *
+     * @return bytes used
+     */
+    public long getBytesUsed() {
+        return MemoryFootprint.hashMapSize(parent.size()) + MemoryFootprint.hashMapSize(size.size())
+                + MemoryFootprint.boxedSize(size.size());
+    }
+
+    /**
+     * Recomputes every component from the graph in O(V + E).
+     */
+    private void rebuild() {
+        parent.clear();
+        size.clear();
+
+        //first every vertex is a component of its own
+        for (VertexInterface<T> vertex : graph.getVertices()) {
+            parent.put(vertex.getLabel(), vertex.getLabel());
+            size.put(vertex.getLabel(), 1);
+        }
+
+        //then every edge merges two components
+        for (VertexInterface<T> vertex : graph.getVertices()) {
+            Iterator<VertexInterface<T>> iterator = vertex.getNeighborIterator();
+            while (iterator.hasNext()) {
+                link(vertex.getLabel(), iterator.next().getLabel());
+            }
+        }
+
+        stale = false;
+    }
+
+    /**
+     * Merges two components, the smaller one is hung below the bigger one.
+     */
+    private void link(T a, T b) {
+        T rootA = find(a);
+        T rootB = find(b);
+        if (rootA.equals(rootB)) {
+            return;
+        }
+
+        int sizeA = size.get(rootA);
+        int sizeB = size.get(rootB);
+        if (sizeA < sizeB) {
+            T tmp = rootA;
+            rootA = rootB;
+            rootB = tmp;
+        }
+
+        parent.put(rootB, rootA);
+        size.put(rootA, sizeA + sizeB);
+        size.remove(rootB);
+    }
+
+    /**
+     * Finds the root of an element, every visited element is pointed to its
+     * grandparent on the way (path halving).
+     */
+    private T find(T label) {
+        T current = label;
+        T next = parent.get(current);
+        while (!next.equals(current)) {
+            T grandParent = parent.get(next);
+            parent.put(current, grandParent);
+            current = grandParent;
+            next = parent.get(current);
+        }
+        return current;
+    }
+}
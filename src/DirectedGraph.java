@@ -0,0 +1,777 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Stack;
+
+/**
+ * This generic class implements the GraphInterface with a directed graph: an
+ * edge from begin to end doesn't connect end to begin. Vertices are numbered,
+ * and every vertex has two int arrays, the ends of its outgoing edges and the
+ * beginnings of its incoming edges, so both "who does it follow" and "who
+ * follows it" are read without a scan of the graph, and both counts are kept
+ * in O(1). The arrays keep the order the edges were added in. Every entry
+ * also keeps the position of its mirror entry in the array of the other end,
+ * so an edge found on either side is removed from both in O(1) amortized: it
+ * leaves a hole in each array, and an array that is more than half holes is
+ * compacted, in order, updating the positions its mirrors keep. A vertex
+ * with millions of incoming edges costs 8 bytes per edge, and up to twice as
+ * much right before a compaction.
+ * hasEdge and removeEdge scan the shorter of the two arrays involved, and
+ * removeVertex is O(1) amortized per edge. Edge weights are not stored, they are all 0.
+ * The neighbors of a VertexInterface of this graph are the ends of its
+ * outgoing edges, and the traversals of GraphInterface follow the outgoing
+ * edges, the overloads taking a Direction can go the other way.
+ *
+ * @param <T> key type
+ */
+public class DirectedGraph<T> implements GraphInterface<T> {
+
+    /**
+     * Which edges a traversal follows.
+     */
+    public enum Direction {
+        //from the beginning of an edge to its end
+        OUT,
+        //from the end of an edge to its beginning
+        IN
+    }
+
+    /**
+     * The VertexInterface of a numbered vertex. It holds the traversal state,
+     * the edges are in the arrays of the graph.
+     */
+    private class View implements VertexInterface<T> {
+
+        private final int index;
+        private boolean visited;
+        private VertexInterface<T> predecessor;
+        private double cost;
+
+        private View(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public T getLabel() {
+            return labels.get(index);
+        }
+
+        @Override
+        public int getNumberOfNeighbors() {
+            return outSize[index] - outHoles[index];
+        }
+
+        @Override
+        public void visit() {
+            visited = true;
+        }
+
+        @Override
+        public void unvisit() {
+            visited = false;
+        }
+
+        @Override
+        public boolean isVisited() {
+            return visited;
+        }
+
+        @Override
+        public boolean connect(VertexInterface<T> endVertex, double edgeWeight) {
+            return addEdge(getLabel(), endVertex.getLabel());
+        }
+
+        @Override
+        public boolean connect(VertexInterface<T> endVertex) {
+            return addEdge(getLabel(), endVertex.getLabel());
+        }
+
+        @Override
+        public boolean disconnect(VertexInterface<T> endVertex, double edgeWeight) {
+            return removeEdge(getLabel(), endVertex.getLabel());
+        }
+
+        @Override
+        public boolean disconnect(VertexInterface<T> endVertex) {
+            return removeEdge(getLabel(), endVertex.getLabel());
+        }
+
+        @Override
+        public boolean isNeighbor(VertexInterface<T> vertex) {
+            return vertex != null && hasEdge(getLabel(), vertex.getLabel());
+        }
+
+        @Override
+        public List<VertexInterface<T>> getCommonNeighbors(VertexInterface<T> vertex) {
+            List<VertexInterface<T>> common = new ArrayList<>();
+            for (int i = 0; i < outSize[index]; i++) {
+                if (out[index][i] == HOLE) {
+                    continue;
+                }
+                VertexInterface<T> next = views.get(out[index][i]);
+                if (vertex.isNeighbor(next)) {
+                    common.add(next);
+                }
+            }
+            return common;
+        }
+
+        @Override
+        public int getNumberOfCommonNeighbors(VertexInterface<T> vertex) {
+            return getCommonNeighbors(vertex).size();
+        }
+
+        @Override
+        public Iterator<VertexInterface<T>> getNeighborIterator() {
+            return new Iterator<VertexInterface<T>>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    while (next < outSize[index] && out[index][next] == HOLE) {
+                        next++;
+                    }
+                    return next < outSize[index];
+                }
+
+                @Override
+                public VertexInterface<T> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return views.get(out[index][next++]);
+                }
+            };
+        }
+
+        @Override
+        public Iterator<Double> getWeightIterator() {
+            List<Double> weights = new ArrayList<>();
+            for (int i = 0; i < getNumberOfNeighbors(); i++) {
+                weights.add(0.0);
+            }
+            return weights.iterator();
+        }
+
+        @Override
+        public VertexInterface<T> getNeighbor(int i) {
+            int k = slotOf(out[index], outSize[index], outHoles[index], i);
+            if (k >= outSize[index]) {
+                throw new IndexOutOfBoundsException(String.valueOf(i));
+            }
+            return views.get(out[index][k]);
+        }
+
+        @Override
+        public double getWeight(int i) {
+            return 0;
+        }
+
+        @Override
+        public boolean hasNeighbor() {
+            return getNumberOfNeighbors() > 0;
+        }
+
+        @Override
+        public VertexInterface<T> getUnvisitedNeighbor() {
+            for (int i = 0; i < outSize[index]; i++) {
+                if (out[index][i] != HOLE && !views.get(out[index][i]).visited) {
+                    return views.get(out[index][i]);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void setPredecessor(VertexInterface<T> predecessor) {
+            this.predecessor = predecessor;
+        }
+
+        @Override
+        public VertexInterface<T> getPredecessor() {
+            return predecessor;
+        }
+
+        @Override
+        public boolean hasPredecessor() {
+            return predecessor != null;
+        }
+
+        @Override
+        public void setCost(double newCost) {
+            cost = newCost;
+        }
+
+        @Override
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    private static final int[] NO_EDGES = new int[0];
+    //entry of a removed edge
+    private static final int HOLE = -1;
+
+    //number of every vertex, and the label and the view of every number in use
+    private Map<T, Integer> index;
+    private List<T> labels;
+    private List<View> views;
+    //numbers of removed vertices, reused by the next ones
+    private int[] free;
+    private int freeCount;
+    //ends of the outgoing and beginnings of the incoming edges of every vertex, in the order they were
+    //added, the entries in use and how many of them are holes
+    private int[][] out;
+    private int[] outSize;
+    private int[] outHoles;
+    private int[][] in;
+    private int[] inSize;
+    private int[] inHoles;
+    //position of the mirror of every entry: u is at in[out[u][k]][outPos[u][k]], v at out[in[v][j]][inPos[v][j]]
+    private int[][] outPos;
+    private int[][] inPos;
+    private int edgeCount;
+    //traversal state reused by every traversal: a vertex is reached if its stamp is the current one
+    private int[] stamps;
+    private int[] parents;
+    private int stamp;
+
+    /**
+     * initializes the graph with an empty graph structure.
+     */
+    public DirectedGraph() {
+        clear();
+    }
+
+    @Override
+    public boolean addVertex(T vertexLabel) {
+        if (vertexLabel == null || index.containsKey(vertexLabel)) {
+            return false;
+        }
+
+        int v;
+        if (freeCount > 0) {
+            v = free[--freeCount];
+            labels.set(v, vertexLabel);
+            views.set(v, new View(v));
+        } else {
+            v = labels.size();
+            labels.add(vertexLabel);
+            views.add(new View(v));
+            if (v == out.length) {
+                int capacity = Math.max(16, v * 2);
+                out = Arrays.copyOf(out, capacity);
+                outSize = Arrays.copyOf(outSize, capacity);
+                outHoles = Arrays.copyOf(outHoles, capacity);
+                in = Arrays.copyOf(in, capacity);
+                inSize = Arrays.copyOf(inSize, capacity);
+                inHoles = Arrays.copyOf(inHoles, capacity);
+                outPos = Arrays.copyOf(outPos, capacity);
+                inPos = Arrays.copyOf(inPos, capacity);
+            }
+        }
+        index.put(vertexLabel, v);
+        out[v] = NO_EDGES;
+        in[v] = NO_EDGES;
+        outPos[v] = NO_EDGES;
+        inPos[v] = NO_EDGES;
+        return true;
+    }
+
+    @Override
+    public VertexInterface<T> removeVertex(T vertexLabel) {
+        Integer v = index.remove(vertexLabel);
+        if (v == null) {
+            return null;
+        }
+
+        //every edge of the vertex, only the mirrors need removing, its own rows are dropped
+        edgeCount -= outSize[v] - outHoles[v] + inSize[v] - inHoles[v];
+        for (int k = 0; k < outSize[v]; k++) {
+            if (out[v][k] != HOLE) {
+                removeIn(out[v][k], outPos[v][k]);
+            }
+        }
+        for (int j = 0; j < inSize[v]; j++) {
+            if (in[v][j] != HOLE) {
+                removeOut(in[v][j], inPos[v][j]);
+            }
+        }
+
+        out[v] = null;
+        in[v] = null;
+        outPos[v] = null;
+        inPos[v] = null;
+        outSize[v] = 0;
+        outHoles[v] = 0;
+        inSize[v] = 0;
+        inHoles[v] = 0;
+        views.set(v, null);
+        labels.set(v, null);
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, Math.max(16, freeCount * 2));
+        }
+        free[freeCount++] = v;
+        return new Vertex<>(vertexLabel);
+    }
+
+    @Override
+    public boolean addEdge(T begin, T end, double edgeWeight) {
+        return addEdge(begin, end);
+    }
+
+    @Override
+    public boolean addEdge(T begin, T end) {
+        Integer u = index.get(begin);
+        Integer v = index.get(end);
+        if (u == null || v == null || u.equals(v) || isConnected(u, v)) {
+            return false;
+        }
+
+        if (outSize[u] == out[u].length) {
+            out[u] = Arrays.copyOf(out[u], Math.max(4, outSize[u] * 2));
+            outPos[u] = Arrays.copyOf(outPos[u], out[u].length);
+        }
+        if (inSize[v] == in[v].length) {
+            in[v] = Arrays.copyOf(in[v], Math.max(4, inSize[v] * 2));
+            inPos[v] = Arrays.copyOf(inPos[v], in[v].length);
+        }
+        int k = outSize[u]++;
+        int j = inSize[v]++;
+        out[u][k] = v;
+        outPos[u][k] = j;
+        in[v][j] = u;
+        inPos[v][j] = k;
+        edgeCount++;
+        return true;
+    }
+
+    @Override
+    public boolean removeEdge(T begin, T end, double edgeWeight) {
+        return removeEdge(begin, end);
+    }
+
+    @Override
+    public boolean removeEdge(T begin, T end) {
+        Integer u = index.get(begin);
+        Integer v = index.get(end);
+        if (u == null || v == null) {
+            return false;
+        }
+        int k = positionOf(u, v);
+        if (k < 0) {
+            return false;
+        }
+
+        removeEdgeAt(u, k);
+        edgeCount--;
+        return true;
+    }
+
+    @Override
+    public boolean hasEdge(T begin, T end) {
+        Integer u = index.get(begin);
+        Integer v = index.get(end);
+        return u != null && v != null && isConnected(u, v);
+    }
+
+    @Override
+    public int getNumberOfVertices() {
+        return index.size();
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return edgeCount;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    @Override
+    public VertexInterface<T> getVertex(T vertexLabel) {
+        Integer v = index.get(vertexLabel);
+        return v == null ? null : views.get(v);
+    }
+
+    @Override
+    public List<VertexInterface<T>> getVertices() {
+        List<VertexInterface<T>> result = new ArrayList<>(index.size());
+        for (int v : index.values()) {
+            result.add(views.get(v));
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        index = new HashMap<>();
+        labels = new ArrayList<>();
+        views = new ArrayList<>();
+        free = new int[0];
+        freeCount = 0;
+        out = new int[0][];
+        outSize = new int[0];
+        outHoles = new int[0];
+        in = new int[0][];
+        inSize = new int[0];
+        inHoles = new int[0];
+        outPos = new int[0][];
+        inPos = new int[0][];
+        edgeCount = 0;
+        stamps = new int[0];
+        parents = new int[0];
+        stamp = 0;
+    }
+
+    /**
+     * Returns the estimated number of bytes of the graph, see
+     * MemoryFootprint.
+     *
+     * @return bytes used
+     */
+    public long getBytesUsed() {
+        long bytes = MemoryFootprint.hashMapSize(index.size()) + MemoryFootprint.boxedSize(index.size())
+                + MemoryFootprint.arrayListSize(labels.size()) + MemoryFootprint.arrayListSize(views.size())
+                + views.size() * MemoryFootprint.shallowSize(View.class)
+                + MemoryFootprint.arraySize(free.length, 4)
+                + MemoryFootprint.arraySize(out.length, MemoryFootprint.REFERENCE)
+                + MemoryFootprint.arraySize(in.length, MemoryFootprint.REFERENCE)
+                + MemoryFootprint.arraySize(outPos.length, MemoryFootprint.REFERENCE)
+                + MemoryFootprint.arraySize(inPos.length, MemoryFootprint.REFERENCE)
+                + MemoryFootprint.arraySize(outSize.length, 4) + MemoryFootprint.arraySize(inSize.length, 4)
+                + MemoryFootprint.arraySize(outHoles.length, 4) + MemoryFootprint.arraySize(inHoles.length, 4)
+                + MemoryFootprint.arraySize(stamps.length, 4) + MemoryFootprint.arraySize(parents.length, 4);
+        //the empty rows all share NO_EDGES, the positions have the length of their row
+        for (int v = 0; v < labels.size(); v++) {
+            if (out[v] != null && out[v] != NO_EDGES) {
+                bytes += 2 * MemoryFootprint.arraySize(out[v].length, 4);
+            }
+            if (in[v] != null && in[v] != NO_EDGES) {
+                bytes += 2 * MemoryFootprint.arraySize(in[v].length, 4);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the number of outgoing edges of a vertex, in O(1).
+     *
+     * @param vertexLabel vertex
+     * @return number of edges beginning at the vertex, 0 if it's not in the graph
+     */
+    public int getOutDegree(T vertexLabel) {
+        Integer v = index.get(vertexLabel);
+        return v == null ? 0 : outSize[v] - outHoles[v];
+    }
+
+    /**
+     * Returns the number of incoming edges of a vertex, in O(1).
+     *
+     * @param vertexLabel vertex
+     * @return number of edges ending at the vertex, 0 if it's not in the graph
+     */
+    public int getInDegree(T vertexLabel) {
+        Integer v = index.get(vertexLabel);
+        return v == null ? 0 : inSize[v] - inHoles[v];
+    }
+
+    /**
+     * Returns the vertices at the other side of the edges of a vertex in one
+     * direction, in the order the edges were added. The offset counts the
+     * edges there are now, so an edge removed before it moves the next ones
+     * up by one. Skipping is O(1) when the row has no holes, O(offset)
+     * otherwise.
+     *
+     * @param vertexLabel vertex
+     * @param direction   OUT for the ends of the outgoing edges, IN for the
+     *                    beginnings of the incoming ones
+     * @param offset      number of vertices to skip
+     * @param limit       maximum number of vertices
+     * @return vertices, null if the vertex is not in the graph
+     */
+    public List<T> getNeighbors(T vertexLabel, Direction direction, int offset, int limit) {
+        Integer v = index.get(vertexLabel);
+        if (v == null) {
+            return null;
+        }
+
+        int[] ends = direction == Direction.OUT ? out[v] : in[v];
+        int size = direction == Direction.OUT ? outSize[v] : inSize[v];
+        int holes = direction == Direction.OUT ? outHoles[v] : inHoles[v];
+        List<T> result = new ArrayList<>();
+        for (int i = slotOf(ends, size, holes, offset); i < size && result.size() < limit; i++) {
+            if (ends[i] != HOLE) {
+                result.add(labels.get(ends[i]));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Queue<T> getBreadthFirstTraversal(T origin) {
+        return getBreadthFirstTraversal(origin, Direction.OUT, new TraversalBudget());
+    }
+
+    @Override
+    public Queue<T> getBreadthFirstTraversal(T origin, TraversalBudget budget) {
+        return getBreadthFirstTraversal(origin, Direction.OUT, budget);
+    }
+
+    /**
+     * Returns the vertices in breadth first order from the origin, following the
+     * edges in the given direction.
+     *
+     * @param origin    source vertex
+     * @param direction direction of the edges to follow
+     * @param budget    limits of the traversal
+     * @return vertices in the order they were reached
+     */
+    public Queue<T> getBreadthFirstTraversal(T origin, Direction direction, TraversalBudget budget) {
+        Queue<T> result = new LinkedList<>();
+        Integer start = index.get(origin);
+        if (start == null) {
+            return result;
+        }
+
+        int[][] edges = direction == Direction.OUT ? out : in;
+        int[] sizes = direction == Direction.OUT ? outSize : inSize;
+        beginTraversal();
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        long scannedEdges = 0;
+
+        queue[tail++] = start;
+        stamps[start] = stamp;
+        while (head < tail && budget.chargeVertex()) {
+            int u = queue[head++];
+            result.add(labels.get(u));
+            for (int i = 0; i < sizes[u]; i++) {
+                int v = edges[u][i];
+                if (v == HOLE) {
+                    continue;
+                }
+                if (!budget.chargeEdge()) {
+                    break;
+                }
+                scannedEdges++;
+                if (stamps[v] != stamp) {
+                    stamps[v] = stamp;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = v;
+                }
+            }
+        }
+        Metrics.scanned(result.size(), scannedEdges);
+        return result;
+    }
+
+    @Override
+    public int getShortestPath(T origin, T destination, Stack<T> path) {
+        return getShortestPath(origin, destination, path, Direction.OUT, new TraversalBudget());
+    }
+
+    @Override
+    public int getShortestPath(T origin, T destination, Stack<T> path, TraversalBudget budget) {
+        return getShortestPath(origin, destination, path, Direction.OUT, budget);
+    }
+
+    /**
+     * Finds the shortest path from the origin to the destination, following the
+     * edges in the given direction. The path is pushed on the stack from the
+     * destination to the origin, so the origin is on top.
+     *
+     * @param origin      source vertex
+     * @param destination destination vertex
+     * @param path        receives the path
+     * @param direction   direction of the edges to follow
+     * @param budget      limits of the traversal
+     * @return number of edges on the path, Integer.MAX_VALUE if there is none,
+     * TraversalBudget.UNKNOWN_DISTANCE if the budget ran out first.
+     */
+    public int getShortestPath(T origin, T destination, Stack<T> path, Direction direction, TraversalBudget budget) {
+        Integer start = index.get(origin);
+        Integer target = index.get(destination);
+        if (start == null || target == null) {
+            return Integer.MAX_VALUE;
+        }
+
+        int[][] edges = direction == Direction.OUT ? out : in;
+        int[] sizes = direction == Direction.OUT ? outSize : inSize;
+        beginTraversal();
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        long scannedEdges = 0;
+
+        queue[tail++] = start;
+        stamps[start] = stamp;
+        parents[start] = start;
+        while (head < tail && stamps[target] != stamp && budget.chargeVertex()) {
+            int u = queue[head++];
+            for (int i = 0; i < sizes[u]; i++) {
+                int v = edges[u][i];
+                if (v == HOLE) {
+                    continue;
+                }
+                if (!budget.chargeEdge()) {
+                    break;
+                }
+                scannedEdges++;
+                if (stamps[v] != stamp) {
+                    stamps[v] = stamp;
+                    parents[v] = u;
+                    if (tail == queue.length) {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = v;
+                }
+            }
+        }
+        Metrics.scanned(head, scannedEdges);
+
+        if (stamps[target] == stamp) {
+            int distance = 0;
+            for (int v = target; v != start; v = parents[v]) {
+                path.push(labels.get(v));
+                distance++;
+            }
+            path.push(origin);
+            return distance;
+        }
+        return budget.isExhausted() ? TraversalBudget.UNKNOWN_DISTANCE : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Starts a traversal: moves to a new stamp, so no vertex is reached yet,
+     * without clearing the arrays.
+     */
+    private void beginTraversal() {
+        if (stamps.length < labels.size()) {
+            stamps = Arrays.copyOf(stamps, out.length);
+            parents = Arrays.copyOf(parents, out.length);
+        }
+        stamp++;
+        if (stamp == 0) {
+            //after 2^32 traversals the old stamps come back
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Returns true if there is an edge from u to v, scanning the shorter array.
+     */
+    private boolean isConnected(int u, int v) {
+        return positionOf(u, v) >= 0;
+    }
+
+    /**
+     * Returns the position of v in the outgoing edges of u, -1 if there is no
+     * edge, scanning the shorter array.
+     */
+    private int positionOf(int u, int v) {
+        if (outSize[u] <= inSize[v]) {
+            return indexOf(out[u], outSize[u], v);
+        }
+        int j = indexOf(in[v], inSize[v], u);
+        return j < 0 ? -1 : inPos[v][j];
+    }
+
+    /**
+     * Removes the k-th outgoing edge of u from both its arrays, in O(1)
+     * amortized. The edge count is left to the caller.
+     */
+    private void removeEdgeAt(int u, int k) {
+        removeIn(out[u][k], outPos[u][k]);
+        removeOut(u, k);
+    }
+
+    /**
+     * Turns the k-th outgoing entry of u into a hole, and compacts the row if
+     * it's more than half holes. The mirror entry is left to the caller.
+     */
+    private void removeOut(int u, int k) {
+        out[u][k] = HOLE;
+        if (2 * ++outHoles[u] <= outSize[u]) {
+            return;
+        }
+        int size = 0;
+        for (int i = 0; i < outSize[u]; i++) {
+            int v = out[u][i];
+            if (v != HOLE) {
+                int j = outPos[u][i];
+                out[u][size] = v;
+                outPos[u][size] = j;
+                inPos[v][j] = size++;
+            }
+        }
+        outSize[u] = size;
+        outHoles[u] = 0;
+    }
+
+    /**
+     * Turns the j-th incoming entry of v into a hole, and compacts the row if
+     * it's more than half holes. The mirror entry is left to the caller.
+     */
+    private void removeIn(int v, int j) {
+        in[v][j] = HOLE;
+        if (2 * ++inHoles[v] <= inSize[v]) {
+            return;
+        }
+        int size = 0;
+        for (int i = 0; i < inSize[v]; i++) {
+            int u = in[v][i];
+            if (u != HOLE) {
+                int k = inPos[v][i];
+                in[v][size] = u;
+                inPos[v][size] = k;
+                outPos[u][k] = size++;
+            }
+        }
+        inSize[v] = size;
+        inHoles[v] = 0;
+    }
+
+    /**
+     * Returns the slot of the entry that has skip entries before it in a row,
+     * size if there are fewer entries. Without holes it's skip itself.
+     */
+    private static int slotOf(int[] row, int size, int holes, int skip) {
+        if (holes == 0) {
+            return Math.min(skip, size);
+        }
+        int i = 0;
+        for (; i < size; i++) {
+            if (row[i] != HOLE && skip-- == 0) {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Returns the position of a value in the first size elements of an array,
+     * -1 if it's not there.
+     */
+    private static int indexOf(int[] array, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
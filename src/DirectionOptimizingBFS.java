@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This generic class runs breadth first searches over a GraphSnapshot in
+ * parallel, switching direction level by level as in Beamer's
+ * direction-optimizing BFS. A top-down level scans the edges of the frontier
+ * and claims the unvisited ends. On a small-world graph the middle levels
+ * hold most of the vertices, and then nearly every edge of the frontier leads
+ * to a vertex that is already visited. So once the frontier has more edges
+ * than the unvisited vertices divided by ALPHA, the levels go bottom-up: every
+ * unvisited vertex looks for a neighbor in a bitmap of the frontier and stops
+ * at the first one, which skips most of the edges. When the frontier shrinks
+ * below size()/BETA vertices the search goes back to top-down.
+ * Both kinds of level are split into slices run on a fork-join pool, small
+ * levels run on the calling thread. The vertices of a level are listed by
+ * increasing id.
+ *
+ * @param <T> key type
+ */
+public class DirectionOptimizingBFS<T> {
+
+    //top-down -> bottom-up when the frontier has more than 1/ALPHA of the unvisited edges
+    static final int ALPHA = 14;
+    //bottom-up -> top-down when the frontier has less than 1/BETA of the vertices
+    static final int BETA = 24;
+    //vertices a slice scans at least, smaller levels are not split
+    private static final int GRAIN = 4096;
+
+    private GraphSnapshot<T> graph;
+    private ForkJoinPool pool;
+    private int[] offsets;
+    private int[] neighbors;
+
+    /**
+     * The result of a search.
+     */
+    private static class Search {
+        //distance of every id, -1 if not reached
+        private AtomicIntegerArray distances;
+        //reached ids level by level
+        private int[] order;
+        private int reached;
+    }
+
+    /**
+     * Vertices found by one slice of a level.
+     */
+    private static class Slice {
+        private int[] found = new int[16];
+        private int count;
+        private long edges;
+
+        private void add(int v) {
+            if (count == found.length) {
+                found = Arrays.copyOf(found, count * 2);
+            }
+            found[count++] = v;
+        }
+    }
+
+    /**
+     * initializes the search over the given snapshot and the common pool.
+     *
+     * @param graph snapshot to search
+     */
+    public DirectionOptimizingBFS(GraphSnapshot<T> graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * initializes the search over the given snapshot and pool.
+     *
+     * @param graph snapshot to search
+     * @param pool  pool to run the levels on
+     */
+    public DirectionOptimizingBFS(GraphSnapshot<T> graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        offsets = graph.getOffsets();
+        neighbors = graph.getNeighbors();
+    }
+
+    /**
+     * Returns the vertices reachable from origin, level by level, the origin
+     * first. Within a level they are ordered by id.
+     *
+     * @param origin source vertex
+     * @param budget only its cancellation is checked, once per level
+     * @return reachable vertices, empty if origin is not in the snapshot
+     */
+    public List<T> getBreadthFirstTraversal(T origin, TraversalBudget budget) {
+        List<T> result = new ArrayList<>();
+        int id = graph.indexOf(origin);
+        if (id != -1) {
+            Search search = search(id, -1, budget);
+            for (int i = 0; i < search.reached; i++) {
+                result.add(graph.getLabel(search.order[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of edges between two vertices. The search stops at
+     * the level of the destination.
+     *
+     * @param origin      source vertex
+     * @param destination destination vertex
+     * @param budget      only its cancellation is checked, once per level
+     * @return distance, -1 if there is no path or either of them is not in the
+     * snapshot, TraversalBudget.UNKNOWN_DISTANCE if the budget ran out
+     */
+    public int getDistance(T origin, T destination, TraversalBudget budget) {
+        int from = graph.indexOf(origin);
+        int to = graph.indexOf(destination);
+        if (from == -1 || to == -1) {
+            return -1;
+        }
+        int distance = search(from, to, budget).distances.get(to);
+        if (distance == -1 && budget.isExhausted()) {
+            return TraversalBudget.UNKNOWN_DISTANCE;
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the number of edges from an origin to every vertex.
+     *
+     * @param origin id to start from
+     * @return distance of every id, -1 if it's not reachable
+     */
+    public int[] getDistances(int origin) {
+        AtomicIntegerArray distances = search(origin, -1, new TraversalBudget()).distances;
+        int[] result = new int[graph.size()];
+        for (int v = 0; v < result.length; v++) {
+            result[v] = distances.get(v);
+        }
+        return result;
+    }
+
+    /**
+     * Searches level by level from origin, until the level of destination if
+     * it's not -1.
+     */
+    private Search search(int origin, int destination, TraversalBudget budget) {
+        int n = graph.size();
+        Search search = new Search();
+        search.distances = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++) {
+            search.distances.set(v, -1);
+        }
+        search.order = new int[n];
+
+        long[] frontier = new long[(n + 63) >>> 6];
+        long scannedEdges = 0;
+        //edges of the vertices not reached yet, and of the current level
+        long unvisitedEdges = neighbors.length - graph.degree(origin);
+        long frontierEdges = graph.degree(origin);
+        boolean bottomUp = false;
+
+        search.distances.set(origin, 0);
+        search.order[search.reached++] = origin;
+        int levelStart = 0;
+        int level = 0;
+        while (levelStart < search.reached && !budget.isExhausted()
+                && (destination == -1 || search.distances.get(destination) == -1)) {
+            int levelEnd = search.reached;
+            int levelSize = levelEnd - levelStart;
+            if (!bottomUp && frontierEdges > unvisitedEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && levelSize < n / BETA) {
+                bottomUp = false;
+            }
+
+            List<Slice> slices;
+            if (bottomUp) {
+                Arrays.fill(frontier, 0);
+                for (int i = levelStart; i < levelEnd; i++) {
+                    frontier[search.order[i] >>> 6] |= 1L << search.order[i];
+                }
+                slices = bottomUp(search.distances, frontier, level + 1);
+            } else {
+                slices = topDown(search.distances, search.order, levelStart, levelEnd, level + 1);
+            }
+
+            frontierEdges = 0;
+            for (Slice slice : slices) {
+                scannedEdges += slice.edges;
+                for (int i = 0; i < slice.count; i++) {
+                    int v = slice.found[i];
+                    search.order[search.reached++] = v;
+                    frontierEdges += offsets[v + 1] - offsets[v];
+                }
+            }
+            if (!bottomUp) {
+                //slices race for the vertices, sorting makes the order of a level fixed
+                Arrays.sort(search.order, levelEnd, search.reached);
+            }
+            unvisitedEdges -= frontierEdges;
+            levelStart = levelEnd;
+            level++;
+        }
+        Metrics.scanned(search.reached, scannedEdges);
+        return search;
+    }
+
+    /**
+     * Top-down level: every vertex of the frontier claims its unvisited
+     * neighbors.
+     */
+    private List<Slice> topDown(AtomicIntegerArray distances, int[] order, int from, int to, int distance) {
+        List<Slice> slices = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+        int count = slices(to - from);
+        for (int s = 0; s < count; s++) {
+            Slice slice = new Slice();
+            int start = from + (int) ((long) (to - from) * s / count);
+            int end = from + (int) ((long) (to - from) * (s + 1) / count);
+            slices.add(slice);
+            tasks.add(() -> {
+                for (int i = start; i < end; i++) {
+                    int u = order[i];
+                    slice.edges += offsets[u + 1] - offsets[u];
+                    for (int j = offsets[u]; j < offsets[u + 1]; j++) {
+                        int v = neighbors[j];
+                        if (distances.get(v) == -1 && distances.compareAndSet(v, -1, distance)) {
+                            slice.add(v);
+                        }
+                    }
+                }
+            });
+        }
+        run(tasks);
+        return slices;
+    }
+
+    /**
+     * Bottom-up level: every unvisited vertex looks for a neighbor in the
+     * frontier, the slices are ranges of vertices and every vertex is written
+     * by its own slice only.
+     */
+    private List<Slice> bottomUp(AtomicIntegerArray distances, long[] frontier, int distance) {
+        int n = graph.size();
+        List<Slice> slices = new ArrayList<>();
+        List<Runnable> tasks = new ArrayList<>();
+        int count = slices(n);
+        for (int s = 0; s < count; s++) {
+            Slice slice = new Slice();
+            int start = (int) ((long) n * s / count);
+            int end = (int) ((long) n * (s + 1) / count);
+            slices.add(slice);
+            tasks.add(() -> {
+                for (int v = start; v < end; v++) {
+                    if (distances.get(v) != -1) {
+                        continue;
+                    }
+                    for (int j = offsets[v]; j < offsets[v + 1]; j++) {
+                        slice.edges++;
+                        int u = neighbors[j];
+                        if ((frontier[u >>> 6] & 1L << u) != 0) {
+                            distances.set(v, distance);
+                            slice.add(v);
+                            break;
+                        }
+                    }
+                }
+            });
+        }
+        run(tasks);
+        return slices;
+    }
+
+    /**
+     * Number of slices of a level scanning the given number of vertices.
+     */
+    private int slices(int vertices) {
+        return Math.max(1, Math.min(4 * pool.getParallelism(), vertices / GRAIN));
+    }
+
+    /**
+     * Runs the slices of a level and waits for them, a single one on the
+     * calling thread.
+     */
+    private void run(List<Runnable> tasks) {
+        if (tasks.size() == 1) {
+            tasks.get(0).run();
+            return;
+        }
+        List<ForkJoinTask<?>> submitted = new ArrayList<>();
+        for (Runnable task : tasks) {
+            submitted.add(pool.submit(task));
+        }
+        for (ForkJoinTask<?> task : submitted) {
+            task.join();
+        }
+    }
+}
@@ -94,6 +94,10 @@ public class Driver
 		System.out.println(m.friendshipDistance(malcom,friendless2));
 		System.out.println(m.friendshipDistance(fannie,brown));
 		
+		System.out.println("---------------Suggestion after a removal----------------------------------");
+		//friendless2 is still in the friend list of lewis, but not a user anymore
+		System.out.println(m.friendSuggestion(fannie));
+		System.out.println(m.friendSuggestion(malcom));
 		
 	}
 }
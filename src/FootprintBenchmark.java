@@ -0,0 +1,144 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Random;
+
+/**
+ * This class measures how much heap a SocialConnect retains as it grows, and
+ * how much the garbage collector works while it's built. For every number of
+ * friendships it builds an app of random friendships, then prints:
+ * <ul>
+ * <li>the retained heap: the heap used after a full collection, minus the heap
+ * used before the app was built, in total and per friendship,</li>
+ * <li>the estimate of MemoryFootprint, in total and per component, so the
+ * estimate can be checked against the measure,</li>
+ * <li>the peak heap and the number and time of the collections during the
+ * build.</li>
+ * </ul>
+ * Run it with the same -Xmx and collector as the service, e.g.
+ * java -Xmx8g -XX:+UseG1GC FootprintBenchmark, and compare the numbers before
+ * and after a change of the representation. The retained heap is only as
+ * precise as System.gc(), which is why it collects until the used heap stops
+ * shrinking.
+ * <p>
+ * Usage: java FootprintBenchmark [friendships, comma separated] [friends per user]
+ */
+public class FootprintBenchmark {
+
+    private static final String[] STATUSES = {"Hello", "Busy", "Away", "On vacation", "Working from home"};
+
+    public static void main(String[] args) {
+        String sizes = args.length > 0 ? args[0] : "100000,1000000,10000000";
+        int friends = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        for (String size : sizes.split(",")) {
+            long friendships = Long.parseLong(size.trim());
+            int users = (int) Math.max(2, 2 * friendships / friends);
+            System.out.println(String.format("%,d friendships between %,d users:", friendships, users));
+            try {
+                measure(users, friendships);
+            } catch (OutOfMemoryError e) {
+                System.out.println("  out of memory, give the JVM more heap with -Xmx");
+                return;
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Builds an app and prints its measures, the app is dropped afterwards.
+     */
+    private static void measure(int users, long friendships) {
+        long before = retainedHeap();
+        long collections = collections();
+        long collectionTime = collectionTime();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+
+        long start = System.nanoTime();
+        SocialConnect app = build(users, friendships, new Random(42));
+        long elapsed = System.nanoTime() - start;
+        long peak = peakHeap();
+        collections = collections() - collections;
+        collectionTime = collectionTime() - collectionTime;
+
+        long retained = retainedHeap() - before;
+        MemoryFootprint footprint = app.getFootprint();
+        long estimated = footprint.getTotal();
+        System.out.println(String.format("  built in %,dms, %,d collections taking %,dms, peak heap %,d bytes",
+                elapsed / 1000000, collections, collectionTime, peak));
+        System.out.println(String.format("  retained %,d bytes, %.1f per friendship",
+                retained, (double) retained / friendships));
+        System.out.println(String.format("  estimated %,d bytes, %.1f per friendship, %+.1f%% off",
+                estimated, (double) estimated / friendships, 100.0 * (estimated - retained) / Math.max(1, retained)));
+        for (String line : footprint.toString().split(System.lineSeparator())) {
+            System.out.println("    " + line);
+        }
+    }
+
+    /**
+     * Builds an app of random friendships, repeated pairs are drawn again.
+     */
+    private static SocialConnect build(int users, long friendships, Random random) {
+        SocialConnect app = new SocialConnect();
+        Profile[] profiles = new Profile[users];
+        for (int i = 0; i < users; i++) {
+            profiles[i] = new Profile("User " + i, STATUSES[random.nextInt(STATUSES.length)]);
+            app.addUser(profiles[i]);
+        }
+        for (long f = 0; f < friendships; ) {
+            if (app.createFriendship(profiles[random.nextInt(users)], profiles[random.nextInt(users)])) {
+                f++;
+            }
+        }
+        return app;
+    }
+
+    /**
+     * Collects until the used heap stops shrinking, at most 10 times, and
+     * returns it.
+     */
+    private static long retainedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * Sum of the peak usage of the heap pools since their last reset.
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long collectionTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,70 @@
+import java.util.List;
+
+/**
+ * This class is one page of the friends of a profile. Pages are addressed by a
+ * cursor, the key of the last friend of the previous page, instead of an
+ * offset: friendships created or removed between two pages don't make the
+ * next page skip or repeat a friend that was there all along.
+ */
+public class FriendPage {
+
+    /**
+     * Orders of the friends.
+     */
+    public enum Order {
+        //oldest friendship first, the key is the sequence number of the friendship
+        CREATION,
+        //smallest profile ID first, the key is the ID
+        ID
+    }
+
+    /**
+     * Cursor of the first page.
+     */
+    public static final long FIRST = 0;
+
+    private List<Profile> friends;
+    private long next;
+    private boolean more;
+
+    /**
+     * initializes a page.
+     *
+     * @param friends friends on the page
+     * @param next    cursor of the next page
+     * @param more    true if there may be friends after this page
+     */
+    public FriendPage(List<Profile> friends, long next, boolean more) {
+        this.friends = friends;
+        this.next = next;
+        this.more = more;
+    }
+
+    /**
+     * Returns the friends on the page.
+     *
+     * @return friends
+     */
+    public List<Profile> getFriends() {
+        return friends;
+    }
+
+    /**
+     * Returns the cursor to pass to get the next page.
+     *
+     * @return cursor
+     */
+    public long getNextCursor() {
+        return next;
+    }
+
+    /**
+     * Returns true if there were more friends after this page when it was
+     * taken.
+     *
+     * @return true if there is a next page
+     */
+    public boolean hasMore() {
+        return more;
+    }
+}
@@ -0,0 +1,310 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class takes friendship changes for a SocialConnect asynchronously. A
+ * change is put on the queue of a shard, picked by the pair of profiles, and
+ * the caller gets a CompletableFuture right away, so a request thread never
+ * waits for the lock of the graph. Every shard has a single writer thread
+ * draining its queue in batches. The changes of a batch are grouped by pair
+ * and coalesced before the lock is taken: a pair is only changed if its last
+ * change differs from its current state, so repeated adds cost one
+ * createFriendship, and an add cancelled by a remove of the same batch costs
+ * nothing. Every future still gets the result the change would have had
+ * applied alone, in order. The history and the event stream of SocialConnect
+ * only see the net change of a batch.
+ * The changes of one pair are applied in the order they were queued, the
+ * changes of different pairs in any order. The futures are completed after
+ * the lock is released, on the writer threads.
+ * The queues are bounded: a change that finds the queue of its shard full is
+ * not queued, its future fails right away with a RejectedExecutionException,
+ * so a burst of writes faster than the writers can apply them sheds load
+ * instead of filling the heap.
+ */
+public class FriendshipIngestion {
+
+    //maximum number of changes a writer takes from its queue for one batch
+    private static final int MAX_BATCH = 4096;
+    //changes a shard holds when no capacity is given
+    private static final int DEFAULT_CAPACITY = 16 * MAX_BATCH;
+
+    /**
+     * A queued change and the future of its caller.
+     */
+    private static class Change {
+        private Profile a;
+        private Profile b;
+        private boolean create;
+        private CompletableFuture<Boolean> result;
+
+        private Change(Profile a, Profile b, boolean create) {
+            this.a = a;
+            this.b = b;
+            this.create = create;
+            this.result = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * The queue of a shard and its writer thread.
+     */
+    private class Shard implements Runnable {
+        //many producers, one consumer
+        private BlockingQueue<Change> queue = new ArrayBlockingQueue<>(capacity);
+        private Thread writer;
+        //set while the writer is parked or about to be, a producer then unparks it
+        private volatile boolean sleeping;
+
+        private boolean offer(Change change) {
+            if (!queue.offer(change)) {
+                return false;
+            }
+            if (sleeping) {
+                LockSupport.unpark(writer);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            List<Change> batch = new ArrayList<>();
+            while (running) {
+                queue.drainTo(batch, MAX_BATCH);
+                if (batch.isEmpty()) {
+                    //checking the queue again after announcing the sleep, so an offer can't be missed
+                    sleeping = true;
+                    if (queue.isEmpty() && running) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                apply(batch);
+                batch.clear();
+            }
+
+            //stopped, the changes left are not applied
+            Change change;
+            while ((change = queue.poll()) != null) {
+                change.result.completeExceptionally(new CancellationException("ingestion stopped"));
+            }
+        }
+    }
+
+    private SocialConnect connect;
+    //guards every operation on connect, shared with the other users of it
+    private Lock lock;
+    private List<Shard> shards;
+    //maximum number of changes queued on a shard
+    private int capacity;
+    private volatile boolean running;
+
+    /**
+     * initializes the ingestion of friendship changes, it doesn't take any
+     * until start is called. Every shard queues up to 65536 changes.
+     *
+     * @param connect social networking app to change
+     * @param lock    lock every user of connect holds while using it
+     * @param shards  number of queues and writer threads
+     */
+    public FriendshipIngestion(SocialConnect connect, Lock lock, int shards) {
+        this(connect, lock, shards, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * initializes the ingestion of friendship changes, it doesn't take any
+     * until start is called.
+     *
+     * @param connect  social networking app to change
+     * @param lock     lock every user of connect holds while using it
+     * @param shards   number of queues and writer threads
+     * @param capacity maximum number of changes queued on a shard
+     */
+    public FriendshipIngestion(SocialConnect connect, Lock lock, int shards, int capacity) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("shards must be positive");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.connect = connect;
+        this.capacity = capacity;
+        this.lock = lock;
+        this.shards = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            this.shards.add(new Shard());
+        }
+    }
+
+    /**
+     * Starts the writer threads.
+     */
+    public void start() {
+        running = true;
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            shard.writer = new Thread(shard, "socialconnect-ingestion-" + i);
+            shard.writer.setDaemon(true);
+            shard.writer.start();
+        }
+    }
+
+    /**
+     * Stops the writer threads once they finish their current batch. The
+     * futures of the changes still queued complete with a
+     * CancellationException.
+     *
+     * @throws InterruptedException if interrupted while waiting for the writers
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.writer);
+        }
+        for (Shard shard : shards) {
+            shard.writer.join();
+        }
+    }
+
+    /**
+     * Queues the creation of a friendship.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return completes with what SocialConnect.createFriendship would have
+     *         returned, or fails with a RejectedExecutionException if the
+     *         queue of the pair is full
+     */
+    public CompletableFuture<Boolean> createFriendship(Profile a, Profile b) {
+        return submit(new Change(a, b, true));
+    }
+
+    /**
+     * Queues the removal of a friendship.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return completes with what SocialConnect.removeFriendship would have
+     *         returned, or fails with a RejectedExecutionException if the
+     *         queue of the pair is full
+     */
+    public CompletableFuture<Boolean> removeFriendship(Profile a, Profile b) {
+        return submit(new Change(a, b, false));
+    }
+
+    /**
+     * Puts a change on the queue of its pair.
+     */
+    private CompletableFuture<Boolean> submit(Change change) {
+        if (!running) {
+            change.result.completeExceptionally(new IllegalStateException("ingestion not running"));
+            return change.result;
+        }
+        long pair = pair(change.a, change.b);
+        //spreading the pairs over the shards
+        int hash = Long.hashCode(pair * 0x9E3779B97F4A7C15L);
+        Shard shard = shards.get(Math.floorMod(hash, shards.size()));
+        if (!shard.offer(change)) {
+            change.result.completeExceptionally(new RejectedExecutionException("ingestion queue full"));
+            return change.result;
+        }
+        //stopped meanwhile, the writer may have drained its queue already
+        if (!running && shard.queue.remove(change)) {
+            change.result.completeExceptionally(new CancellationException("ingestion stopped"));
+        }
+        return change.result;
+    }
+
+    /**
+     * Applies a batch: groups it by pair, applies the net change of every
+     * pair under one lock acquisition, then completes the futures. A pair
+     * that fails only fails its own futures, the other pairs are applied.
+     */
+    private void apply(List<Change> batch) {
+        Map<Long, List<Change>> byPair = new LinkedHashMap<>();
+        for (Change change : batch) {
+            byPair.computeIfAbsent(pair(change.a, change.b), k -> new ArrayList<>()).add(change);
+        }
+
+        boolean[] results = new boolean[batch.size()];
+        //failure of every pair, in the order of byPair, null if it was applied
+        RuntimeException[] failures = new RuntimeException[byPair.size()];
+        lock.lock();
+        try {
+            int k = 0;
+            int p = 0;
+            for (List<Change> changes : byPair.values()) {
+                try {
+                    coalesce(changes, results, k);
+                } catch (RuntimeException e) {
+                    failures[p] = e;
+                }
+                k += changes.size();
+                p++;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        int k = 0;
+        int p = 0;
+        for (List<Change> changes : byPair.values()) {
+            for (Change change : changes) {
+                if (failures[p] != null) {
+                    change.result.completeExceptionally(failures[p]);
+                } else {
+                    change.result.complete(results[k]);
+                }
+                k++;
+            }
+            p++;
+        }
+    }
+
+    /**
+     * Applies the changes of one pair as a single one, and puts the result of
+     * every change in results from position k.
+     */
+    private void coalesce(List<Change> changes, boolean[] results, int k) {
+        Profile a = changes.get(0).a;
+        Profile b = changes.get(0).b;
+        boolean initial = connect.hasFriendship(a, b);
+        //without the edge, the changes only succeed if both users are in the graph
+        boolean valid = initial || a != b && connect.exists(a) && connect.exists(b);
+
+        //every change succeeds if it flips the state of the pair
+        boolean state = initial;
+        for (Change change : changes) {
+            results[k++] = valid && change.create != state;
+            if (valid) {
+                state = change.create;
+            }
+        }
+
+        if (state != initial) {
+            if (state) {
+                connect.createFriendship(a, b);
+            } else {
+                connect.removeFriendship(a, b);
+            }
+        }
+    }
+
+    /**
+     * Key of an unordered pair of profiles.
+     */
+    private static long pair(Profile a, Profile b) {
+        int low = Math.min(a.getID(), b.getID());
+        int high = Math.max(a.getID(), b.getID());
+        return (long) low << 32 | (high & 0xFFFFFFFFL);
+    }
+}
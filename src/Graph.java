@@ -14,8 +14,24 @@ import java.util.*;
  */
 public class Graph<T> implements GraphInterface<T> {
 
+    /**
+     * How the next vertex of a random walk is chosen among the neighbors of the
+     * current one.
+     */
+    public enum WalkBias {
+        //every neighbor has the same chance
+        UNIFORM,
+        //the chance of a neighbor is proportional to its number of neighbors
+        DEGREE,
+        //the chance of a neighbor is proportional to the weight of the edge
+        WEIGHT
+    }
+
     private Map<T, VertexInterface<T>> vertices;
     private int edgeCount;
+    //vertices of the last load, in the order of their ids, and how many of them are materialized
+    private List<Vertex<T>> loaded;
+    private int materialized;
 
     /**
      * initializes the graph with an empty graph structure.
@@ -150,17 +166,8 @@ public class Graph<T> implements GraphInterface<T> {
         //checking given vertices are distinct, and they are currently in this graph
         if (!begin.equals(end) && vertices.containsKey(begin) && vertices.containsKey(end)) {
 
-            //we'll iterate over all the Neighbor vertices to begin, and we'll check a neighbor is equal to end
-            Iterator<VertexInterface<T>> iterator = vertices.get(begin).getNeighborIterator();
-            while (iterator.hasNext()) {
-                VertexInterface<T> next = iterator.next();
-
-                //if equal fount return true
-                if (next.getLabel().equals(end)) {
-                    return true;
-                }
-            }
-
+            //the vertex finds its neighbor in its index, without a scan of the edges of a hub
+            return vertices.get(begin).isNeighbor(vertices.get(end));
         }
 
         return false;
@@ -184,6 +191,11 @@ public class Graph<T> implements GraphInterface<T> {
         return vertices.isEmpty();
     }
 
+    @Override
+    public VertexInterface<T> getVertex(T vertexLabel) {
+        return vertices.get(vertexLabel);
+    }
+
     @Override
     public List<VertexInterface<T>> getVertices() {
         // creating a list of all the values of hashmap and returning
@@ -193,24 +205,112 @@ public class Graph<T> implements GraphInterface<T> {
     @Override
     public void clear() {
         vertices.clear();
+        loaded = null;
+    }
+
+    /**
+     * Adds the bytes of the vertex map, the vertices and their edges to a
+     * footprint, see MemoryFootprint.
+     *
+     * @param footprint footprint to add to
+     */
+    @SuppressWarnings("unchecked")
+    public void addFootprint(MemoryFootprint footprint) {
+        footprint.add(MemoryFootprint.Component.VERTEX_MAP, MemoryFootprint.hashMapSize(vertices.size()));
+        if (loaded != null) {
+            footprint.add(MemoryFootprint.Component.VERTEX_MAP, MemoryFootprint.arrayListSize(loaded.size()));
+        }
+        for (VertexInterface<T> vertex : vertices.values()) {
+            footprint.add(MemoryFootprint.Component.VERTEX_MAP, MemoryFootprint.shallowSize(vertex.getClass()));
+            if (vertex instanceof Vertex) {
+                ((Vertex<T>) vertex).addFootprint(footprint);
+            }
+        }
+    }
+
+    /**
+     * Fills an empty graph from rows in compressed sparse row form: vertex i
+     * has the label labels.get(i), and its neighbors are the ids in neighbors
+     * from offsets[i] up to offsets[i + 1]. Every edge must be in the rows of
+     * both its ends, once, and is unweighted. Only the vertices are created:
+     * their edges are read from the rows until they are materialized, on their
+     * first change or by materialize(). The arrays must not be modified
+     * afterwards.
+     *
+     * @param labels    label of every id
+     * @param offsets   row start of every id, labels.size()+1 entries
+     * @param neighbors neighbor ids of all the rows
+     */
+    public void load(List<T> labels, int[] offsets, int[] neighbors) {
+        if (!vertices.isEmpty()) {
+            throw new IllegalStateException("graph is not empty");
+        }
+
+        int n = labels.size();
+        List<Vertex<T>> created = new ArrayList<>(n);
+        vertices = new HashMap<>(Math.max(16, (int) (n / 0.75f) + 1));
+        for (T label : labels) {
+            Vertex<T> vertex = new Vertex<>(label);
+            created.add(vertex);
+            vertices.put(label, vertex);
+        }
+        for (int i = 0; i < n; i++) {
+            created.get(i).setLoadedNeighbors(neighbors, offsets[i], offsets[i + 1], created::get);
+        }
+        edgeCount = neighbors.length / 2;
+        loaded = created;
+        materialized = 0;
+    }
+
+    /**
+     * Materializes the edges of the next vertices of the last load, so later
+     * queries don't pay for it. Vertices changed meanwhile are already
+     * materialized and cost nothing.
+     *
+     * @param count maximum number of vertices to materialize
+     * @return true if every loaded vertex is materialized
+     */
+    public boolean materialize(int count) {
+        if (loaded == null) {
+            return true;
+        }
+        int end = Math.min(loaded.size(), materialized + count);
+        for (; materialized < end; materialized++) {
+            loaded.get(materialized).materialize();
+        }
+        if (materialized == loaded.size()) {
+            loaded = null;
+            return true;
+        }
+        return false;
     }
 
     @Override
     public Queue<T> getBreadthFirstTraversal(T origin) {
+        return getBreadthFirstTraversal(origin, new TraversalBudget());
+    }
+
+    @Override
+    public Queue<T> getBreadthFirstTraversal(T origin, TraversalBudget budget) {
         //for storing traversal result
         Queue<T> result = new LinkedList<>();
 
         //it'll be used to perform bfs
         Queue<T> queue = new LinkedList<>();
+        //every vertex we marked, to remove the marks at the end
+        List<VertexInterface<T>> marked = new ArrayList<>();
+        //number of edges looked at, for the metrics
+        long scannedEdges = 0;
 
         //-------------bfs----------------------
 
         //step(1): add origin to the queue and mark it as visited
         queue.add(origin);
         vertices.get(origin).visit();
+        marked.add(vertices.get(origin));
 
-        //step(2): while queue is not empty do the following steps
-        while (!queue.isEmpty()) {
+        //step(2): while queue is not empty and the budget is not used up do the following steps
+        while (!queue.isEmpty() && budget.chargeVertex()) {
 
             //step(2a): poll a vertex u
             T u = queue.poll();
@@ -220,51 +320,68 @@ public class Graph<T> implements GraphInterface<T> {
 
             //step(2b): visit and push all the neighbor vertex to u which are not already visited
             Iterator<VertexInterface<T>> iterator = vertices.get(u).getNeighborIterator();
-            while (iterator.hasNext()) {
+            while (iterator.hasNext() && budget.chargeEdge()) {
                 VertexInterface<T> v = iterator.next();
+                scannedEdges++;
                 if (!v.isVisited()) {
                     v.visit();
+                    marked.add(v);
                     queue.add(v.getLabel());
                 }
             }
         }
         //-----------bfs end-------------------------
+        Metrics.scanned(result.size(), scannedEdges);
+
+        //restore visitation info
+        for (VertexInterface<T> vertex : marked) {
+            vertex.unvisit();
+        }
 
         return result;
     }
 
     @Override
     public int getShortestPath(T origin, T destination, Stack<T> path) {
+        return getShortestPath(origin, destination, path, new TraversalBudget());
+    }
 
-        //restore visitation info
-        for (T label : vertices.keySet()) {
-            vertices.get(label).setCost(Integer.MAX_VALUE);
-            vertices.get(label).unvisit();
-        }
-
+    @Override
+    public int getShortestPath(T origin, T destination, Stack<T> path, TraversalBudget budget) {
 
         //-----------------here we are doing the bfs again as graph is unweighted ----------------
         Queue<T> queue = new LinkedList<>();
+        //every vertex we marked, to remove the marks at the end instead of resetting the whole graph
+        List<VertexInterface<T>> marked = new ArrayList<>();
+        //number of vertices and edges looked at, for the metrics
+        long scannedVertices = 0;
+        long scannedEdges = 0;
 
         //step(1): add origin to the queue and mark it as visited
         queue.add(origin);
         vertices.get(origin).visit();
+        vertices.get(origin).setPredecessor(null);
+        marked.add(vertices.get(origin));
 
         //origin to origin cost is 0
         vertices.get(origin).setCost(0);
 
-        //step(2): while queue is not empty do the following steps
-        while (!queue.isEmpty()) {
+        //step(2): while queue is not empty and the destination is not found do the following steps
+        VertexInterface<T> target = vertices.get(destination);
+        while (!queue.isEmpty() && !target.isVisited() && budget.chargeVertex()) {
 
             //step(2a): poll a vertex u
             VertexInterface<T> u = vertices.get(queue.poll());
+            scannedVertices++;
 
             //step(2b): visit and push all the neighbor vertex to u which are not already visited
             Iterator<VertexInterface<T>> iterator = u.getNeighborIterator();
-            while (iterator.hasNext()) {
+            while (iterator.hasNext() && budget.chargeEdge()) {
                 VertexInterface<T> v = iterator.next();
+                scannedEdges++;
                 if (!v.isVisited()) {
                     v.visit();
+                    marked.add(v);
 
                     //additionally, set cost of v=cost of parent of v + 1
                     v.setCost(u.getCost() + 1);
@@ -276,16 +393,171 @@ public class Graph<T> implements GraphInterface<T> {
             }
         }
 
-        //storing path in the stack if there is a path
-        if (vertices.get(destination).getCost() != Integer.MAX_VALUE) {
+        Metrics.scanned(scannedVertices, scannedEdges);
 
-            //we'll push starting from destination, then destination's parent, then destination's parent's parent and so on
+        int result;
+        if (target.isVisited()) {
+            result = (int) target.getCost();
+
+            //storing path in the stack, we'll push starting from destination, then destination's parent,
+            //then destination's parent's parent and so on
             path.push(destination);
             while (vertices.get(path.peek()).hasPredecessor() && !vertices.get(path.peek()).getLabel().equals(origin)) {
                 path.add(vertices.get(path.peek()).getPredecessor().getLabel());
             }
+        } else if (budget.isExhausted()) {
+            //the budget ran out before the whole component was visited
+            result = TraversalBudget.UNKNOWN_DISTANCE;
+        } else {
+            result = Integer.MAX_VALUE;
+        }
+
+        //restore visitation info
+        for (VertexInterface<T> vertex : marked) {
+            vertex.unvisit();
+            vertex.setPredecessor(null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Samples the neighborhood of a vertex hop by hop, as in GraphSAGE: at
+     * every hop h, fanouts[h] neighbors of every vertex sampled at the previous
+     * hop are picked at random, without replacement. A vertex with fewer
+     * neighbors gives all of them. Only the sampled vertices are touched, so
+     * the cost is bounded by the product of the fanouts, not by the size of
+     * the neighborhood.
+     *
+     * @param origin  source vertex
+     * @param fanouts number of neighbors to sample at every hop
+     * @param random  random number generator, seed it to get the same sample again
+     * @return the sampled vertices of every hop, element h holds hop h+1. If origin
+     * is not in the graph, it returns null.
+     */
+    public List<List<T>> sampleNeighborhood(T origin, int[] fanouts, Random random) {
+        if (!vertices.containsKey(origin)) {
+            return null;
+        }
+
+        List<List<T>> hops = new ArrayList<>();
+        List<VertexInterface<T>> frontier = new ArrayList<>();
+        frontier.add(vertices.get(origin));
+        for (int fanout : fanouts) {
+            List<VertexInterface<T>> next = new ArrayList<>();
+            for (VertexInterface<T> vertex : frontier) {
+                sampleNeighbors(vertex, fanout, random, next);
+            }
+
+            List<T> hop = new ArrayList<>();
+            for (VertexInterface<T> vertex : next) {
+                hop.add(vertex.getLabel());
+            }
+            hops.add(hop);
+            frontier = next;
+        }
+
+        return hops;
+    }
+
+    /**
+     * Performs a random walk from a vertex. The walk stops early if it reaches
+     * a vertex without a neighbor. A uniform step costs constant time, a
+     * biased step is linear in the number of neighbors of the current vertex.
+     * If the biased chances are all 0, e.g. unweighted edges, the step is
+     * uniform.
+     *
+     * @param origin source vertex
+     * @param length maximum number of steps
+     * @param bias   how the next vertex is chosen
+     * @param random random number generator, seed it to get the same walk again
+     * @return the visited vertices starting with origin. If origin is not in the
+     * graph, it returns null.
+     */
+    public List<T> randomWalk(T origin, int length, WalkBias bias, Random random) {
+        if (!vertices.containsKey(origin)) {
+            return null;
+        }
+
+        List<T> walk = new ArrayList<>();
+        VertexInterface<T> current = vertices.get(origin);
+        walk.add(origin);
+        for (int step = 0; step < length && current.hasNeighbor(); step++) {
+            current = current.getNeighbor(nextStep(current, bias, random));
+            walk.add(current.getLabel());
+        }
+
+        return walk;
+    }
+
+    /**
+     * Adds k random neighbors of a vertex to sample by reservoir sampling
+     * (Algorithm L). As the neighbors can be accessed by position, the skipped
+     * ones are never touched, so it takes O(k(1 + log(n/k))) for n neighbors.
+     */
+    private void sampleNeighbors(VertexInterface<T> vertex, int k, Random random, List<VertexInterface<T>> sample) {
+        int n = vertex.getNumberOfNeighbors();
+        if (k <= 0) {
+            return;
+        }
+
+        //filling the reservoir with the first k neighbors
+        int start = sample.size();
+        for (int i = 0; i < Math.min(k, n); i++) {
+            sample.add(vertex.getNeighbor(i));
+        }
+        if (n <= k) {
+            return;
+        }
+
+        //then jumping over the neighbors that would not make it into the reservoir
+        double w = Math.exp(Math.log(nextOpenDouble(random)) / k);
+        long i = k - 1;
+        while (true) {
+            i += (long) Math.floor(Math.log(nextOpenDouble(random)) / Math.log(1 - w)) + 1;
+            if (i >= n) {
+                break;
+            }
+            sample.set(start + random.nextInt(k), vertex.getNeighbor((int) i));
+            w *= Math.exp(Math.log(nextOpenDouble(random)) / k);
         }
+    }
 
-        return (int) vertices.get(destination).getCost();
+    /**
+     * Picks the position of the next edge of a random walk.
+     */
+    private int nextStep(VertexInterface<T> vertex, WalkBias bias, Random random) {
+        int n = vertex.getNumberOfNeighbors();
+        if (bias == WalkBias.UNIFORM) {
+            return random.nextInt(n);
+        }
+
+        //chance of every edge and their sum
+        double[] chances = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            chances[i] = bias == WalkBias.DEGREE ? vertex.getNeighbor(i).getNumberOfNeighbors() : vertex.getWeight(i);
+            total += chances[i];
+        }
+        if (total <= 0) {
+            return random.nextInt(n);
+        }
+
+        //the edge where a random point of [0, total) falls
+        double point = random.nextDouble() * total;
+        for (int i = 0; i < n; i++) {
+            point -= chances[i];
+            if (point < 0) {
+                return i;
+            }
+        }
+        return n - 1;
+    }
+
+    /**
+     * Returns a random number from (0, 1], so its logarithm is finite.
+     */
+    private static double nextOpenDouble(Random random) {
+        return 1.0 - random.nextDouble();
     }
 }
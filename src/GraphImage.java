@@ -0,0 +1,384 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * This class is the image of a social graph on disk, and the arrays it is
+ * loaded into. Every profile gets an id from 0 to size()-1, and the file holds,
+ * big-endian:
+ * <ul>
+ * <li>a header: magic, version, number of profiles n, number of friend entries
+ * m (twice the friendships), number of string bytes,</li>
+ * <li>the row offsets, n+1 ints, and the friend ids, m ints, in compressed
+ * sparse row form. A row keeps the order of the friends, oldest first,</li>
+ * <li>the profile ID of every id, n ints,</li>
+ * <li>the string offsets, 2n+1 ints, the name of id i starting at 2i and its
+ * status at 2i+1, then the UTF-8 bytes of all the strings,</li>
+ * <li>a byte per id, bit 0 set if the name is null and bit 1 if the status
+ * is, a null string has no bytes.</li>
+ * </ul>
+ * Loading checks that the offsets go from 0 up to the end of their arrays
+ * without going back, that the friend ids are ids of the image and that the
+ * profile IDs are distinct and not negative, so a corrupt file is an
+ * IOException and not a broken graph later. Loading maps the file in chunks of CHUNK ints or bytes, and every chunk is
+ * copied into the arrays by its own task on a fork-join pool, so a big image
+ * is read by all the cores. Each task maps its own region, so images over 2GB
+ * are fine. The strings are then decoded in parallel by ranges of profiles.
+ */
+public class GraphImage {
+
+    //"SCGI"
+    private static final int MAGIC = 0x53434749;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 20;
+    //ints or bytes copied by one loading task
+    private static final int CHUNK = 1 << 20;
+
+    private static final int NULL_NAME = 1;
+    private static final int NULL_STATUS = 2;
+
+    private int[] offsets;
+    private int[] neighbors;
+    private int[] profileIds;
+    private String[] strings;
+
+    private GraphImage(int[] offsets, int[] neighbors, int[] profileIds, String[] strings) {
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.profileIds = profileIds;
+        this.strings = strings;
+    }
+
+    /**
+     * Writes the image of a graph of profiles. Friends that are not in the
+     * graph are left out.
+     *
+     * @param graph graph to write
+     * @param path  file to write to, it's replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public static void save(GraphInterface<Profile> graph, Path path) throws IOException {
+        List<VertexInterface<Profile>> vertices = graph.getVertices();
+        int n = vertices.size();
+        Map<Profile, Integer> ids = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ids.put(vertices.get(i).getLabel(), i);
+        }
+
+        //friend rows, in the order of the edges of every vertex
+        int[] rowOffsets = new int[n + 1];
+        List<int[]> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int[] row = new int[vertices.get(i).getNumberOfNeighbors()];
+            int size = 0;
+            Iterator<VertexInterface<Profile>> iterator = vertices.get(i).getNeighborIterator();
+            while (iterator.hasNext()) {
+                Integer id = ids.get(iterator.next().getLabel());
+                if (id != null) {
+                    row[size++] = id;
+                }
+            }
+            rows.add(row);
+            rowOffsets[i + 1] = rowOffsets[i] + size;
+        }
+
+        byte[][] encoded = new byte[2 * n][];
+        int[] stringOffsets = new int[2 * n + 1];
+        byte[] nulls = new byte[n];
+        for (int i = 0; i < n; i++) {
+            Profile profile = vertices.get(i).getLabel();
+            encoded[2 * i] = encode(profile.getName());
+            encoded[2 * i + 1] = encode(profile.getStatus());
+            nulls[i] = (byte) ((profile.getName() == null ? NULL_NAME : 0)
+                    | (profile.getStatus() == null ? NULL_STATUS : 0));
+        }
+        for (int s = 0; s < encoded.length; s++) {
+            stringOffsets[s + 1] = stringOffsets[s] + encoded[s].length;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(rowOffsets[n]);
+            out.writeInt(stringOffsets[2 * n]);
+            for (int offset : rowOffsets) {
+                out.writeInt(offset);
+            }
+            for (int i = 0; i < n; i++) {
+                int[] row = rows.get(i);
+                for (int j = 0; j < rowOffsets[i + 1] - rowOffsets[i]; j++) {
+                    out.writeInt(row[j]);
+                }
+            }
+            for (VertexInterface<Profile> vertex : vertices) {
+                out.writeInt(vertex.getLabel().getID());
+            }
+            for (int offset : stringOffsets) {
+                out.writeInt(offset);
+            }
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+            out.write(nulls);
+        }
+    }
+
+    /**
+     * Loads an image on the common pool.
+     *
+     * @param path file to read
+     * @return loaded image
+     * @throws IOException if the file can't be read, is not an image or is
+     *                     corrupt
+     */
+    public static GraphImage load(Path path) throws IOException {
+        return load(path, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads an image, the chunks are copied on the given pool.
+     *
+     * @param path file to read
+     * @param pool pool to run the copies on
+     * @return loaded image
+     * @throws IOException if the file can't be read, is not an image or is
+     *                     corrupt
+     */
+    public static GraphImage load(Path path, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) != -1) {
+                //reading the whole header
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException(path + " is not a graph image");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported graph image version " + version);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            int stringBytes = header.getInt();
+            long expected = HEADER_BYTES + 4L * (n + 1) + 4L * m + 4L * n + 4L * (2 * n + 1) + stringBytes + n;
+            if (n < 0 || m < 0 || stringBytes < 0 || channel.size() < expected) {
+                throw new IOException(path + " is truncated");
+            }
+
+            int[] offsets = new int[n + 1];
+            int[] neighbors = new int[m];
+            int[] profileIds = new int[n];
+            int[] stringOffsets = new int[2 * n + 1];
+            byte[] bytes = new byte[stringBytes];
+            byte[] nulls = new byte[n];
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            long position = HEADER_BYTES;
+            position = readInts(channel, position, offsets, pool, tasks);
+            position = readInts(channel, position, neighbors, pool, tasks);
+            position = readInts(channel, position, profileIds, pool, tasks);
+            position = readInts(channel, position, stringOffsets, pool, tasks);
+            position = readBytes(channel, position, bytes, pool, tasks);
+            readBytes(channel, position, nulls, pool, tasks);
+            join(tasks);
+
+            checkOffsets(path, "row", offsets, m);
+            checkOffsets(path, "string", stringOffsets, stringBytes);
+            for (int neighbor : neighbors) {
+                if (neighbor < 0 || neighbor >= n) {
+                    throw new IOException(path + " has a friend id " + neighbor + " out of [0, " + n + ")");
+                }
+            }
+            int[] sortedIds = profileIds.clone();
+            Arrays.sort(sortedIds);
+            for (int i = 0; i < n; i++) {
+                if (sortedIds[i] < 0 || i > 0 && sortedIds[i] == sortedIds[i - 1]) {
+                    throw new IOException(path + " has an invalid or repeated profile ID " + sortedIds[i]);
+                }
+            }
+
+            //decoding the strings by ranges of profiles
+            String[] strings = new String[2 * n];
+            tasks.clear();
+            for (int from = 0; from < strings.length; from += CHUNK / 16) {
+                int start = from;
+                int end = Math.min(strings.length, from + CHUNK / 16);
+                tasks.add(pool.submit(() -> {
+                    for (int s = start; s < end; s++) {
+                        if ((nulls[s / 2] & (s % 2 == 0 ? NULL_NAME : NULL_STATUS)) == 0) {
+                            strings[s] = new String(bytes, stringOffsets[s], stringOffsets[s + 1] - stringOffsets[s],
+                                    StandardCharsets.UTF_8);
+                        }
+                    }
+                }));
+            }
+            join(tasks);
+            return new GraphImage(offsets, neighbors, profileIds, strings);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the number of profiles.
+     *
+     * @return number of profiles
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the profile ID saved for an id.
+     *
+     * @param id id in the image
+     * @return profile ID
+     */
+    public int getProfileId(int id) {
+        return profileIds[id];
+    }
+
+    /**
+     * Returns the name of an id.
+     *
+     * @param id profile id
+     * @return name, null if it was null
+     */
+    public String getName(int id) {
+        return strings[2 * id];
+    }
+
+    /**
+     * Returns the status of an id.
+     *
+     * @param id profile id
+     * @return status, null if it was null
+     */
+    public String getStatus(int id) {
+        return strings[2 * id + 1];
+    }
+
+    /**
+     * Returns the row offsets, the friends of id i are in getNeighbors() from
+     * offsets[i] up to offsets[i + 1]. The array must not be modified.
+     *
+     * @return offsets, size()+1 entries
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the friend ids of all rows, the array must not be modified.
+     *
+     * @return neighbors
+     */
+    public int[] getNeighbors() {
+        return neighbors;
+    }
+
+    /**
+     * Submits the copy of an int array from position, one task per chunk.
+     * Returns the position after the array.
+     */
+    private static long readInts(FileChannel channel, long position, int[] into, ForkJoinPool pool,
+                                 List<ForkJoinTask<?>> tasks) {
+        for (int from = 0; from < into.length; from += CHUNK) {
+            int start = from;
+            long at = position + 4L * from;
+            int length = Math.min(CHUNK, into.length - from);
+            tasks.add(pool.submit(() -> {
+                IntBuffer ints = map(channel, at, 4L * length).asIntBuffer();
+                ints.get(into, start, length);
+            }));
+        }
+        return position + 4L * into.length;
+    }
+
+    /**
+     * Submits the copy of a byte array from position, one task per chunk.
+     * Returns the position after the array.
+     */
+    private static long readBytes(FileChannel channel, long position, byte[] into, ForkJoinPool pool,
+                                  List<ForkJoinTask<?>> tasks) {
+        for (int from = 0; from < into.length; from += CHUNK) {
+            int start = from;
+            long at = position + from;
+            int length = Math.min(CHUNK, into.length - from);
+            tasks.add(pool.submit(() -> map(channel, at, length).get(into, start, length)));
+        }
+        return position + into.length;
+    }
+
+    /**
+     * Throws if offsets don't start at 0, go back somewhere or don't end at
+     * the size of the array they point into.
+     */
+    private static void checkOffsets(Path path, String kind, int[] offsets, int size) throws IOException {
+        if (offsets[0] != 0 || offsets[offsets.length - 1] != size) {
+            throw new IOException(path + " has " + kind + " offsets from " + offsets[0] + " to " +
+                    offsets[offsets.length - 1] + ", not from 0 to " + size);
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                throw new IOException(path + " has " + kind + " offsets going back at " + i);
+            }
+        }
+    }
+
+    /**
+     * UTF-8 bytes of a string, none for null.
+     */
+    private static byte[] encode(String string) {
+        return string == null ? new byte[0] : string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps a region of the file, a mapped buffer is big-endian like
+     * DataOutputStream.
+     */
+    private static ByteBuffer map(FileChannel channel, long position, long length) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Waits for all the tasks, so none is left reading a closed channel, then
+     * throws the first failure.
+     */
+    private static void join(List<ForkJoinTask<?>> tasks) {
+        RuntimeException failure = null;
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -107,6 +107,15 @@ public interface GraphInterface<T> {
      */
     public boolean isEmpty();
 
+    /**
+     * This method returns the vertex with the given vertexLabel. If vertex does
+     * not exist, it returns null.
+     *
+     * @param vertexLabel vertexLabel
+     * @return the vertex, If vertex does not exist, it returns null.
+     */
+    public VertexInterface<T> getVertex(T vertexLabel);
+
     /**
      * This method returns the
      * list of all vertices in the graph. If the graph is empty, it returns
@@ -129,6 +138,17 @@ public interface GraphInterface<T> {
      */
     public Queue<T> getBreadthFirstTraversal(T origin);
 
+    /**
+     * Performs a breadthFirst traversal of a graph within a budget, and returns
+     * the queue that contains the result. If the budget runs out the result is
+     * the part traversed so far, and budget.isExhausted() returns true.
+     *
+     * @param origin source vertex
+     * @param budget limits of the traversal
+     * @return the queue that contains the result.
+     */
+    public Queue<T> getBreadthFirstTraversal(T origin, TraversalBudget budget);
+
     /**
      * returns the shortest distance between the origin and destination. If a
      * path does not exist, it returns the maximum integer (to simulate
@@ -142,4 +162,19 @@ public interface GraphInterface<T> {
      */
     public int getShortestPath(T origin, T destination, Stack<T> path);
 
+    /**
+     * returns the shortest distance between the origin and destination, within a
+     * budget. If a path does not exist, it returns the maximum integer. If the
+     * budget runs out before either is known, it returns
+     * TraversalBudget.UNKNOWN_DISTANCE.
+     *
+     * @param origin      source vertex
+     * @param destination destination vertex
+     * @param path        stack that contain the path between them
+     * @param budget      limits of the traversal
+     * @return the shortest distance between the origin and destination, the maximum integer if
+     * there is no path, TraversalBudget.UNKNOWN_DISTANCE if the budget ran out.
+     */
+    public int getShortestPath(T origin, T destination, Stack<T> path, TraversalBudget budget);
+
 }
@@ -0,0 +1,215 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * This generic class is a read-only copy of a graph in compressed sparse row
+ * (CSR) form. Every vertex gets a dense id from 0 to size()-1, and the
+ * neighbors of vertex v are stored in neighbors[offsets[v]] up to
+ * neighbors[offsets[v + 1]] sorted by id. Analytics that have to sweep the
+ * whole graph many times work on this instead of the Vertex objects, as it's
+ * just two primitive arrays.
+ * The snapshot does not follow later changes of the graph.
+ *
+ * @param <T> key type
+ */
+public class GraphSnapshot<T> {
+
+    //label of every dense id
+    private Object[] labels;
+    //dense id of every label
+    private Map<T, Integer> index;
+    //row start of every vertex in neighbors, has size()+1 entries
+    private int[] offsets;
+    //neighbor ids of all the vertices one after another
+    private int[] neighbors;
+
+    /**
+     * Copies the current state of the given graph. Parallel edges with
+     * different weights are stored once.
+     *
+     * @param graph graph to copy
+     */
+    public GraphSnapshot(GraphInterface<T> graph) {
+        List<VertexInterface<T>> vertices = graph.getVertices();
+        int n = vertices.size();
+
+        //assigning dense ids
+        labels = new Object[n];
+        index = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            labels[i] = vertices.get(i).getLabel();
+            index.put(vertices.get(i).getLabel(), i);
+        }
+
+        //counting degrees
+        offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + vertices.get(i).getNumberOfNeighbors();
+        }
+
+        //filling and sorting every row, then squeezing out the duplicates
+        int[] raw = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int position = offsets[i];
+            Iterator<VertexInterface<T>> iterator = vertices.get(i).getNeighborIterator();
+            while (iterator.hasNext()) {
+                raw[position++] = index.get(iterator.next().getLabel());
+            }
+            Arrays.sort(raw, offsets[i], offsets[i + 1]);
+        }
+
+        int size = 0;
+        int rowStart = 0;
+        for (int i = 0; i < n; i++) {
+            int rowEnd = offsets[i + 1];
+            offsets[i] = size;
+            for (int j = rowStart; j < rowEnd; j++) {
+                if (j == rowStart || raw[j] != raw[j - 1]) {
+                    raw[size++] = raw[j];
+                }
+            }
+            rowStart = rowEnd;
+        }
+        offsets[n] = size;
+        neighbors = size == raw.length ? raw : Arrays.copyOf(raw, size);
+    }
+
+    /**
+     * Takes a snapshot of rows in compressed sparse row form, e.g. those of a
+     * GraphImage: label i has the neighbors in neighbors from offsets[i] up to
+     * offsets[i + 1]. The rows must not hold duplicates. They are copied and
+     * sorted in parallel, the given arrays are left as they are.
+     *
+     * @param labels    label of every id
+     * @param offsets   row start of every id, labels.size()+1 entries
+     * @param neighbors neighbor ids of all the rows
+     */
+    public GraphSnapshot(List<T> labels, int[] offsets, int[] neighbors) {
+        int n = labels.size();
+        this.labels = labels.toArray();
+        index = new HashMap<>(Math.max(16, (int) (n / 0.75f) + 1));
+        for (int i = 0; i < n; i++) {
+            index.put(labels.get(i), i);
+        }
+        this.offsets = Arrays.copyOf(offsets, n + 1);
+        this.neighbors = Arrays.copyOf(neighbors, offsets[n]);
+        IntStream.range(0, n).parallel().forEach(i -> Arrays.sort(this.neighbors, offsets[i], offsets[i + 1]));
+    }
+
+    /**
+     * Copies a snapshot with its vertices renumbered: vertex order[k] of the
+     * other snapshot gets id k. Rows stay sorted by the new ids.
+     *
+     * @param other snapshot to copy
+     * @param order old id of every new id, a permutation of the old ids
+     */
+    public GraphSnapshot(GraphSnapshot<T> other, int[] order) {
+        int n = other.size();
+        int[] newIds = new int[n];
+        for (int k = 0; k < n; k++) {
+            newIds[order[k]] = k;
+        }
+
+        labels = new Object[n];
+        index = new HashMap<>();
+        offsets = new int[n + 1];
+        neighbors = new int[other.neighbors.length];
+        for (int k = 0; k < n; k++) {
+            int old = order[k];
+            labels[k] = other.labels[old];
+            index.put(other.getLabel(old), k);
+
+            int start = offsets[k];
+            int degree = other.degree(old);
+            for (int i = 0; i < degree; i++) {
+                neighbors[start + i] = newIds[other.neighbors[other.offsets[old] + i]];
+            }
+            Arrays.sort(neighbors, start, start + degree);
+            offsets[k + 1] = start + degree;
+        }
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return number of vertices
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Returns the number of undirected edges.
+     *
+     * @return number of undirected edges
+     */
+    public int getNumberOfEdges() {
+        return neighbors.length / 2;
+    }
+
+    /**
+     * Returns the dense id of a label, -1 if it was not in the graph.
+     *
+     * @param label vertexLabel
+     * @return dense id or -1
+     */
+    public int indexOf(T label) {
+        Integer id = index.get(label);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the label of a dense id.
+     *
+     * @param id dense id
+     * @return vertexLabel
+     */
+    @SuppressWarnings("unchecked")
+    public T getLabel(int id) {
+        return (T) labels[id];
+    }
+
+    /**
+     * Returns the number of neighbors of a dense id.
+     *
+     * @param id dense id
+     * @return degree
+     */
+    public int degree(int id) {
+        return offsets[id + 1] - offsets[id];
+    }
+
+    /**
+     * Returns the row offsets, the array must not be modified.
+     *
+     * @return offsets, size()+1 entries
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the neighbor ids of all rows, the array must not be modified.
+     *
+     * @return neighbors
+     */
+    public int[] getNeighbors() {
+        return neighbors;
+    }
+
+    /**
+     * Returns the estimated number of bytes of the snapshot, see
+     * MemoryFootprint.
+     *
+     * @return bytes used
+     */
+    public long getBytesUsed() {
+        return MemoryFootprint.arraySize(labels.length, MemoryFootprint.REFERENCE)
+                + MemoryFootprint.hashMapSize(index.size()) + MemoryFootprint.boxedSize(index.size())
+                + MemoryFootprint.arraySize(offsets.length, 4) + MemoryFootprint.arraySize(neighbors.length, 4);
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * This class is a ShardTransport for shards in the same JVM. Every shard gets
+ * a single thread executor, whose queue is the inbox of the shard.
+ */
+public class InMemoryShardTransport implements ShardTransport {
+
+    private List<ExecutorService> executors;
+    private List<Function<ShardMessage, ShardMessage>> handlers;
+
+    /**
+     * initializes the transport for the given number of shards.
+     *
+     * @param shards number of shards
+     */
+    public InMemoryShardTransport(int shards) {
+        executors = new ArrayList<>();
+        handlers = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            final int shard = i;
+            executors.add(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "shard-" + shard);
+                thread.setDaemon(true);
+                return thread;
+            }));
+            handlers.add(null);
+        }
+    }
+
+    @Override
+    public void bind(int shard, Function<ShardMessage, ShardMessage> handler) {
+        handlers.set(shard, handler);
+    }
+
+    @Override
+    public CompletableFuture<ShardMessage> send(int shard, ShardMessage message) {
+        Function<ShardMessage, ShardMessage> handler = handlers.get(shard);
+        return CompletableFuture.supplyAsync(() -> handler.apply(message), executors.get(shard));
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+import java.util.Arrays;
+
+/**
+ * This class is a set of ints in the style of a Roaring bitmap. The ints are
+ * split by their upper 16 bits into chunks, and every chunk keeps its lower 16
+ * bits in a container picked by its size: a sorted char array while it holds
+ * up to 4096 values, 2 bytes per value, and a bitmap of 65536 bits (8KB) once
+ * it holds more, which is smaller from there on. Membership is a binary search
+ * over the chunks and then a binary search or a single bit test, and the size
+ * of the intersection of two bitmaps is computed chunk by chunk, with a popcount
+ * of ANDed words for two bitmap containers.
+ * It's not thread safe.
+ */
+public class IntBitmap {
+
+    //values in an array container at most, above that it becomes a bitmap
+    private static final int ARRAY_MAX = 4096;
+
+    //upper 16 bits of every chunk, sorted
+    private char[] keys;
+    //container of every chunk: a sorted char[] or a long[1024]
+    private Object[] containers;
+    //number of values in every container
+    private int[] cardinalities;
+    private int chunks;
+    private int size;
+
+    /**
+     * initializes an empty set.
+     */
+    public IntBitmap() {
+        keys = new char[4];
+        containers = new Object[4];
+        cardinalities = new int[4];
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value value
+     * @return true if it was not in the set
+     */
+    public boolean add(int value) {
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int chunk = find(key);
+        if (chunk < 0) {
+            chunk = -chunk - 1;
+            insertChunk(chunk, key);
+        }
+
+        Object container = containers[chunk];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) != 0) {
+                return false;
+            }
+            bits[low >>> 6] |= mask;
+        } else {
+            char[] values = (char[]) container;
+            int cardinality = cardinalities[chunk];
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i >= 0) {
+                return false;
+            }
+            i = -i - 1;
+            if (cardinality == ARRAY_MAX) {
+                //promoting the container to a bitmap
+                long[] bits = new long[1024];
+                for (int j = 0; j < cardinality; j++) {
+                    bits[values[j] >>> 6] |= 1L << values[j];
+                }
+                bits[low >>> 6] |= 1L << low;
+                containers[chunk] = bits;
+            } else {
+                if (cardinality == values.length) {
+                    values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+                    containers[chunk] = values;
+                }
+                System.arraycopy(values, i, values, i + 1, cardinality - i);
+                values[i] = low;
+            }
+        }
+        cardinalities[chunk]++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value value
+     * @return true if it was in the set
+     */
+    public boolean remove(int value) {
+        int chunk = find((char) (value >>> 16));
+        if (chunk < 0) {
+            return false;
+        }
+
+        char low = (char) value;
+        Object container = containers[chunk];
+        if (container instanceof long[]) {
+            long[] bits = (long[]) container;
+            long mask = 1L << low;
+            if ((bits[low >>> 6] & mask) == 0) {
+                return false;
+            }
+            bits[low >>> 6] &= ~mask;
+            if (cardinalities[chunk] - 1 == ARRAY_MAX) {
+                //demoting the container to an array
+                char[] values = new char[ARRAY_MAX];
+                int j = 0;
+                for (int word = 0; word < bits.length; word++) {
+                    for (long w = bits[word]; w != 0; w &= w - 1) {
+                        values[j++] = (char) (word << 6 | Long.numberOfTrailingZeros(w));
+                    }
+                }
+                containers[chunk] = values;
+            }
+        } else {
+            char[] values = (char[]) container;
+            int cardinality = cardinalities[chunk];
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i < 0) {
+                return false;
+            }
+            System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+        }
+
+        size--;
+        if (--cardinalities[chunk] == 0) {
+            removeChunk(chunk);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if a value is in the set.
+     *
+     * @param value value
+     * @return true if it's in the set
+     */
+    public boolean contains(int value) {
+        int chunk = find((char) (value >>> 16));
+        if (chunk < 0) {
+            return false;
+        }
+
+        char low = (char) value;
+        Object container = containers[chunk];
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & 1L << low) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[chunk], low) >= 0;
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of values in both sets, without building the
+     * intersection.
+     *
+     * @param other another set
+     * @return size of the intersection
+     */
+    public int intersectionSize(IntBitmap other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < chunks && j < other.chunks) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                count += intersectionSize(containers[i], cardinalities[i],
+                        other.containers[j], other.cardinalities[j]);
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes used by the containers.
+     *
+     * @return bytes used
+     */
+    public long getBytesUsed() {
+        long bytes = 0;
+        for (int i = 0; i < chunks; i++) {
+            bytes += containers[i] instanceof long[] ? 8192 : 2L * ((char[]) containers[i]).length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Intersection size of two containers of the same chunk.
+     */
+    private static int intersectionSize(Object a, int sizeA, Object b, int sizeB) {
+        if (a instanceof long[] && b instanceof long[]) {
+            long[] bitsA = (long[]) a;
+            long[] bitsB = (long[]) b;
+            int count = 0;
+            for (int word = 0; word < bitsA.length; word++) {
+                count += Long.bitCount(bitsA[word] & bitsB[word]);
+            }
+            return count;
+        }
+        if (a instanceof long[]) {
+            return intersectionSize(b, sizeB, a, sizeA);
+        }
+
+        char[] values = (char[]) a;
+        int count = 0;
+        if (b instanceof long[]) {
+            long[] bits = (long[]) b;
+            for (int i = 0; i < sizeA; i++) {
+                if ((bits[values[i] >>> 6] & 1L << values[i]) != 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        //merging two sorted arrays
+        char[] other = (char[]) b;
+        int i = 0;
+        int j = 0;
+        while (i < sizeA && j < sizeB) {
+            if (values[i] < other[j]) {
+                i++;
+            } else if (values[i] > other[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the position of a chunk, or -(insertion point) - 1.
+     */
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, chunks, key);
+    }
+
+    private void insertChunk(int i, char key) {
+        if (chunks == keys.length) {
+            keys = Arrays.copyOf(keys, chunks * 2);
+            containers = Arrays.copyOf(containers, chunks * 2);
+            cardinalities = Arrays.copyOf(cardinalities, chunks * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, chunks - i);
+        System.arraycopy(containers, i, containers, i + 1, chunks - i);
+        System.arraycopy(cardinalities, i, cardinalities, i + 1, chunks - i);
+        keys[i] = key;
+        containers[i] = new char[4];
+        cardinalities[i] = 0;
+        chunks++;
+    }
+
+    private void removeChunk(int i) {
+        System.arraycopy(keys, i + 1, keys, i, chunks - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, chunks - i - 1);
+        System.arraycopy(cardinalities, i + 1, cardinalities, i, chunks - i - 1);
+        chunks--;
+        containers[chunks] = null;
+    }
+}
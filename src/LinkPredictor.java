@@ -0,0 +1,376 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This generic class scores how likely two vertices of a GraphSnapshot are to
+ * become neighbors, from the neighbors they share:
+ * <ul>
+ * <li>common neighbors: how many there are,</li>
+ * <li>Jaccard: common neighbors over the neighbors of either of them,</li>
+ * <li>Adamic-Adar: every common neighbor w counts 1/log(degree(w)), a friend
+ * shared by few says more than a hub everybody shares,</li>
+ * <li>resource allocation: every common neighbor w counts 1/degree(w), which
+ * punishes the hubs even more.</li>
+ * </ul>
+ * The weight of every vertex is computed once into a table. A single pair is
+ * scored by merging the two sorted rows. A batch of candidates for one vertex
+ * is scored in one of two ways. The wedges can be walked: the weight of every
+ * neighbor w is added to each neighbor of w, costing the degrees of the
+ * neighbors. Or the row of every candidate can be scanned against a mark of
+ * the neighbors, costing the degrees of the candidates. The cheaper way is
+ * picked. Candidates with the same score are ordered by id, or by a
+ * comparator of the labels when one is given, so a caller that also scores on
+ * other structures can get the same order everywhere. The scratch arrays are
+ * reused from call to call, so it's not thread safe.
+ *
+ * @param <T> key type
+ */
+public class LinkPredictor<T> {
+
+    /**
+     * The ways to score a pair.
+     */
+    public enum Score {
+        COMMON_NEIGHBORS,
+        JACCARD,
+        ADAMIC_ADAR,
+        RESOURCE_ALLOCATION
+    }
+
+    private GraphSnapshot<T> graph;
+    //order of the candidates with the same score, null for the id order
+    private Comparator<? super T> ties;
+    private int[] offsets;
+    private int[] neighbors;
+    //1/log(degree) and 1/degree of every id, 0 where undefined
+    private double[] inverseLogDegree;
+    private double[] inverseDegree;
+    //scratch: scores added up by the wedge walk, the ids they were added to,
+    //and the neighbors of the scored vertex marked with the current stamp
+    private double[] sums;
+    private int[] touched;
+    private int[] marks;
+    private int stamp;
+
+    /**
+     * initializes the scoring of a snapshot.
+     *
+     * @param graph snapshot to score
+     */
+    public LinkPredictor(GraphSnapshot<T> graph) {
+        this(graph, null);
+    }
+
+    /**
+     * initializes the scoring of a snapshot, with the ties of the suggestions
+     * broken by the labels.
+     *
+     * @param graph snapshot to score
+     * @param ties  order of the candidates with the same score, the smallest
+     *              first, null for the id order
+     */
+    public LinkPredictor(GraphSnapshot<T> graph, Comparator<? super T> ties) {
+        this.graph = graph;
+        this.ties = ties;
+        offsets = graph.getOffsets();
+        neighbors = graph.getNeighbors();
+        int n = graph.size();
+        inverseLogDegree = new double[n];
+        inverseDegree = new double[n];
+        for (int v = 0; v < n; v++) {
+            int degree = graph.degree(v);
+            //a common neighbor has degree 2 at least, log(1) would divide by 0
+            inverseLogDegree[v] = degree > 1 ? 1 / Math.log(degree) : 0;
+            inverseDegree[v] = degree > 0 ? 1.0 / degree : 0;
+        }
+        sums = new double[n];
+        touched = new int[n];
+        marks = new int[n];
+    }
+
+    /**
+     * Returns the snapshot it scores.
+     *
+     * @return snapshot
+     */
+    public GraphSnapshot<T> getSnapshot() {
+        return graph;
+    }
+
+    /**
+     * Scores a pair of vertices.
+     *
+     * @param a     a vertexLabel
+     * @param b     another vertexLabel
+     * @param score way to score
+     * @return score, 0 if either of them is not in the snapshot
+     */
+    public double score(T a, T b, Score score) {
+        int u = graph.indexOf(a);
+        int v = graph.indexOf(b);
+        if (u == -1 || v == -1) {
+            return 0;
+        }
+
+        //merging the two sorted rows
+        double[] weights = weights(score);
+        double sum = 0;
+        int common = 0;
+        int i = offsets[u];
+        int j = offsets[v];
+        while (i < offsets[u + 1] && j < offsets[v + 1]) {
+            if (neighbors[i] < neighbors[j]) {
+                i++;
+            } else if (neighbors[i] > neighbors[j]) {
+                j++;
+            } else {
+                common++;
+                if (weights != null) {
+                    sum += weights[neighbors[i]];
+                }
+                i++;
+                j++;
+            }
+        }
+        return finish(score, u, v, common, sum);
+    }
+
+    /**
+     * Scores a batch of candidates against one vertex.
+     *
+     * @param label      vertexLabel
+     * @param candidates vertices to score against it
+     * @param score      way to score
+     * @return score of every candidate, 0 for the ones not in the snapshot
+     */
+    public double[] score(T label, List<T> candidates, Score score) {
+        double[] result = new double[candidates.size()];
+        int u = graph.indexOf(label);
+        if (u == -1) {
+            return result;
+        }
+        int[] ids = new int[candidates.size()];
+        long candidateEdges = 0;
+        for (int c = 0; c < ids.length; c++) {
+            ids[c] = graph.indexOf(candidates.get(c));
+            if (ids[c] != -1) {
+                candidateEdges += graph.degree(ids[c]);
+            }
+        }
+
+        long wedges = 0;
+        for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+            wedges += graph.degree(neighbors[i]);
+        }
+
+        if (wedges <= candidateEdges) {
+            int count = walkWedges(u, score);
+            for (int c = 0; c < ids.length; c++) {
+                if (ids[c] != -1) {
+                    result[c] = finish(score, u, ids[c], (int) sums[ids[c]], sums[ids[c]]);
+                }
+            }
+            clear(count);
+        } else {
+            stamp++;
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                marks[neighbors[i]] = stamp;
+            }
+            double[] weights = weights(score);
+            for (int c = 0; c < ids.length; c++) {
+                int v = ids[c];
+                if (v == -1 || v == u) {
+                    continue;
+                }
+                int common = 0;
+                double sum = 0;
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    if (marks[neighbors[i]] == stamp) {
+                        common++;
+                        if (weights != null) {
+                            sum += weights[neighbors[i]];
+                        }
+                    }
+                }
+                result[c] = finish(score, u, v, common, sum);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the vertices at distance 2 from a vertex, ordered from the best
+     * to the worst score, ties by id or by the comparator of the labels.
+     *
+     * @param label vertexLabel
+     * @param limit maximum number of vertices to return
+     * @param score way to score
+     * @return best candidates, empty if the vertex is not in the snapshot
+     */
+    public List<T> suggest(T label, int limit, Score score) {
+        List<T> result = new ArrayList<>();
+        int u = graph.indexOf(label);
+        if (u == -1 || limit <= 0) {
+            return result;
+        }
+
+        int count = walkWedges(u, score);
+        //the vertex and its neighbors are not candidates
+        stamp++;
+        marks[u] = stamp;
+        for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+            marks[neighbors[i]] = stamp;
+        }
+
+        //keeping the best limit candidates in a min-heap, the worst at the root
+        int[] heap = new int[Math.min(limit, count)];
+        double[] heapScores = new double[heap.length];
+        int size = 0;
+        for (int k = 0; k < count; k++) {
+            int v = touched[k];
+            if (marks[v] == stamp) {
+                continue;
+            }
+            double value = finish(score, u, v, (int) sums[v], sums[v]);
+            if (size < heap.length) {
+                heap[size] = v;
+                heapScores[size] = value;
+                siftUp(heap, heapScores, size++);
+            } else if (worse(heapScores[0], heap[0], value, v)) {
+                heap[0] = v;
+                heapScores[0] = value;
+                siftDown(heap, heapScores, size);
+            }
+        }
+        clear(count);
+
+        //emptying the heap gives the worst first
+        T[] ordered = newArray(size);
+        while (size > 0) {
+            ordered[size - 1] = graph.getLabel(heap[0]);
+            heap[0] = heap[--size];
+            heapScores[0] = heapScores[size];
+            siftDown(heap, heapScores, size);
+        }
+        result.addAll(Arrays.asList(ordered));
+        return result;
+    }
+
+    /**
+     * Adds the weight of every neighbor w of u to sums of every other neighbor
+     * of w, 1 for the scores counting the common neighbors, so sums holds the
+     * count or the weighted sum. Returns the number of ids in touched.
+     */
+    private int walkWedges(int u, Score score) {
+        double[] weights = weights(score);
+        int count = 0;
+        for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+            int w = neighbors[i];
+            double weight = weights == null ? 1 : weights[w];
+            for (int j = offsets[w]; j < offsets[w + 1]; j++) {
+                int v = neighbors[j];
+                //u is reached through every neighbor, it's not a candidate. w has u and v as
+                //neighbors so its weight is not 0, and a sum of 0 means v was not reached yet
+                if (v == u) {
+                    continue;
+                }
+                if (sums[v] == 0) {
+                    touched[count++] = v;
+                }
+                sums[v] += weight;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Resets sums after a wedge walk.
+     */
+    private void clear(int count) {
+        for (int k = 0; k < count; k++) {
+            sums[touched[k]] = 0;
+        }
+    }
+
+    /**
+     * Weight of every common neighbor, null when they all count 1.
+     */
+    private double[] weights(Score score) {
+        switch (score) {
+            case ADAMIC_ADAR:
+                return inverseLogDegree;
+            case RESOURCE_ALLOCATION:
+                return inverseDegree;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Turns the common neighbors and the sum of their weights into a score.
+     */
+    private double finish(Score score, int u, int v, int common, double sum) {
+        switch (score) {
+            case COMMON_NEIGHBORS:
+                return common;
+            case JACCARD:
+                int union = graph.degree(u) + graph.degree(v) - common;
+                return union == 0 ? 0 : (double) common / union;
+            default:
+                return sum;
+        }
+    }
+
+    /**
+     * True if candidate (a, ida) ranks below (b, idb): lower score, or the same
+     * score and a higher id.
+     */
+    private boolean worse(double a, int ida, double b, int idb) {
+        if (a != b) {
+            return a < b;
+        }
+        return ties == null ? ida > idb : ties.compare(graph.getLabel(ida), graph.getLabel(idb)) > 0;
+    }
+
+    private void siftUp(int[] heap, double[] scores, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!worse(scores[i], heap[i], scores[parent], heap[parent])) {
+                return;
+            }
+            swap(heap, scores, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, double[] scores, int size) {
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && worse(scores[child + 1], heap[child + 1], scores[child], heap[child])) {
+                child++;
+            }
+            if (!worse(scores[child], heap[child], scores[i], heap[i])) {
+                return;
+            }
+            swap(heap, scores, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] heap, double[] scores, int i, int j) {
+        int id = heap[i];
+        heap[i] = heap[j];
+        heap[j] = id;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] newArray(int size) {
+        return (T[]) new Object[size];
+    }
+}
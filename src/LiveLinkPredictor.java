@@ -0,0 +1,215 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * This generic class gives the scores of LinkPredictor on the live adjacency
+ * of a graph instead of a snapshot, so a graph that has just changed is scored
+ * without taking a new snapshot first. A pair is scored from the common
+ * neighbors of its vertices, which the neighbor index of a Vertex finds by a
+ * probe per neighbor of the smaller side, or by intersecting the indexes for a
+ * count. The suggestions walk the wedges like LinkPredictor does, adding up in
+ * a map instead of tables indexed by id, so a walk costs the degrees of the
+ * neighbors in both, with a constant factor higher here. Candidates with the
+ * same score are ordered by a comparator of the labels when one is given,
+ * otherwise in the order the walk reached them, which depends on the order of
+ * the friend lists. It keeps no state but the graph, which it reads as it is
+ * at every call.
+ *
+ * @param <T> key type
+ */
+public class LiveLinkPredictor<T> {
+
+    private GraphInterface<T> graph;
+    //order of the candidates with the same score, null for the order they are reached
+    private Comparator<? super T> ties;
+
+    /**
+     * initializes the scoring of a graph.
+     *
+     * @param graph graph to score
+     */
+    public LiveLinkPredictor(GraphInterface<T> graph) {
+        this(graph, null);
+    }
+
+    /**
+     * initializes the scoring of a graph, with the ties of the suggestions
+     * broken by the labels.
+     *
+     * @param graph graph to score
+     * @param ties  order of the candidates with the same score, the smallest
+     *              first, null for the order they are reached
+     */
+    public LiveLinkPredictor(GraphInterface<T> graph, Comparator<? super T> ties) {
+        this.graph = graph;
+        this.ties = ties;
+    }
+
+    /**
+     * Scores a pair of vertices.
+     *
+     * @param a     a vertexLabel
+     * @param b     another vertexLabel
+     * @param score way to score
+     * @return score, 0 if either of them is not in the graph
+     */
+    public double score(T a, T b, LinkPredictor.Score score) {
+        VertexInterface<T> u = graph.getVertex(a);
+        VertexInterface<T> v = graph.getVertex(b);
+        if (u == null || v == null) {
+            return 0;
+        }
+
+        if (score == LinkPredictor.Score.COMMON_NEIGHBORS || score == LinkPredictor.Score.JACCARD) {
+            return finish(score, u, v, u.getNumberOfCommonNeighbors(v), 0);
+        }
+        double sum = 0;
+        for (VertexInterface<T> w : u.getCommonNeighbors(v)) {
+            sum += weight(score, w);
+        }
+        return finish(score, u, v, 0, sum);
+    }
+
+    /**
+     * Scores a batch of candidates against one vertex, a pair at a time.
+     *
+     * @param label      vertexLabel
+     * @param candidates vertices to score against it
+     * @param score      way to score
+     * @return score of every candidate, 0 for the ones not in the graph
+     */
+    public double[] score(T label, List<T> candidates, LinkPredictor.Score score) {
+        double[] result = new double[candidates.size()];
+        if (graph.getVertex(label) == null) {
+            return result;
+        }
+        for (int c = 0; c < result.length; c++) {
+            if (!candidates.get(c).equals(label)) {
+                result[c] = score(label, candidates.get(c), score);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the vertices at distance 2 from a vertex, ordered from the best
+     * to the worst score, ties by the comparator of the labels, or in the
+     * order the wedge walk reached them.
+     *
+     * @param label vertexLabel
+     * @param limit maximum number of vertices to return
+     * @param score way to score
+     * @return best candidates, empty if the vertex is not in the graph
+     */
+    public List<T> suggest(T label, int limit, LinkPredictor.Score score) {
+        List<T> result = new ArrayList<>();
+        VertexInterface<T> u = graph.getVertex(label);
+        if (u == null || limit <= 0) {
+            return result;
+        }
+
+        //the common neighbors, or the sum of their weights, of every vertex reached, in the order reached
+        Map<VertexInterface<T>, double[]> sums = new LinkedHashMap<>();
+        boolean weighted = score == LinkPredictor.Score.ADAMIC_ADAR || score == LinkPredictor.Score.RESOURCE_ALLOCATION;
+        for (Iterator<VertexInterface<T>> neighbors = u.getNeighborIterator(); neighbors.hasNext(); ) {
+            VertexInterface<T> w = neighbors.next();
+            double weight = weighted ? weight(score, w) : 1;
+            for (Iterator<VertexInterface<T>> wedges = w.getNeighborIterator(); wedges.hasNext(); ) {
+                VertexInterface<T> v = wedges.next();
+                if (!v.getLabel().equals(label)) {
+                    sums.computeIfAbsent(v, k -> new double[1])[0] += weight;
+                }
+            }
+        }
+
+        //keeping the best limit candidates in a min-heap, the worst at the root
+        Comparator<Candidate<T>> worstFirst = worstFirst();
+        PriorityQueue<Candidate<T>> best = new PriorityQueue<>(Math.max(1, Math.min(limit, sums.size())), worstFirst);
+        int order = 0;
+        for (Map.Entry<VertexInterface<T>, double[]> entry : sums.entrySet()) {
+            VertexInterface<T> v = entry.getKey();
+            //the neighbors of the vertex are not candidates
+            if (u.isNeighbor(v)) {
+                continue;
+            }
+            double sum = entry.getValue()[0];
+            Candidate<T> candidate = new Candidate<>(v.getLabel(), finish(score, u, v, (int) sum, sum), order++);
+            if (best.size() < limit) {
+                best.add(candidate);
+            } else if (worstFirst.compare(best.peek(), candidate) < 0) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+
+        //emptying the heap gives the worst first
+        while (!best.isEmpty()) {
+            result.add(best.poll().label);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Orders the candidates from the worst to the best: lower score, or the
+     * same score and a bigger label, or reached later without a comparator.
+     */
+    private Comparator<Candidate<T>> worstFirst() {
+        return (a, b) -> {
+            if (a.score != b.score) {
+                return Double.compare(a.score, b.score);
+            }
+            return ties != null ? ties.compare(b.label, a.label) : Integer.compare(b.order, a.order);
+        };
+    }
+
+    /**
+     * Weight of a common neighbor, for the weighted scores.
+     */
+    private static <T> double weight(LinkPredictor.Score score, VertexInterface<T> w) {
+        int degree = w.getNumberOfNeighbors();
+        if (score == LinkPredictor.Score.ADAMIC_ADAR) {
+            //a common neighbor has degree 2 at least, log(1) would divide by 0
+            return degree > 1 ? 1 / Math.log(degree) : 0;
+        }
+        return degree > 0 ? 1.0 / degree : 0;
+    }
+
+    /**
+     * Turns the common neighbors and the sum of their weights into a score.
+     */
+    private static <T> double finish(LinkPredictor.Score score, VertexInterface<T> u, VertexInterface<T> v,
+                                     int common, double sum) {
+        switch (score) {
+            case COMMON_NEIGHBORS:
+                return common;
+            case JACCARD:
+                int union = u.getNumberOfNeighbors() + v.getNumberOfNeighbors() - common;
+                return union == 0 ? 0 : (double) common / union;
+            default:
+                return sum;
+        }
+    }
+
+    /**
+     * A scored candidate and the position it was reached at.
+     */
+    private static class Candidate<T> {
+
+        private final T label;
+        private final double score;
+        private final int order;
+
+        private Candidate(T label, double score, int order) {
+            this.label = label;
+            this.score = score;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class measures the throughput and the latency of a SocialConnectServer
+ * on one machine. It starts a server on a free port, adds users and random
+ * friendships through it, then runs a mix of requests from many client threads
+ * for a while and prints the throughput and the latency percentiles of every
+ * kind of request.
+ * <p>
+ * Usage: java LoadGenerator [clients] [seconds] [users] [friendships per user]
+ */
+public class LoadGenerator {
+
+    //kinds of requests in the mix, one in WRITE_EVERY requests is a write
+    private static final int WRITE_EVERY = 10;
+
+    private String base;
+    private int[] users;
+    private Histogram writeLatency;
+    private Histogram hasFriendshipLatency;
+    private Histogram suggestionLatency;
+    private Histogram distanceLatency;
+    private LongAdder errors;
+
+    /**
+     * initializes the generator against a server.
+     *
+     * @param port port of the server on localhost
+     */
+    public LoadGenerator(int port) {
+        base = "http://localhost:" + port;
+        writeLatency = new Histogram();
+        hasFriendshipLatency = new Histogram();
+        suggestionLatency = new Histogram();
+        distanceLatency = new Histogram();
+        errors = new LongAdder();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int userCount = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int friendships = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        SocialConnectServer server = new SocialConnectServer(new SocialConnect(), 0);
+        server.start();
+        try {
+            LoadGenerator generator = new LoadGenerator(server.getPort());
+            System.out.println("Adding " + userCount + " users and " + userCount * friendships + " friendships.");
+            generator.populate(userCount, friendships, clients);
+
+            System.out.println("Running " + clients + " clients for " + seconds + " seconds.");
+            long requests = generator.run(clients, seconds);
+            generator.report(requests, seconds);
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Adds the users, then random friendships between them.
+     *
+     * @param userCount   number of users
+     * @param friendships friendships created per user
+     * @param clients     number of client threads
+     * @throws Exception if the server fails
+     */
+    public void populate(int userCount, int friendships, int clients) throws Exception {
+        users = new int[userCount];
+        for (int i = 0; i < userCount; i++) {
+            users[i] = Integer.parseInt(request("POST", "/users?name=" +
+                    URLEncoder.encode("User " + i, "UTF-8") + "&status=hi"));
+        }
+
+        ExecutorService executor = SocialConnectServer.newRequestExecutor();
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            executor.execute(() -> {
+                Random random = new Random(client);
+                for (int i = client; i < users.length; i += clients) {
+                    for (int f = 0; f < friendships; f++) {
+                        try {
+                            request("POST", "/friendships?a=" + users[i] + "&b=" + randomUser(random));
+                        } catch (IOException e) {
+                            errors.increment();
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+    }
+
+    /**
+     * Runs the request mix from the given number of client threads.
+     *
+     * @param clients number of client threads
+     * @param seconds duration
+     * @return number of requests sent
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public long run(int clients, int seconds) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder requests = new LongAdder();
+        ExecutorService executor = SocialConnectServer.newRequestExecutor();
+        for (int c = 0; c < clients; c++) {
+            final int client = c;
+            executor.execute(() -> {
+                Random random = new Random(~client);
+                for (long n = 0; running.get(); n++) {
+                    int a = randomUser(random);
+                    int b = randomUser(random);
+                    long start = System.nanoTime();
+                    try {
+                        Histogram latency;
+                        if (n % WRITE_EVERY == 0) {
+                            request("POST", "/friendships?a=" + a + "&b=" + b);
+                            latency = writeLatency;
+                        } else if (n % 3 == 0) {
+                            request("GET", "/friendships?a=" + a + "&b=" + b);
+                            latency = hasFriendshipLatency;
+                        } else if (n % 3 == 1) {
+                            request("GET", "/suggestions?user=" + a);
+                            latency = suggestionLatency;
+                        } else {
+                            request("GET", "/distance?a=" + a + "&b=" + b);
+                            latency = distanceLatency;
+                        }
+                        latency.record(System.nanoTime() - start);
+                        requests.increment();
+                    } catch (IOException e) {
+                        errors.increment();
+                    }
+                }
+            });
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return requests.sum();
+    }
+
+    /**
+     * Prints the throughput and the latencies.
+     *
+     * @param requests number of requests sent
+     * @param seconds  duration
+     */
+    public void report(long requests, int seconds) {
+        System.out.println("throughput: " + requests / seconds + " requests/s, errors: " + errors.sum());
+        print("createFriendship", writeLatency);
+        print("hasFriendship", hasFriendshipLatency);
+        print("friendSuggestion", suggestionLatency);
+        print("friendshipDistance", distanceLatency);
+    }
+
+    /**
+     * Prints the percentiles of a latency histogram in microseconds.
+     */
+    private static void print(String name, Histogram latency) {
+        System.out.println(name + ": count=" + latency.getCount() +
+                ", p50=" + latency.getValueAtPercentile(50) / 1000 + "us" +
+                ", p99=" + latency.getValueAtPercentile(99) / 1000 + "us" +
+                ", p999=" + latency.getValueAtPercentile(99.9) / 1000 + "us" +
+                ", max=" + latency.getMax() / 1000 + "us");
+    }
+
+    /**
+     * Returns the ID of a random user.
+     */
+    private int randomUser(Random random) {
+        return users[random.nextInt(users.length)];
+    }
+
+    /**
+     * Sends a request and returns the answer, failing on anything but 200.
+     */
+    private String request(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+        connection.setRequestMethod(method);
+        int code = connection.getResponseCode();
+        if (code != 200) {
+            connection.disconnect();
+            throw new IOException(method + " " + path + ": " + code);
+        }
+
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream answer = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                answer.write(buffer, 0, read);
+            }
+            return new String(answer.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class adds up the estimated heap bytes of the parts of a SocialConnect,
+ * component by component. The estimates follow the object layout of a 64-bit
+ * HotSpot JVM with compressed references, the default below 32GB of heap:
+ * a 12 byte object header, 16 bytes for an array header, 4 bytes per
+ * reference, and every object padded to a multiple of 8 bytes. The size of an
+ * object is computed from the fields of its class, so it follows the changes
+ * of the classes. The capacity of a growable list is not visible, so an
+ * ArrayList is counted with the capacity it has when it's grown one add at a
+ * time, the way most lists here grow.
+ */
+public class MemoryFootprint {
+
+    /**
+     * The parts of a social network.
+     */
+    public enum Component {
+        //the map from labels to vertices, and the vertex objects
+        VERTEX_MAP,
+        //neighbor and weight arrays of the vertices, or the loaded rows not materialized yet
+        ADJACENCY,
+        //sorted ids and bitmaps of the neighbors of the vertices above the small degrees
+        NEIGHBOR_INDEX,
+        //the profile objects
+        PROFILES,
+        //names and statuses in the ProfileStore of the app
+        PROFILE_STRINGS,
+        //friend lists of the profiles, with their sequence numbers
+        FRIEND_LISTS,
+        //one-way follows
+        FOLLOWS,
+        //timestamped history of the friendships
+        HISTORY,
+        //union-find of the connected components
+        COMPONENTS,
+        //last snapshot, if one was taken
+        SNAPSHOT
+    }
+
+    static final int HEADER = 12;
+    static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+    //a HashMap entry: header, hash, key, value and next
+    private static final int MAP_ENTRY = 32;
+    //a boxed Integer or Long value
+    private static final int BOXED = 16;
+    //capacity of an ArrayList after its first add, it grows by half of it when full
+    private static final int LIST_CAPACITY = 10;
+
+    //shallow size of every class asked for
+    private static final Map<Class<?>, Long> SHALLOW_SIZES = new ConcurrentHashMap<>();
+
+    private long[] bytes;
+
+    /**
+     * initializes an empty footprint.
+     */
+    public MemoryFootprint() {
+        bytes = new long[Component.values().length];
+    }
+
+    /**
+     * Adds bytes to a component.
+     *
+     * @param component component
+     * @param size      bytes to add
+     */
+    public void add(Component component, long size) {
+        bytes[component.ordinal()] += size;
+    }
+
+    /**
+     * Returns the bytes of a component.
+     *
+     * @param component component
+     * @return estimated bytes
+     */
+    public long get(Component component) {
+        return bytes[component.ordinal()];
+    }
+
+    /**
+     * Returns the bytes of all the components.
+     *
+     * @return estimated bytes
+     */
+    public long getTotal() {
+        long total = 0;
+        for (long size : bytes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Returns one line per component: its size and its share of the total.
+     */
+    @Override
+    public String toString() {
+        long total = getTotal();
+        StringBuilder result = new StringBuilder();
+        for (Component component : Component.values()) {
+            long size = get(component);
+            result.append(String.format("%-16s %,14d bytes %5.1f%%%n", component, size,
+                    total == 0 ? 0.0 : 100.0 * size / total));
+        }
+        result.append(String.format("%-16s %,14d bytes%n", "TOTAL", total));
+        return result.toString();
+    }
+
+    /**
+     * Returns the size of an object of a class, without what its fields
+     * refer to.
+     *
+     * @param type class of the object
+     * @return estimated bytes
+     */
+    public static long shallowSize(Class<?> type) {
+        Long cached = SHALLOW_SIZES.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        long size = HEADER;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += fieldSize(field.getType());
+                }
+            }
+        }
+        size = align(size);
+        SHALLOW_SIZES.put(type, size);
+        return size;
+    }
+
+    /**
+     * Returns the size of an array.
+     *
+     * @param length       number of elements
+     * @param elementBytes bytes of an element, REFERENCE for objects
+     * @return estimated bytes
+     */
+    public static long arraySize(long length, int elementBytes) {
+        return align(ARRAY_HEADER + length * elementBytes);
+    }
+
+    /**
+     * Returns the size of an ArrayList and its array, without the elements.
+     * The array has the capacity of a list grown to this size one add at a
+     * time, an empty list shares an empty array.
+     *
+     * @param size number of elements
+     * @return estimated bytes
+     */
+    public static long arrayListSize(int size) {
+        if (size == 0) {
+            return shallowSize(ArrayList.class);
+        }
+        long capacity = LIST_CAPACITY;
+        while (capacity < size) {
+            capacity += capacity >> 1;
+        }
+        return shallowSize(ArrayList.class) + arraySize(capacity, REFERENCE);
+    }
+
+    /**
+     * Returns the size of a HashMap, its table and its entries, without the
+     * keys and the values.
+     *
+     * @param size number of entries
+     * @return estimated bytes
+     */
+    public static long hashMapSize(int size) {
+        //the table doubles when it's 3/4 full
+        long capacity = 16;
+        while (capacity * 3 / 4 < size) {
+            capacity *= 2;
+        }
+        return shallowSize(HashMap.class) + arraySize(capacity, REFERENCE) + (long) size * MAP_ENTRY;
+    }
+
+    /**
+     * Returns the size of boxed Integer or Long values, as the values of a
+     * map.
+     *
+     * @param count number of values
+     * @return estimated bytes
+     */
+    public static long boxedSize(long count) {
+        return count * BOXED;
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
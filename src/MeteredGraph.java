@@ -0,0 +1,133 @@
+import java.util.List;
+import java.util.Queue;
+import java.util.Stack;
+
+/**
+ * This generic class is a Graph that records the latency of every
+ * GraphInterface operation in Metrics. SocialConnect uses it instead of Graph
+ * when the metrics are on, so a plain Graph carries no timing code at all.
+ *
+ * @param <T> key type
+ */
+public class MeteredGraph<T> extends Graph<T> {
+
+    @Override
+    public boolean addVertex(T vertexLabel) {
+        long start = Metrics.start();
+        try {
+            return super.addVertex(vertexLabel);
+        } finally {
+            Metrics.stop(Metrics.Operation.ADD_VERTEX, start);
+        }
+    }
+
+    @Override
+    public VertexInterface<T> removeVertex(T vertexLabel) {
+        long start = Metrics.start();
+        try {
+            return super.removeVertex(vertexLabel);
+        } finally {
+            Metrics.stop(Metrics.Operation.REMOVE_VERTEX, start);
+        }
+    }
+
+    @Override
+    public boolean addEdge(T begin, T end, double edgeWeight) {
+        long start = Metrics.start();
+        try {
+            return super.addEdge(begin, end, edgeWeight);
+        } finally {
+            Metrics.stop(Metrics.Operation.ADD_EDGE, start);
+        }
+    }
+
+    @Override
+    public boolean addEdge(T begin, T end) {
+        long start = Metrics.start();
+        try {
+            return super.addEdge(begin, end);
+        } finally {
+            Metrics.stop(Metrics.Operation.ADD_EDGE, start);
+        }
+    }
+
+    @Override
+    public boolean removeEdge(T begin, T end, double edgeWeight) {
+        long start = Metrics.start();
+        try {
+            return super.removeEdge(begin, end, edgeWeight);
+        } finally {
+            Metrics.stop(Metrics.Operation.REMOVE_EDGE, start);
+        }
+    }
+
+    @Override
+    public boolean removeEdge(T begin, T end) {
+        long start = Metrics.start();
+        try {
+            return super.removeEdge(begin, end);
+        } finally {
+            Metrics.stop(Metrics.Operation.REMOVE_EDGE, start);
+        }
+    }
+
+    @Override
+    public boolean hasEdge(T begin, T end) {
+        long start = Metrics.start();
+        try {
+            return super.hasEdge(begin, end);
+        } finally {
+            Metrics.stop(Metrics.Operation.HAS_EDGE, start);
+        }
+    }
+
+    @Override
+    public VertexInterface<T> getVertex(T vertexLabel) {
+        long start = Metrics.start();
+        try {
+            return super.getVertex(vertexLabel);
+        } finally {
+            Metrics.stop(Metrics.Operation.GET_VERTEX, start);
+        }
+    }
+
+    @Override
+    public List<VertexInterface<T>> getVertices() {
+        long start = Metrics.start();
+        try {
+            return super.getVertices();
+        } finally {
+            Metrics.stop(Metrics.Operation.GET_VERTICES, start);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long start = Metrics.start();
+        try {
+            super.clear();
+        } finally {
+            Metrics.stop(Metrics.Operation.CLEAR, start);
+        }
+    }
+
+    @Override
+    public Queue<T> getBreadthFirstTraversal(T origin, TraversalBudget budget) {
+        long start = Metrics.start();
+        try {
+            return super.getBreadthFirstTraversal(origin, budget);
+        } finally {
+            Metrics.stop(Metrics.Operation.BREADTH_FIRST_TRAVERSAL, start);
+        }
+    }
+
+    @Override
+    public int getShortestPath(T origin, T destination, Stack<T> path, TraversalBudget budget) {
+        long start = Metrics.start();
+        try {
+            return super.getShortestPath(origin, destination, path, budget);
+        } finally {
+            Metrics.stop(Metrics.Operation.SHORTEST_PATH, start);
+        }
+    }
+}
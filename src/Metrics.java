@@ -0,0 +1,210 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * This class holds the process-wide metrics of the social networking app: a
+ * latency histogram for every public operation of SocialConnect and
+ * GraphInterface, the number of vertices and edges the traversals scan, and
+ * the size of the friend suggestion candidate sets.
+ * The counters are LongAdders, which stripe their cells per thread, so hot
+ * paths on many threads do not fight over a single cache line.
+ * Metrics are off unless the JVM is started with -Dsocialconnect.metrics=true.
+ * ENABLED is a static final constant, so when it is false the JIT removes every
+ * "if (Metrics.ENABLED)" block and the instrumentation costs nothing.
+ */
+public final class Metrics {
+
+    /**
+     * true if the metrics are recorded.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("socialconnect.metrics");
+
+    /**
+     * Operations that have a latency histogram.
+     */
+    public enum Operation {
+        //SocialConnect
+        ADD_USER,
+        REMOVE_USER,
+        CREATE_FRIENDSHIP,
+        REMOVE_FRIENDSHIP,
+        HAS_FRIENDSHIP,
+        IN_SAME_COMPONENT,
+        TRAVERSE,
+        EXISTS,
+        FRIEND_SUGGESTION,
+        FRIENDSHIP_DISTANCE,
+        FRIENDSHIP_DISTANCES,
+        INFLUENCE,
+        TRIANGLES,
+        SAMPLE_NEIGHBORHOOD,
+        RANDOM_WALK,
+        SEARCH,
+        FRIENDS,
+        HISTORY,
+        FOLLOW,
+        MUTUAL_FRIENDS,
+        LINK_PREDICTION,
+        //GraphInterface
+        ADD_VERTEX,
+        REMOVE_VERTEX,
+        ADD_EDGE,
+        REMOVE_EDGE,
+        HAS_EDGE,
+        GET_VERTEX,
+        GET_VERTICES,
+        CLEAR,
+        BREADTH_FIRST_TRAVERSAL,
+        SHORTEST_PATH
+    }
+
+    //latency of every operation in nanoseconds, indexed by ordinal
+    private static final Histogram[] LATENCIES = new Histogram[Operation.values().length];
+    //vertices and edges scanned by all the traversals
+    private static final LongAdder VERTICES_SCANNED = new LongAdder();
+    private static final LongAdder EDGES_SCANNED = new LongAdder();
+    //vertices scanned by a single traversal
+    private static final Histogram VERTICES_PER_QUERY = new Histogram();
+    //size of the candidate set of a single friend suggestion
+    private static final Histogram SUGGESTION_CANDIDATES = new Histogram();
+
+    static {
+        for (int i = 0; i < LATENCIES.length; i++) {
+            LATENCIES[i] = new Histogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the start time of an operation, to be passed to stop. It's 0 if
+     * the metrics are off.
+     *
+     * @return start time in nanoseconds
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the latency of an operation.
+     *
+     * @param operation operation that finished
+     * @param start     value returned by start
+     */
+    public static void stop(Operation operation, long start) {
+        if (ENABLED) {
+            LATENCIES[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the work done by one traversal.
+     *
+     * @param vertices number of vertices scanned
+     * @param edges    number of edges scanned
+     */
+    public static void scanned(long vertices, long edges) {
+        if (ENABLED) {
+            VERTICES_SCANNED.add(vertices);
+            EDGES_SCANNED.add(edges);
+            VERTICES_PER_QUERY.record(vertices);
+        }
+    }
+
+    /**
+     * Records the size of a friend suggestion candidate set.
+     *
+     * @param candidates number of candidates
+     */
+    public static void suggested(long candidates) {
+        if (ENABLED) {
+            SUGGESTION_CANDIDATES.record(candidates);
+        }
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param operation operation
+     * @return histogram in nanoseconds
+     */
+    public static Histogram getLatency(Operation operation) {
+        return LATENCIES[operation.ordinal()];
+    }
+
+    /**
+     * Returns the number of vertices scanned by all the traversals.
+     *
+     * @return number of vertices
+     */
+    public static long getVerticesScanned() {
+        return VERTICES_SCANNED.sum();
+    }
+
+    /**
+     * Returns the number of edges scanned by all the traversals.
+     *
+     * @return number of edges
+     */
+    public static long getEdgesScanned() {
+        return EDGES_SCANNED.sum();
+    }
+
+    /**
+     * Returns a report of every metric, one per line. Operations that were never
+     * called are left out.
+     *
+     * @return report
+     */
+    public static String snapshot() {
+        StringBuilder report = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            Histogram latency = getLatency(operation);
+            if (latency.getCount() > 0) {
+                report.append(operation).append(" latency(ns): ").append(latency).append('\n');
+            }
+        }
+        report.append("vertices scanned: ").append(getVerticesScanned()).append('\n');
+        report.append("edges scanned: ").append(getEdgesScanned()).append('\n');
+        report.append("vertices per query: ").append(VERTICES_PER_QUERY).append('\n');
+        report.append("suggestion candidates: ").append(SUGGESTION_CANDIDATES).append('\n');
+        return report.toString();
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public static void reset() {
+        for (Histogram latency : LATENCIES) {
+            latency.reset();
+        }
+        VERTICES_SCANNED.reset();
+        EDGES_SCANNED.reset();
+        VERTICES_PER_QUERY.reset();
+        SUGGESTION_CANDIDATES.reset();
+    }
+
+    /**
+     * Passes a snapshot to the exporter periodically, on a daemon thread. Shut
+     * the returned executor down to stop.
+     *
+     * @param period   time between two snapshots
+     * @param unit     unit of period
+     * @param exporter receives the snapshots
+     * @return executor running the export
+     */
+    public static ScheduledExecutorService export(long period, TimeUnit unit, Consumer<String> exporter) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> exporter.accept(snapshot()), period, period, unit);
+        return executor;
+    }
+}
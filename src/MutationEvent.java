@@ -0,0 +1,83 @@
+/**
+ * This class is a change of a SocialConnect, as passed to the handlers of a
+ * MutationEventStream. The events are preallocated slots of the ring buffer
+ * and are reused once every handler has seen them, so a handler must copy the
+ * fields it wants to keep instead of keeping the event.
+ */
+public class MutationEvent {
+
+    /**
+     * Kinds of changes.
+     */
+    public enum Type {
+        //a user was added, the profile is the user
+        ADD_USER,
+        //a user was removed with all their friendships, the profile is the user
+        REMOVE_USER,
+        //a friendship was created between the profile and the other one
+        CREATE_FRIENDSHIP,
+        //a friendship was removed between the profile and the other one
+        REMOVE_FRIENDSHIP,
+        //the name of the profile changed
+        NAME_CHANGED,
+        //the status of the profile changed
+        STATUS_CHANGED
+    }
+
+    private long sequence;
+    private Type type;
+    private Profile profile;
+    private Profile other;
+
+    /**
+     * Fills the slot, called by the stream before publishing it.
+     */
+    void set(long sequence, Type type, Profile profile, Profile other) {
+        this.sequence = sequence;
+        this.type = type;
+        this.profile = profile;
+        this.other = other;
+    }
+
+    /**
+     * Returns the position of the event in the stream, it grows by one on every
+     * event.
+     *
+     * @return sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the kind of change.
+     *
+     * @return type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the profile that changed, or the first end of a friendship.
+     *
+     * @return profile
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Returns the second end of a friendship, null for the other events.
+     *
+     * @return profile
+     */
+    public Profile getOther() {
+        return other;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " " + profile.getID() + (other == null ? "" : " " + other.getID());
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class passes MutationEvents from any number of publishing threads to
+ * any number of handlers, through a ring buffer of preallocated events in the
+ * style of the LMAX Disruptor. Nothing is locked and nothing is allocated per
+ * event:
+ * <ul>
+ * <li>a publisher claims a sequence number with one atomic increment, fills
+ * the slot of that number and marks the slot available for the round the
+ * number belongs to,</li>
+ * <li>every handler runs on its own thread, takes every available event up
+ * to the last published one as a batch, and only then moves its own
+ * sequence forward,</li>
+ * <li>a publisher that would overwrite an event some handler has not seen
+ * yet waits for it. This is the backpressure: a slow handler slows the
+ * publishers down instead of losing events or growing a queue.</li>
+ * </ul>
+ * With no handler subscribed, events are overwritten freely.
+ */
+public class MutationEventStream {
+
+    /**
+     * Receives the events of a stream, on the thread of its subscription.
+     */
+    public interface Handler {
+
+        /**
+         * Called for every event in order. The event is only valid during the
+         * call.
+         *
+         * @param event      event
+         * @param endOfBatch true if it's the last event available for now, a
+         *                   good time to flush the work done for the batch
+         */
+        public void onEvent(MutationEvent event, boolean endOfBatch);
+    }
+
+    /**
+     * A handler running on its own thread, close it to stop receiving events.
+     */
+    public class Subscription {
+
+        //last sequence the handler is done with
+        private final AtomicLong sequence;
+        private final Handler handler;
+        private final Thread thread;
+        private volatile boolean running;
+
+        private Subscription(Handler handler, String name) {
+            this.handler = handler;
+            sequence = new AtomicLong(cursor.get());
+            running = true;
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Stops the handler after the batch it's handling, and waits for its
+         * thread to end.
+         *
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public void close() throws InterruptedException {
+            running = false;
+            LockSupport.unpark(thread);
+            thread.join();
+            gating.remove(sequence);
+        }
+
+        /**
+         * Returns the last sequence the handler is done with.
+         *
+         * @return sequence number
+         */
+        public long getSequence() {
+            return sequence.get();
+        }
+
+        /**
+         * Handles the batches until closed.
+         */
+        private void run() {
+            long next = sequence.get() + 1;
+            int idle = 0;
+            while (running) {
+                long last = next - 1;
+                while (isAvailable(last + 1)) {
+                    last++;
+                }
+                if (last < next) {
+                    idle = idle(idle);
+                    continue;
+                }
+                idle = 0;
+
+                for (long s = next; s <= last; s++) {
+                    try {
+                        handler.onEvent(events[(int) s & mask], s == last);
+                    } catch (RuntimeException e) {
+                        //a failing event doesn't stop the stream
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+                sequence.lazySet(last);
+                next = last + 1;
+            }
+        }
+    }
+
+    private final MutationEvent[] events;
+    private final int mask;
+    private final int shift;
+    //round in which every slot was last published, -1 before the first one
+    private final AtomicIntegerArray available;
+    //last claimed sequence
+    private final AtomicLong cursor;
+    //sequences of the subscribed handlers, publishers don't pass the slowest one
+    private final CopyOnWriteArrayList<AtomicLong> gating;
+    //last known sequence of the slowest handler, saves reading all of them on every event
+    private volatile long gatingCache;
+
+    /**
+     * initializes an empty stream.
+     *
+     * @param capacity number of events in the ring buffer, rounded up to a power of two
+     */
+    public MutationEventStream(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        events = new MutationEvent[size];
+        for (int i = 0; i < size; i++) {
+            events[i] = new MutationEvent();
+        }
+        mask = size - 1;
+        shift = Integer.numberOfTrailingZeros(size);
+        available = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            available.set(i, -1);
+        }
+        cursor = new AtomicLong(-1);
+        gating = new CopyOnWriteArrayList<>();
+        gatingCache = -1;
+    }
+
+    /**
+     * Starts a handler on a new daemon thread. It receives the events published
+     * from now on.
+     *
+     * @param handler handler
+     * @param name    name of the thread
+     * @return subscription, to be closed to stop the handler
+     */
+    public Subscription subscribe(Handler handler, String name) {
+        Subscription subscription = new Subscription(handler, name);
+        gating.add(subscription.sequence);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Publishes an event. If the ring buffer is full, it waits until the slowest
+     * handler frees a slot.
+     *
+     * @param type    kind of change
+     * @param profile profile that changed, or the first end of a friendship
+     * @param other   second end of a friendship, null for the other events
+     * @return sequence number of the event
+     */
+    public long publish(MutationEvent.Type type, Profile profile, Profile other) {
+        long sequence = cursor.incrementAndGet();
+        long wrap = sequence - events.length;
+        if (wrap > gatingCache) {
+            long slowest;
+            int idle = 0;
+            while (wrap > (slowest = slowest(sequence))) {
+                idle = idle(idle);
+            }
+            gatingCache = slowest;
+        }
+
+        events[(int) sequence & mask].set(sequence, type, profile, other);
+        available.lazySet((int) sequence & mask, (int) (sequence >>> shift));
+        return sequence;
+    }
+
+    /**
+     * Returns the last published sequence, some events before it may still be
+     * being written.
+     *
+     * @return sequence number
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    /**
+     * Returns the number of events in the ring buffer.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /**
+     * Returns true if the event of a sequence is published.
+     */
+    private boolean isAvailable(long sequence) {
+        return available.get((int) sequence & mask) == (int) (sequence >>> shift);
+    }
+
+    /**
+     * Returns the sequence of the slowest handler, or the given one if there is
+     * no handler.
+     */
+    private long slowest(long sequence) {
+        long slowest = sequence;
+        for (AtomicLong handler : gating) {
+            slowest = Math.min(slowest, handler.get());
+        }
+        return slowest;
+    }
+
+    /**
+     * Waits a little longer on every idle round: spinning first, then yielding,
+     * then sleeping for short periods.
+     */
+    private static int idle(int rounds) {
+        if (rounds < 100) {
+            //spinning, the event is usually only a few nanoseconds away
+        } else if (rounds < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        return rounds + 1;
+    }
+}
@@ -0,0 +1,408 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * This class is a trace of SocialConnect operations that TraceReplayer can
+ * replay. Users are numbered from 0 in the order they are added, and every
+ * operation refers to them by number, so a trace doesn't depend on the IDs
+ * of the profiles. The first getSetup() operations build the initial graph,
+ * they are replayed without being measured.
+ * A trace is recorded from live calls with a Recorder, or generated from a
+ * seed, and stored as text, one operation per line:
+ * <pre>
+ * socialconnect-trace 1
+ * users 3
+ * setup 2
+ * ADD_USER 0
+ * ADD_USER 1
+ * CREATE_FRIENDSHIP 0 1
+ * ADD_USER 2
+ * FRIENDSHIP_DISTANCE 2 0
+ * </pre>
+ */
+public class OperationTrace {
+
+    /**
+     * The operations of a trace, the ones on a single user have no second
+     * user.
+     */
+    public enum Type {
+        ADD_USER,
+        CREATE_FRIENDSHIP,
+        REMOVE_FRIENDSHIP,
+        FRIEND_SUGGESTION,
+        FRIENDSHIP_DISTANCE,
+        TRAVERSE,
+        REMOVE_USER;
+
+        /**
+         * Returns true if the operation is on a pair of users.
+         *
+         * @return true for a pair
+         */
+        public boolean isPair() {
+            return this == CREATE_FRIENDSHIP || this == REMOVE_FRIENDSHIP || this == FRIENDSHIP_DISTANCE;
+        }
+    }
+
+    /**
+     * Records the operations of a live app as a trace, the profiles get
+     * numbers in the order they are added. A removed profile that is added
+     * again gets a new number, as a replay creates a new user for it. It's
+     * thread safe. An app records into it once it's given to
+     * SocialConnect.setRecorder, a served app too.
+     */
+    public static class Recorder {
+
+        private OperationTrace trace = new OperationTrace();
+        private Map<Profile, Integer> numbers = new HashMap<>();
+
+        /**
+         * Records an operation. An operation on a profile that was not
+         * recorded as added is dropped, the trace could not replay it.
+         *
+         * @param type operation
+         * @param a    the profile, or the first one of a pair
+         * @param b    the second profile of a pair, null otherwise
+         */
+        public synchronized void record(Type type, Profile a, Profile b) {
+            if (type == Type.ADD_USER) {
+                if (!numbers.containsKey(a)) {
+                    numbers.put(a, trace.users);
+                    trace.add(type, trace.users, -1);
+                    trace.users++;
+                }
+                return;
+            }
+            Integer first = type == Type.REMOVE_USER ? numbers.remove(a) : numbers.get(a);
+            Integer second = type.isPair() ? numbers.get(b) : Integer.valueOf(-1);
+            if (first != null && second != null) {
+                trace.add(type, first, second);
+            }
+        }
+
+        /**
+         * Ends the setup: the operations recorded so far build the initial
+         * graph and are not measured.
+         */
+        public synchronized void endSetup() {
+            trace.setup = trace.size;
+        }
+
+        /**
+         * Returns a copy of the operations recorded so far.
+         *
+         * @return trace
+         */
+        public synchronized OperationTrace getTrace() {
+            OperationTrace copy = new OperationTrace();
+            copy.users = trace.users;
+            copy.setup = trace.setup;
+            copy.size = trace.size;
+            copy.types = Arrays.copyOf(trace.types, trace.size);
+            copy.first = Arrays.copyOf(trace.first, trace.size);
+            copy.second = Arrays.copyOf(trace.second, trace.size);
+            return copy;
+        }
+    }
+
+    private static final String HEADER = "socialconnect-trace 1";
+    //share of every operation after the setup, in percent, in the order of Type. Users are not
+    //removed, the popular ones would leave the operations drawn on them with nothing to do
+    private static final int[] MIX = {2, 25, 8, 35, 25, 5, 0};
+
+    private int users;
+    private int setup;
+    private int size;
+    //the operations column by column, second is -1 for a single user
+    private Type[] types;
+    private int[] first;
+    private int[] second;
+
+    private OperationTrace() {
+        types = new Type[16];
+        first = new int[16];
+        second = new int[16];
+    }
+
+    /**
+     * Generates a trace from a seed, the same arguments give the same trace.
+     * The setup adds the users and the initial friendships. Then the
+     * operations are drawn from a fixed mix, mostly reads, and the users
+     * they are about follow a Zipfian popularity: a few users are in most of
+     * the friendships and the requests. The popular users are spread over
+     * the numbers at random. A user added after the setup befriends a user
+     * right away, and a removed friendship is one that exists at that point
+     * of the trace. There are exactly operations operations after the setup.
+     *
+     * @param users       number of users of the setup
+     * @param friendships number of friendships of the setup
+     * @param operations  number of operations after the setup
+     * @param exponent    skew of the popularity, 0 is uniform
+     * @param seed        seed of the random choices
+     * @return trace
+     */
+    public static OperationTrace generate(int users, int friendships, int operations, double exponent, long seed) {
+        if (users < 2) {
+            throw new IllegalArgumentException("a trace needs 2 users at least");
+        }
+        Random random = new Random(seed);
+        ZipfDistribution popularity = new ZipfDistribution(users, exponent);
+        //user number of every popularity rank
+        int[] ranked = new int[users];
+        for (int i = 0; i < users; i++) {
+            ranked[i] = i;
+        }
+        for (int i = users - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ranked[i];
+            ranked[i] = ranked[j];
+            ranked[j] = swap;
+        }
+
+        OperationTrace trace = new OperationTrace();
+        for (int i = 0; i < users; i++) {
+            trace.add(Type.ADD_USER, i, -1);
+        }
+        trace.users = users;
+        //the friendships at the current point of the trace, as pair keys, and as a list to draw removals from
+        Set<Long> existing = new HashSet<>();
+        List<Long> pairs = new ArrayList<>();
+        long limit = (long) users * (users - 1) / 2;
+        for (int f = 0; f < friendships && pairs.size() < limit; f++) {
+            int a = ranked[popularity.next(random)];
+            int b = ranked[popularity.next(random)];
+            if (a != b && existing.add(pair(a, b))) {
+                pairs.add(pair(a, b));
+                trace.add(Type.CREATE_FRIENDSHIP, a, b);
+            } else {
+                f--;
+            }
+        }
+        trace.setup = trace.size;
+
+        for (int n = 0; n < operations; n++) {
+            Type type = drawType(random);
+            //a new user takes two operations, the last one can't be one
+            while (type == Type.ADD_USER && n + 1 == operations) {
+                type = drawType(random);
+            }
+            int a = ranked[popularity.next(random)];
+            int b = ranked[popularity.next(random)];
+            switch (type) {
+                case ADD_USER:
+                    trace.add(Type.ADD_USER, trace.users, -1);
+                    if (existing.add(pair(trace.users, a))) {
+                        pairs.add(pair(trace.users, a));
+                    }
+                    trace.add(Type.CREATE_FRIENDSHIP, trace.users, a);
+                    trace.users++;
+                    n++;
+                    break;
+                case CREATE_FRIENDSHIP:
+                    if (a != b && existing.add(pair(a, b))) {
+                        pairs.add(pair(a, b));
+                    }
+                    trace.add(type, a, b);
+                    break;
+                case REMOVE_FRIENDSHIP:
+                    if (!pairs.isEmpty()) {
+                        int i = random.nextInt(pairs.size());
+                        long removed = pairs.get(i);
+                        pairs.set(i, pairs.get(pairs.size() - 1));
+                        pairs.remove(pairs.size() - 1);
+                        existing.remove(removed);
+                        a = (int) (removed >>> 32);
+                        b = (int) removed;
+                    }
+                    trace.add(type, a, b);
+                    break;
+                default:
+                    trace.add(type, a, type.isPair() ? b : -1);
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Reads a trace written by write.
+     *
+     * @param path file to read
+     * @return trace
+     * @throws IOException if the file can't be read or is not a trace
+     */
+    public static OperationTrace read(Path path) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(in.readLine())) {
+                throw new IOException(path + " is not an operation trace");
+            }
+            OperationTrace trace = new OperationTrace();
+            trace.users = number(in.readLine(), "users", 2);
+            int setup = number(in.readLine(), "setup", 3);
+            String line;
+            for (int number = 4; (line = in.readLine()) != null; number++) {
+                String[] fields = line.trim().split(" +");
+                try {
+                    Type type = Type.valueOf(fields[0]);
+                    int a = Integer.parseInt(fields[1]);
+                    int b = type.isPair() ? Integer.parseInt(fields[2]) : -1;
+                    if (a < 0 || a >= trace.users || b < -1 || b >= trace.users) {
+                        throw new IOException("line " + number + ": user out of range");
+                    }
+                    trace.add(type, a, b);
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException("line " + number + ": bad operation " + line);
+                }
+            }
+            if (setup > trace.size) {
+                throw new IOException("setup longer than the trace");
+            }
+            trace.setup = setup;
+            return trace;
+        }
+    }
+
+    /**
+     * Writes the trace as text.
+     *
+     * @param path file to write to, it's replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            out.write("users " + users);
+            out.newLine();
+            out.write("setup " + setup);
+            out.newLine();
+            for (int i = 0; i < size; i++) {
+                out.write(types[i].name());
+                out.write(' ');
+                out.write(Integer.toString(first[i]));
+                if (second[i] != -1) {
+                    out.write(' ');
+                    out.write(Integer.toString(second[i]));
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of users the trace refers to.
+     *
+     * @return number of users
+     */
+    public int getUsers() {
+        return users;
+    }
+
+    /**
+     * Returns the number of operations of the setup.
+     *
+     * @return operations before the measured ones
+     */
+    public int getSetup() {
+        return setup;
+    }
+
+    /**
+     * Returns the number of operations, the setup included.
+     *
+     * @return number of operations
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the type of an operation.
+     *
+     * @param i position of the operation
+     * @return type
+     */
+    public Type getType(int i) {
+        return types[i];
+    }
+
+    /**
+     * Returns the user of an operation, or the first one of a pair.
+     *
+     * @param i position of the operation
+     * @return user number
+     */
+    public int getFirst(int i) {
+        return first[i];
+    }
+
+    /**
+     * Returns the second user of an operation on a pair.
+     *
+     * @param i position of the operation
+     * @return user number, -1 for an operation on a single user
+     */
+    public int getSecond(int i) {
+        return second[i];
+    }
+
+    private void add(Type type, int a, int b) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            first = Arrays.copyOf(first, size * 2);
+            second = Arrays.copyOf(second, size * 2);
+        }
+        types[size] = type;
+        first[size] = a;
+        second[size] = b;
+        size++;
+    }
+
+    /**
+     * Draws the type of an operation from the mix.
+     */
+    private static Type drawType(Random random) {
+        int point = random.nextInt(100);
+        Type[] values = Type.values();
+        for (int t = 0; t < values.length; t++) {
+            point -= MIX[t];
+            if (point < 0) {
+                return values[t];
+            }
+        }
+        return values[values.length - 1];
+    }
+
+    /**
+     * Key of an unordered pair of users.
+     */
+    private static long pair(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+    /**
+     * Parses a header line "name value".
+     */
+    private static int number(String line, String name, int lineNumber) throws IOException {
+        if (line != null && line.startsWith(name + " ")) {
+            try {
+                return Integer.parseInt(line.substring(name.length() + 1).trim());
+            } catch (NumberFormatException e) {
+                //reported below
+            }
+        }
+        throw new IOException("line " + lineNumber + ": expected " + name);
+    }
+}
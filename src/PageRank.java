@@ -0,0 +1,190 @@
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * This generic class scores the vertices of a graph by influence. It computes
+ * PageRank and degree centrality over a GraphSnapshot.
+ * PageRank is computed by pull-based power iteration: in every iteration each
+ * vertex sums the contributions of its neighbors, so no two threads ever write
+ * the same slot and the vertices can be processed in parallel without locks.
+ * Iteration stops when the L1 change of the scores drops below the tolerance.
+ * A new computation starts from the previous scores, so after a few
+ * incremental changes it converges in a handful of iterations.
+ *
+ * @param <T> key type
+ */
+public class PageRank<T> {
+
+    public static final double DEFAULT_DAMPING = 0.85;
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+    //below this many vertices the parallel streams cost more than they save
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    //probability of following an edge instead of jumping to a random vertex
+    private double damping;
+    //iteration stops when the L1 change of the scores is below this
+    private double tolerance;
+    private int maxIterations;
+
+    //the snapshot of the last computation
+    private GraphSnapshot<T> snapshot;
+    //PageRank of every dense id of the snapshot, they sum to 1
+    private double[] scores;
+    //number of iterations the last computation took
+    private int iterations;
+
+    /**
+     * initializes the ranking with the default parameters.
+     */
+    public PageRank() {
+        this(DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * initializes the ranking with the given parameters.
+     *
+     * @param damping       probability of following an edge, between 0 and 1
+     * @param tolerance     L1 change to stop at
+     * @param maxIterations upper bound on the iterations
+     */
+    public PageRank(double damping, double tolerance, int maxIterations) {
+        this.damping = damping;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        scores = new double[0];
+    }
+
+    /**
+     * Computes the scores of the given snapshot. Vertices that were scored by
+     * the previous computation start from their previous score.
+     *
+     * @param graph snapshot to rank
+     * @return number of iterations it took
+     */
+    public int compute(GraphSnapshot<T> graph) {
+        int n = graph.size();
+        double[] rank = warmStart(graph);
+        double[] next = new double[n];
+        double[] contribution = new double[n];
+        int[] offsets = graph.getOffsets();
+        int[] neighbors = graph.getNeighbors();
+        boolean parallel = n >= PARALLEL_THRESHOLD;
+
+        iterations = 0;
+        while (iterations < maxIterations && n > 0) {
+            iterations++;
+
+            //every vertex spreads its rank evenly among its neighbors, vertices without a
+            //neighbor spread it over the whole graph
+            double dangling = 0;
+            for (int v = 0; v < n; v++) {
+                int degree = offsets[v + 1] - offsets[v];
+                if (degree == 0) {
+                    dangling += rank[v];
+                    contribution[v] = 0;
+                } else {
+                    contribution[v] = rank[v] / degree;
+                }
+            }
+            double base = (1 - damping) / n + damping * dangling / n;
+
+            //pulling the contributions of the neighbors
+            final double[] from = rank;
+            final double[] to = next;
+            range(n, parallel).forEach(v -> {
+                double sum = 0;
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    sum += contribution[neighbors[i]];
+                }
+                to[v] = base + damping * sum;
+            });
+            double change = range(n, parallel).mapToDouble(v -> Math.abs(to[v] - from[v])).sum();
+
+            rank = next;
+            next = from;
+            if (change < tolerance) {
+                break;
+            }
+        }
+
+        snapshot = graph;
+        scores = rank;
+        return iterations;
+    }
+
+    /**
+     * Returns the PageRank of a vertex in the last computation, 0 if it was not
+     * ranked.
+     *
+     * @param label vertexLabel
+     * @return score
+     */
+    public double getScore(T label) {
+        int id = snapshot == null ? -1 : snapshot.indexOf(label);
+        return id == -1 ? 0 : scores[id];
+    }
+
+    /**
+     * Returns the degree centrality of a vertex in the last computation, i.e.
+     * its number of neighbors divided by the number of other vertices. It's 0
+     * if the vertex was not ranked.
+     *
+     * @param label vertexLabel
+     * @return degree centrality between 0 and 1
+     */
+    public double getDegreeCentrality(T label) {
+        int id = snapshot == null ? -1 : snapshot.indexOf(label);
+        if (id == -1 || snapshot.size() < 2) {
+            return 0;
+        }
+        return (double) snapshot.degree(id) / (snapshot.size() - 1);
+    }
+
+    /**
+     * Returns a comparator that orders the vertices from the most to the least
+     * influential.
+     *
+     * @return comparator by descending PageRank
+     */
+    public Comparator<T> byScore() {
+        return (a, b) -> Double.compare(getScore(b), getScore(a));
+    }
+
+    /**
+     * Returns the number of iterations of the last computation.
+     *
+     * @return number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Creates the starting vector. Vertices that were ranked before keep their
+     * score, new vertices start from 1/n, then everything is normalized to 1.
+     */
+    private double[] warmStart(GraphSnapshot<T> graph) {
+        int n = graph.size();
+        double[] rank = new double[n];
+        double total = 0;
+        for (int v = 0; v < n; v++) {
+            int previous = snapshot == null ? -1 : snapshot.indexOf(graph.getLabel(v));
+            rank[v] = previous == -1 ? 1.0 / n : scores[previous];
+            total += rank[v];
+        }
+        for (int v = 0; v < n; v++) {
+            rank[v] /= total;
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the stream of dense ids, parallel for big graphs.
+     */
+    private static IntStream range(int n, boolean parallel) {
+        IntStream range = IntStream.range(0, n);
+        return parallel ? range.parallel() : range;
+    }
+}
@@ -1,18 +1,47 @@
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
 
+/**
+ * A profile is a lightweight handle: it keeps its unique ID and its friends,
+ * while the name and the status of a user of an app are stored in a slot of
+ * the ProfileStore of the app, where repeated values are kept only once. A
+ * profile that is in no app keeps its own name and status, the app takes
+ * them on addUser and gives them back on removeUser.
+ */
 public class Profile implements Comparable<Profile>{
 
 	//this static counter will be used while generate unique ID
 	private static int counter=0;
+	//sequence number of the last friendship made, it orders the friends by creation
+	private static long friendships=0;
+	//number of friends display prints at most
+	private static final int DISPLAY_LIMIT=100;
+	//reference of the name of a profile that is not in the store asked for
+	private static final int NO_REF=-2;
 
 	//every profile will have a unique id
 	private int ID;
-	// a String value that represents the full name of the user.
-	private String name;
-	// a String that the user uses to specify their status.
-	private String status;
+	// store of the app the profile is in and its slot there, null when it's in no app, guarded by this
+	private ProfileStore store;
+	private int slot;
+	// the full name and the status while the profile is in no app, guarded by this
+	private String name="";
+	private String status="";
 	// an arraylist of profiles that stores friends of the user
 	private ArrayList<Profile> friendProfiles;
+	// friendship sequence number of every friend, in the same order, so it's increasing
+	private long[] friendSince;
+	// friends of a loaded profile, not yet copied to friendProfiles: loaded[loadedFriends[loadedFrom]]
+	// up to loadedTo, oldest first. loadedFriends is null once they are materialized
+	private Profile[] loaded;
+	private int[] loadedFriends;
+	private int loadedFrom;
+	private int loadedTo;
 
 	/**
 	 * constructor - initializes all the String attributes to empty strings and a
@@ -24,10 +53,9 @@ public class Profile implements Comparable<Profile>{
 		//and this counter number will be our unique ID
 		ID=counter;
 
-		//initializing rest of the attributes
-		name="";
-		status="";
+		//initializing rest of the attributes, the name and the status start as empty strings
 		friendProfiles=new ArrayList<>();
+		friendSince=new long[0];
 	}
 
 	/**
@@ -37,7 +65,12 @@ public class Profile implements Comparable<Profile>{
 		this();
 		this.name=name;
 		this.status=status;
-		this.friendProfiles=friendProfiles;
+		//copied, as the sequence numbers have to follow every change of the list
+		this.friendProfiles=new ArrayList<>(friendProfiles);
+		friendSince=new long[friendProfiles.size()];
+		for (int i = 0; i < friendSince.length; i++) {
+			friendSince[i]=++friendships;
+		}
 	}
 
 	/**
@@ -50,20 +83,84 @@ public class Profile implements Comparable<Profile>{
 		this.status=status;
 	}
 
+	/**
+	 * Returns a profile for a user that already has an ID, e.g. one read back
+	 * from another process or from a file. It keeps that ID unless a profile
+	 * of this process may have it already, then it gets a new one, so two
+	 * profiles never share an ID. The IDs made afterwards come after both.
+	 * @param ID the ID it had
+	 * @param name name
+	 * @param status status
+	 * @return profile with that ID, or with a new one
+	 */
+	static Profile restore(int ID, String name, String status) {
+		//every ID up to the counter has been handed out
+		Profile profile=ID>counter ? new Profile(ID, name, status) : new Profile(name, status);
+		counter=Math.max(counter, ID);
+		return profile;
+	}
+
+	/**
+	 * constructor - initializes a profile with a given ID, see restore.
+	 * @param ID the unique ID
+	 * @param name name
+	 * @param status status
+	 */
+	private Profile(int ID, String name, String status) {
+		this.ID=ID;
+		friendProfiles=new ArrayList<>();
+		friendSince=new long[0];
+		this.name=name;
+		this.status=status;
+	}
+
+	/**
+	 * Replaces the name and the status of a profile read back again from
+	 * where restore read it. A profile in an app is left as it is, it's
+	 * changed through the setters.
+	 * @param name name
+	 * @param status status
+	 */
+	synchronized void refresh(String name, String status) {
+		if (store == null) {
+			this.name=name;
+			this.status=status;
+		}
+	}
+
 	/**
 	 * the setter method for the name attribute that accepts the first and last name
 	 * of the user and set the name attribute with firstName +  +lastName (Note
 	 * the space between the two names).
 	 */
 	public void setName(String firstName, String lastName) {
-		name=firstName +" "+lastName;
+		ProfileStore owner;
+		synchronized (this) {
+			if (store == null) {
+				name=firstName+" "+lastName;
+				return;
+			}
+			owner=store;
+			//the parts are encoded one after another, the whole name is never built
+			owner.setName(slot, firstName, " ", lastName);
+		}
+		//the listeners of the store are called outside of the lock of the profile
+		owner.changed(ID, true);
+	}
+
+	/**
+	 * Getter for the unique ID
+	 * @return ID
+	 */
+	public int getID() {
+		return ID;
 	}
 
 	/**
 	 * the getter method for the name attribute.
 	 */
-	public String getName() {
-		return name;
+	public synchronized String getName() {
+		return store == null ? name : store.getName(slot);
 	}
 
 	/**
@@ -71,15 +168,25 @@ public class Profile implements Comparable<Profile>{
 	 * @param status status
 	 */
 	public void setStatus(String status) {
-		this.status=status;
+		ProfileStore owner;
+		synchronized (this) {
+			if (store == null) {
+				this.status=status;
+				return;
+			}
+			owner=store;
+			owner.setStatus(slot, status);
+		}
+		//the listeners of the store are called outside of the lock of the profile
+		owner.changed(ID, false);
 	}
 
 	/**
 	 * Getter for status
 	 * @return status
 	 */
-	public String getStatus() {
-		return status;
+	public synchronized String getStatus() {
+		return store == null ? status : store.getStatus(slot);
 
 	}
 
@@ -90,8 +197,8 @@ public class Profile implements Comparable<Profile>{
 	 * 
 	 */
 	public String toString() {
-		return "Name: " + name + "\n\tStatus: " + status +
-	  "\n\tNumber of friend profiles: " + friendProfiles.size() + "\n";
+		return "Name: " + getName() + "\n\tStatus: " + getStatus() +
+	  "\n\tNumber of friend profiles: " + getFriendProfiles().size() + "\n";
 	}
 
 	/**
@@ -102,26 +209,103 @@ public class Profile implements Comparable<Profile>{
 
 		//printing everything as it is in the example run
 
-		System.out.println("Name: " + name + "\n\tStatus: " + status +
-				"\n\tNumber of friend profiles: " + friendProfiles.size());
+		System.out.print("Name: ");
+		System.out.print(getName());
+		System.out.print("\n\tStatus: ");
+		System.out.print(getStatus());
+		System.out.print("\n\tNumber of friend profiles: ");
+		List<Profile> friends=getFriendProfiles();
+		System.out.println(friends.size());
 		System.out.println("Friends:");
-		for (Profile friendProfile : friendProfiles) {
-			System.out.println("\t"+friendProfile.getName());
+		//a profile with a lot of friends only shows the first ones
+		for (int i = 0; i < friends.size() && i < DISPLAY_LIMIT; i++) {
+			System.out.println("\t"+friends.get(i).getName());
+		}
+		if (friends.size() > DISPLAY_LIMIT) {
+			System.out.println("\t... and "+(friends.size()-DISPLAY_LIMIT)+" more");
 		}
 		System.out.println();
 	}
 
 	/**
-	 * Getter for friendProfiles
+	 * Getter for friendProfiles, it's a read-only view of the list, not a copy.
 	 */
-	public ArrayList<Profile> getFriendProfiles() {
-		return friendProfiles;
+	public List<Profile> getFriendProfiles() {
+		if (loadedFriends != null) {
+			//read straight from the loaded row
+			return new AbstractList<Profile>() {
+				@Override
+				public Profile get(int index) {
+					if (index < 0 || index >= size()) {
+						throw new IndexOutOfBoundsException("Index: "+index);
+					}
+					return loadedFriends != null ? loaded[loadedFriends[loadedFrom+index]] : friendProfiles.get(index);
+				}
+
+				@Override
+				public int size() {
+					return loadedFriends != null ? loadedTo-loadedFrom : friendProfiles.size();
+				}
+			};
+		}
+		return Collections.unmodifiableList(friendProfiles);
+	}
+
+	/**
+	 * Returns up to limit friends after the cursor, in the given order. Pass
+	 * FriendPage.FIRST for the first page and the cursor of the page for the next
+	 * one. Only the friends of the page are copied: in creation order the start
+	 * is found by binary search, in ID order the friends are scanned once keeping
+	 * the limit smallest IDs after the cursor.
+	 * @param cursor key of the last friend of the previous page
+	 * @param limit maximum number of friends on the page, at least 1
+	 * @param order order of the friends
+	 * @return page of friends
+	 * @throws IllegalArgumentException if limit is less than 1, a page could never move on
+	 */
+	public FriendPage getFriends(long cursor, int limit, FriendPage.Order order) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+		materialize();
+		List<Profile> page=new ArrayList<>();
+		if (order == FriendPage.Order.CREATION) {
+			int from=Arrays.binarySearch(friendSince, 0, friendProfiles.size(), cursor);
+			from=from >= 0 ? from+1 : -from-1;
+			int to=Math.min(from+limit, friendProfiles.size());
+			page.addAll(friendProfiles.subList(from, to));
+			long next=to > from ? friendSince[to-1] : cursor;
+			return new FriendPage(page, next, to < friendProfiles.size());
+		}
+
+		//a max-heap of the limit smallest IDs after the cursor
+		PriorityQueue<Profile> smallest=new PriorityQueue<>(Collections.reverseOrder());
+		int after=0;
+		for (Profile friendProfile : friendProfiles) {
+			if (friendProfile.ID > cursor) {
+				after++;
+				smallest.add(friendProfile);
+				if (smallest.size() > limit) {
+					smallest.poll();
+				}
+			}
+		}
+		page.addAll(smallest);
+		Collections.sort(page);
+		long next=page.isEmpty() ? cursor : page.get(page.size()-1).ID;
+		return new FriendPage(page, next, after > page.size());
 	}
 
 	/**
 	 * add a new friend to the friends list
 	 */
 	public void addFriend(Profile user) {
+		materialize();
+		int size=friendProfiles.size();
+		if (size == friendSince.length) {
+			friendSince=Arrays.copyOf(friendSince, Math.max(4, size*2));
+		}
+		friendSince[size]=++friendships;
 		friendProfiles.add(user);
 	}
 
@@ -130,12 +314,20 @@ public class Profile implements Comparable<Profile>{
 	 * removal of the profile is successful, false otherwise.
 	 */
 	public boolean unFriend(Profile user) {
+		materialize();
 		//we itarate over all the friends and find the profile who we want to unfriend
-		for (Profile friendProfile : friendProfiles) {
+		//names of the same store are compared by their reference, without decoding them
+		ProfileStore owner=user.owner();
+		int name=user.nameRef(owner);
+		for (int i = 0; i < friendProfiles.size(); i++) {
 
-			if(friendProfile.getName().equals(user.getName())){
-				//when found we'll remove him from friend list
-				friendProfiles.remove(friendProfile);
+			int ref=friendProfiles.get(i).nameRef(owner);
+			boolean same=name != NO_REF && ref != NO_REF ? ref == name
+					: Objects.equals(friendProfiles.get(i).getName(), user.getName());
+			if(same){
+				//when found we'll remove him from friend list, with his sequence number
+				friendProfiles.remove(i);
+				System.arraycopy(friendSince, i+1, friendSince, i, friendProfiles.size()-i);
 				return true;
 			}
 		}
@@ -143,6 +335,99 @@ public class Profile implements Comparable<Profile>{
 		return false;
 	}
 
+	/**
+	 * Moves the name and the status into a slot of the store of an app, if
+	 * the profile is in no app yet. A profile added to a second app stays in
+	 * the store of the first one.
+	 * @param owner store of the app
+	 */
+	synchronized void attach(ProfileStore owner) {
+		if (store == null) {
+			slot=owner.add(name, status);
+			store=owner;
+			name=null;
+			status=null;
+		}
+	}
+
+	/**
+	 * Takes the name and the status back from the store of an app, which
+	 * frees the slot, if the profile is in that store.
+	 * @param owner store of the app
+	 */
+	synchronized void detach(ProfileStore owner) {
+		if (store == owner) {
+			name=owner.getName(slot);
+			status=owner.getStatus(slot);
+			owner.remove(slot);
+			store=null;
+		}
+	}
+
+	/**
+	 * Returns the store of the app the profile is in, null if it's in none.
+	 */
+	private synchronized ProfileStore owner() {
+		return store;
+	}
+
+	/**
+	 * Returns the reference of the name in the given store, NO_REF if the
+	 * profile is not in it.
+	 */
+	private synchronized int nameRef(ProfileStore owner) {
+		return owner != null && store == owner ? owner.getNameRef(slot) : NO_REF;
+	}
+
+	/**
+	 * Adds the bytes of the profile and of its friend list to a footprint, the
+	 * name and the status are in the store of the app. The row of a profile that is not
+	 * materialized is shared with its vertex and counted there.
+	 * @param footprint footprint to add to
+	 */
+	public void addFootprint(MemoryFootprint footprint) {
+		footprint.add(MemoryFootprint.Component.PROFILES, MemoryFootprint.shallowSize(Profile.class));
+		footprint.add(MemoryFootprint.Component.FRIEND_LISTS,
+				MemoryFootprint.arrayListSize(friendProfiles.size())+MemoryFootprint.arraySize(friendSince.length, 8));
+	}
+
+	/**
+	 * Sets the friends of a loaded profile, they are read from the row until
+	 * the list is first changed or paged, or materialize is called. The
+	 * profile must have no friend.
+	 * @param all profile of every id of the load
+	 * @param friends friend ids of every loaded profile
+	 * @param from first id of the row
+	 * @param to end of the row
+	 */
+	void setLoadedFriends(Profile[] all, int[] friends, int from, int to) {
+		if (!friendProfiles.isEmpty() || loadedFriends != null) {
+			throw new IllegalStateException("profile already has friends");
+		}
+		loaded=all;
+		loadedFriends=friends;
+		loadedFrom=from;
+		loadedTo=to;
+	}
+
+	/**
+	 * Copies the friends of a loaded profile into its list, they get new
+	 * sequence numbers in the same order. Nothing happens if it has none.
+	 */
+	void materialize() {
+		if (loadedFriends == null) {
+			return;
+		}
+		friendProfiles=new ArrayList<>(loadedTo-loadedFrom);
+		friendSince=new long[loadedTo-loadedFrom];
+		for (int i = loadedFrom; i < loadedTo; i++) {
+			friendProfiles.add(loaded[loadedFriends[i]]);
+			friendSince[i-loadedFrom]=++friendships;
+		}
+		loaded=null;
+		loadedFriends=null;
+	}
+
 	@Override
 	public int compareTo(Profile o) {
 		return Integer.compare(ID,o.ID);
@@ -0,0 +1,318 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is a search index over the names and statuses of a set of
+ * profiles. Names are in a trie of lower case characters, where every word of
+ * a name starts a key running to the end of the name, so "bro" and
+ * "charlie b" both find "Charlie Brown". Statuses are in an inverted index
+ * from lower case tokens to the profiles using them.
+ * It listens to the ProfileStore of the app, so a profile that changes its name or status
+ * is reindexed right away. It's thread safe.
+ */
+public class ProfileIndex implements ProfileStore.Listener {
+
+    /**
+     * A node of the trie, its children are sorted by character.
+     */
+    private static class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        //profiles whose key ends here
+        private List<Profile> profiles;
+
+        /**
+         * Returns the child of a character, null if there is none.
+         */
+        private Node child(char key) {
+            int i = Arrays.binarySearch(keys, key);
+            return i >= 0 ? children[i] : null;
+        }
+
+        /**
+         * Returns the child of a character, it's added if there is none.
+         */
+        private Node addChild(char key) {
+            int i = Arrays.binarySearch(keys, key);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            newKeys[i] = key;
+            newChildren[i] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[i];
+        }
+
+        /**
+         * Removes the child of a character.
+         */
+        private void removeChild(char key) {
+            int i = Arrays.binarySearch(keys, key);
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        private boolean isEmpty() {
+            return keys.length == 0 && (profiles == null || profiles.isEmpty());
+        }
+    }
+
+    private Node root;
+    //status token -> profiles using it
+    private Map<String, Set<Profile>> tokens;
+    //indexed profiles by ID, with the name and the status they are indexed under
+    private Map<Integer, Profile> profiles;
+    private Map<Integer, String> names;
+    private Map<Integer, String> statuses;
+
+    /**
+     * initializes an empty index, listening to the store of the profiles.
+     *
+     * @param store store of the profiles to index
+     */
+    public ProfileIndex(ProfileStore store) {
+        root = new Node();
+        tokens = new HashMap<>();
+        profiles = new HashMap<>();
+        names = new HashMap<>();
+        statuses = new HashMap<>();
+        store.addListener(this);
+    }
+
+    /**
+     * Indexes a profile under its current name and status.
+     *
+     * @param profile profile
+     */
+    public synchronized void add(Profile profile) {
+        if (profiles.containsKey(profile.getID())) {
+            return;
+        }
+        profiles.put(profile.getID(), profile);
+        index(profile);
+    }
+
+    /**
+     * Removes a profile from the index.
+     *
+     * @param profile profile
+     */
+    public synchronized void remove(Profile profile) {
+        if (profiles.remove(profile.getID()) != null) {
+            unindex(profile);
+        }
+    }
+
+    @Override
+    public void nameChanged(int id) {
+        reindex(id);
+    }
+
+    @Override
+    public void statusChanged(int id) {
+        reindex(id);
+    }
+
+    /**
+     * Reindexes a profile whose name or status changed, if it's in the index.
+     *
+     * @param id profile ID
+     */
+    public synchronized void reindex(int id) {
+        Profile profile = profiles.get(id);
+        if (profile != null) {
+            unindex(profile);
+            index(profile);
+        }
+    }
+
+    /**
+     * Returns up to k profiles having a word of their name starting with the
+     * prefix, or whose name continues with it from such a word. The case is
+     * ignored, and the profiles come in alphabetical order of the matching key.
+     *
+     * @param prefix prefix
+     * @param k      maximum number of profiles
+     * @return matching profiles
+     */
+    public synchronized List<Profile> searchName(String prefix, int k) {
+        Node node = root;
+        String key = prefix.toLowerCase();
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+
+        Set<Profile> found = new LinkedHashSet<>();
+        if (node != null) {
+            collect(node, found, k);
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Returns the profiles whose status holds every token of the query. The case
+     * is ignored.
+     *
+     * @param query words to look for
+     * @return matching profiles
+     */
+    public synchronized List<Profile> searchStatus(String query) {
+        List<Set<Profile>> postings = new ArrayList<>();
+        for (String token : tokenize(query)) {
+            Set<Profile> posting = tokens.get(token);
+            if (posting == null) {
+                return new ArrayList<>();
+            }
+            postings.add(posting);
+        }
+        if (postings.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        //intersecting from the shortest posting
+        Collections.sort(postings, (a, b) -> Integer.compare(a.size(), b.size()));
+        List<Profile> result = new ArrayList<>();
+        for (Profile profile : postings.get(0)) {
+            boolean all = true;
+            for (int i = 1; i < postings.size() && all; i++) {
+                all = postings.get(i).contains(profile);
+            }
+            if (all) {
+                result.add(profile);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds every key of the name and every token of the status of a profile,
+     * a null name or status is indexed as empty.
+     */
+    private void index(Profile profile) {
+        String name = profile.getName() == null ? "" : profile.getName().toLowerCase();
+        String status = profile.getStatus() == null ? "" : profile.getStatus();
+        names.put(profile.getID(), name);
+        statuses.put(profile.getID(), status);
+
+        for (int start : wordStarts(name)) {
+            Node node = root;
+            for (int i = start; i < name.length(); i++) {
+                node = node.addChild(name.charAt(i));
+            }
+            if (node.profiles == null) {
+                node.profiles = new ArrayList<>(1);
+            }
+            node.profiles.add(profile);
+        }
+        for (String token : tokenize(status)) {
+            tokens.computeIfAbsent(token, t -> new HashSet<>()).add(profile);
+        }
+    }
+
+    /**
+     * Removes the keys and the tokens a profile was indexed under.
+     */
+    private void unindex(Profile profile) {
+        String name = names.remove(profile.getID());
+        String status = statuses.remove(profile.getID());
+
+        for (int start : wordStarts(name)) {
+            remove(root, name, start, profile);
+        }
+        for (String token : tokenize(status)) {
+            Set<Profile> posting = tokens.get(token);
+            if (posting != null) {
+                posting.remove(profile);
+                if (posting.isEmpty()) {
+                    tokens.remove(token);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a profile from the end of a key, and the nodes that became empty
+     * on the way back.
+     */
+    private static void remove(Node node, String key, int i, Profile profile) {
+        if (i == key.length()) {
+            if (node.profiles != null) {
+                node.profiles.remove(profile);
+            }
+            return;
+        }
+        Node child = node.child(key.charAt(i));
+        if (child != null) {
+            remove(child, key, i + 1, profile);
+            if (child.isEmpty()) {
+                node.removeChild(key.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Adds the profiles of a subtree in key order until there are k.
+     */
+    private static void collect(Node node, Set<Profile> found, int k) {
+        if (node.profiles != null) {
+            for (Profile profile : node.profiles) {
+                if (found.size() >= k) {
+                    return;
+                }
+                found.add(profile);
+            }
+        }
+        for (int i = 0; i < node.children.length && found.size() < k; i++) {
+            collect(node.children[i], found, k);
+        }
+    }
+
+    /**
+     * Returns the start of every word of a name.
+     */
+    private static List<Integer> wordStarts(String name) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.isLetterOrDigit(name.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1)))) {
+                starts.add(i);
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Splits a text into distinct lower case words.
+     */
+    private static Set<String> tokenize(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,225 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * This class stores the names and statuses of the profiles of an app column
+ * by column: two int arrays indexed by slot hold a reference into a
+ * StringArena, where every distinct value is stored once as UTF-8 bytes.
+ * A Profile in the app only keeps its slot and looks its values up here, so
+ * a million profiles cost two int arrays and the distinct strings, instead
+ * of a million pairs of String objects.
+ * Every app has its own store, which goes away with it. A profile gets a
+ * slot when it's added to the app and gives it back when it's removed, its
+ * strings are released then, and a value that is overwritten is released
+ * right away, so the store only holds the values of the current users. Its
+ * methods are synchronized, so profiles can be read and changed from any
+ * thread.
+ */
+public class ProfileStore {
+
+    /**
+     * Receives the changes of the names and statuses.
+     */
+    public interface Listener {
+
+        /**
+         * Called after the name of a profile changed, outside of the lock of the
+         * store.
+         *
+         * @param id profile ID
+         */
+        public void nameChanged(int id);
+
+        /**
+         * Called after the status of a profile changed, outside of the lock of
+         * the store.
+         *
+         * @param id profile ID
+         */
+        public void statusChanged(int id);
+    }
+
+    private StringArena arena;
+    //arena reference of the name and the status of every slot
+    private int[] names;
+    private int[] statuses;
+    //slots given back, reused first, and the number of slots ever handed out
+    private int[] free;
+    private int freeCount;
+    private int slots;
+    //listeners are weakly referenced, so a forgotten index doesn't stay alive
+    private Set<Listener> listeners;
+
+    /**
+     * initializes an empty store.
+     */
+    public ProfileStore() {
+        arena = new StringArena();
+        names = new int[64];
+        statuses = new int[64];
+        free = new int[16];
+        listeners = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    }
+
+    /**
+     * Gives a slot to a profile, holding its name and status.
+     *
+     * @param name   name
+     * @param status status
+     * @return slot
+     */
+    public synchronized int add(String name, String status) {
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (slots == names.length) {
+                names = Arrays.copyOf(names, slots * 2);
+                statuses = Arrays.copyOf(statuses, slots * 2);
+            }
+            slot = slots++;
+        }
+        names[slot] = arena.add(name);
+        statuses[slot] = arena.add(status);
+        return slot;
+    }
+
+    /**
+     * Takes a slot back, releasing its name and status. The slot is given to
+     * a later profile.
+     *
+     * @param slot slot returned by add
+     */
+    public synchronized void remove(int slot) {
+        arena.release(names[slot]);
+        arena.release(statuses[slot]);
+        names[slot] = StringArena.NULL;
+        statuses[slot] = StringArena.NULL;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = slot;
+    }
+
+    /**
+     * Sets the name of a slot to the concatenation of the parts, the old name
+     * is released. The listeners are not called, see changed.
+     *
+     * @param slot  slot of the profile
+     * @param parts parts of the name
+     */
+    public synchronized void setName(int slot, String... parts) {
+        int old = names[slot];
+        names[slot] = arena.add(parts);
+        arena.release(old);
+    }
+
+    /**
+     * Sets the status of a slot, the old status is released. The listeners
+     * are not called, see changed.
+     *
+     * @param slot   slot of the profile
+     * @param status status
+     */
+    public synchronized void setStatus(int slot, String status) {
+        int old = statuses[slot];
+        statuses[slot] = arena.add(status);
+        arena.release(old);
+    }
+
+    /**
+     * Passes a change of a name or a status to every listener. It's called
+     * after the change, by a caller holding no lock, as the listeners read
+     * the profiles.
+     *
+     * @param id   profile ID
+     * @param name true for a name, false for a status
+     */
+    public void changed(int id, boolean name) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        Listener[] current;
+        synchronized (listeners) {
+            current = listeners.toArray(new Listener[0]);
+        }
+        for (Listener listener : current) {
+            if (name) {
+                listener.nameChanged(id);
+            } else {
+                listener.statusChanged(id);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener of the changes. It's only weakly referenced, it stops
+     * receiving changes once nothing else refers to it.
+     *
+     * @param listener listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener listener
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the name of a slot, decoded from the arena.
+     *
+     * @param slot slot of the profile
+     * @return name, null if it was set to null
+     */
+    public synchronized String getName(int slot) {
+        return arena.get(names[slot]);
+    }
+
+    /**
+     * Returns the status of a slot, decoded from the arena.
+     *
+     * @param slot slot of the profile
+     * @return status, null if it was set to null
+     */
+    public synchronized String getStatus(int slot) {
+        return arena.get(statuses[slot]);
+    }
+
+    /**
+     * Returns the arena reference of the name of a slot. Two profiles of the
+     * store have the same name if and only if they have the same reference.
+     *
+     * @param slot slot of the profile
+     * @return reference
+     */
+    public synchronized int getNameRef(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * Returns the number of distinct names and statuses.
+     *
+     * @return number of distinct strings
+     */
+    public synchronized int getDistinctStrings() {
+        return arena.size();
+    }
+
+    /**
+     * Returns the number of bytes the store uses: the two columns, the free
+     * slots and the arena.
+     *
+     * @return bytes used
+     */
+    public synchronized long getBytesUsed() {
+        return 8L * names.length + 4L * free.length + arena.getBytesUsed() + 16L * arena.size();
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class measures how the VertexOrder strategies change the speed of the
+ * traversals over a GraphSnapshot. It builds a graph of communities, where
+ * most friendships stay inside a community, numbers the users at random as
+ * sign-up order would, then runs the same queries over a snapshot renumbered
+ * with every strategy:
+ * <ul>
+ * <li>full breadth first traversals, as getBreadthFirstTraversal,</li>
+ * <li>breadth first searches stopping at a destination, as getShortestPath,</li>
+ * <li>friend suggestions: the friends of friends of a user,</li>
+ * </ul>
+ * and prints the throughput of each, and the bits per neighbor of a
+ * CompressedGraph of the snapshot, which shrink as neighbors get closer ids.
+ * Java can't read the hardware counters, run it under "perf stat -e
+ * cache-misses" to see the cache misses.
+ * <p>
+ * Usage: java ReorderBenchmark [users] [friends per user] [queries]
+ */
+public class ReorderBenchmark {
+
+    //users per community, and the share of the friendships inside a community
+    private static final int COMMUNITY = 200;
+    private static final double LOCAL = 0.9;
+
+    private GraphSnapshot<Integer> snapshot;
+    private int[] offsets;
+    private int[] neighbors;
+    //traversal state, reused by every query: a vertex is reached if its stamp is the one of the query
+    private int[] stamps;
+    private int[] distances;
+    private int[] queue;
+    private int stamp;
+
+    /**
+     * initializes the benchmark on a snapshot.
+     *
+     * @param snapshot snapshot to query
+     */
+    public ReorderBenchmark(GraphSnapshot<Integer> snapshot) {
+        this.snapshot = snapshot;
+        offsets = snapshot.getOffsets();
+        neighbors = snapshot.getNeighbors();
+        stamps = new int[snapshot.size()];
+        distances = new int[snapshot.size()];
+        queue = new int[snapshot.size()];
+    }
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int friends = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        System.out.println("Building " + users + " users with " + friends + " friends each.");
+        GraphSnapshot<Integer> base = new GraphSnapshot<>(communities(users, friends, new Random(42)));
+
+        Random random = new Random(7);
+        int[] origins = new int[queries];
+        int[] destinations = new int[queries];
+        for (int q = 0; q < queries; q++) {
+            origins[q] = random.nextInt(users);
+            destinations[q] = random.nextInt(users);
+        }
+
+        //the same queries by label on every ordering, twice, the first round warms up the JIT
+        for (int round = 0; round < 2; round++) {
+            for (VertexOrder.Strategy strategy : VertexOrder.Strategy.values()) {
+                long start = System.nanoTime();
+                GraphSnapshot<Integer> ordered = VertexOrder.apply(base, strategy);
+                long reorder = System.nanoTime() - start;
+
+                ReorderBenchmark benchmark = new ReorderBenchmark(ordered);
+                int[] from = benchmark.ids(base, origins);
+                int[] to = benchmark.ids(base, destinations);
+                if (round == 1) {
+                    System.out.println(strategy + ": reordering " + reorder / 1000000 + "ms, " +
+                            String.format("%.1f", new CompressedGraph<>(ordered).getBitsPerNeighbor()) +
+                            " bits per neighbor compressed");
+                }
+                benchmark.run("  breadth first traversal", round, () -> benchmark.traversals(from));
+                benchmark.run("  shortest path", round, () -> benchmark.shortestPaths(from, to));
+                benchmark.run("  friend suggestion", round, () -> benchmark.suggestions(from));
+            }
+        }
+    }
+
+    /**
+     * Builds the graph: users in communities, numbered at random.
+     */
+    private static Graph<Integer> communities(int users, int friends, Random random) {
+        List<Integer> labels = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            labels.add(i);
+        }
+        Collections.shuffle(labels, random);
+
+        Graph<Integer> graph = new Graph<>();
+        for (int label : labels) {
+            graph.addVertex(label);
+        }
+        for (int u = 0; u < users; u++) {
+            for (int f = 0; f < friends / 2; f++) {
+                int v;
+                if (random.nextDouble() < LOCAL) {
+                    v = u - u % COMMUNITY + random.nextInt(COMMUNITY);
+                } else {
+                    v = random.nextInt(users);
+                }
+                if (v < users) {
+                    graph.addEdge(labels.get(u), labels.get(v));
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Runs a query set and prints its throughput on the measured round.
+     */
+    private void run(String name, int round, Query query) {
+        long start = System.nanoTime();
+        long edges = query.run();
+        long elapsed = System.nanoTime() - start;
+        if (round == 1) {
+            System.out.println(name + ": " + elapsed / 1000000 + "ms, " +
+                    edges * 1000 / Math.max(1, elapsed) + "M edges/s");
+        }
+    }
+
+    /**
+     * A set of queries, returns the number of edges scanned.
+     */
+    private interface Query {
+        long run();
+    }
+
+    /**
+     * Maps labels given by base ids to ids of this snapshot.
+     */
+    private int[] ids(GraphSnapshot<Integer> base, int[] baseIds) {
+        int[] ids = new int[baseIds.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = snapshot.indexOf(base.getLabel(baseIds[i]));
+        }
+        return ids;
+    }
+
+    /**
+     * Full traversals from every origin.
+     */
+    private long traversals(int[] origins) {
+        long edges = 0;
+        for (int origin : origins) {
+            edges += search(origin, -1);
+        }
+        return edges;
+    }
+
+    /**
+     * Searches stopping at the destination.
+     */
+    private long shortestPaths(int[] origins, int[] destinations) {
+        long edges = 0;
+        for (int q = 0; q < origins.length; q++) {
+            edges += search(origins[q], destinations[q]);
+        }
+        return edges;
+    }
+
+    /**
+     * Marks the friends of friends of every origin that are not friends yet.
+     */
+    private long suggestions(int[] origins) {
+        long edges = 0;
+        for (int origin : origins) {
+            //the user and the friends get one stamp, the candidates the next one
+            stamp += 2;
+            stamps[origin] = stamp;
+            for (int i = offsets[origin]; i < offsets[origin + 1]; i++) {
+                stamps[neighbors[i]] = stamp;
+            }
+            for (int i = offsets[origin]; i < offsets[origin + 1]; i++) {
+                int friend = neighbors[i];
+                for (int j = offsets[friend]; j < offsets[friend + 1]; j++) {
+                    edges++;
+                    if (stamps[neighbors[j]] < stamp) {
+                        stamps[neighbors[j]] = stamp + 1;
+                    }
+                }
+            }
+            stamp++;
+        }
+        return edges;
+    }
+
+    /**
+     * Breadth first search from an origin, until the destination if it's not
+     * -1. Returns the number of edges scanned.
+     */
+    private long search(int origin, int destination) {
+        stamp++;
+        long edges = 0;
+        int head = 0;
+        int tail = 0;
+        stamps[origin] = stamp;
+        distances[origin] = 0;
+        queue[tail++] = origin;
+        while (head < tail) {
+            int u = queue[head++];
+            if (u == destination) {
+                break;
+            }
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                edges++;
+                if (stamps[neighbors[i]] != stamp) {
+                    stamps[neighbors[i]] = stamp;
+                    distances[neighbors[i]] = distances[u] + 1;
+                    queue[tail++] = neighbors[i];
+                }
+            }
+        }
+        return edges;
+    }
+}
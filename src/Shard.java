@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * This class is one partition of a ShardedSocialConnect. It owns the profiles
+ * whose ID hashes to it, keeps their name and status, and keeps their
+ * friendships in a Graph of profile IDs. A friend owned by another shard is a ghost vertex here: the ID is in the
+ * graph so the edge can be stored, but the profile is not, and the ghost has no
+ * edge except the ones to the local profiles.
+ * A shard is only called by its transport, one message at a time.
+ */
+public class Shard implements Function<ShardMessage, ShardMessage> {
+
+    private Graph<Integer> graph;
+    //name and status of the profiles this shard owns, every other vertex of the graph is a ghost
+    private Map<Integer, String[]> profiles;
+
+    /**
+     * initializes an empty shard.
+     */
+    public Shard() {
+        graph = new Graph<>();
+        profiles = new HashMap<>();
+    }
+
+    @Override
+    public ShardMessage apply(ShardMessage message) {
+        int[] ids = message.getIds();
+        switch (message.getType()) {
+            case ADD_USER:
+                return ShardMessage.reply(addUser(ids[0], message.getNames()[0], message.getStatuses()[0]));
+            case REMOVE_USER:
+                return ShardMessage.reply(removeUser(ids[0]));
+            case CONNECT:
+                return ShardMessage.reply(connect(ids[0], ids[1]));
+            case DISCONNECT:
+                return ShardMessage.reply(disconnect(ids[0], ids[1]));
+            case HAS_EDGE:
+                return ShardMessage.reply(profiles.containsKey(ids[0]) && graph.hasEdge(ids[0], ids[1]));
+            case EXPAND:
+                return ShardMessage.reply(expand(ids));
+            case GET_PROFILES:
+                return profilesOf(ids);
+            default:
+                throw new IllegalArgumentException("unexpected message " + message.getType());
+        }
+    }
+
+    /**
+     * Starts owning a profile.
+     */
+    private boolean addUser(int id, String name, String status) {
+        if (profiles.containsKey(id)) {
+            return false;
+        }
+        profiles.put(id, new String[]{name, status});
+        graph.addVertex(id);
+        return true;
+    }
+
+    /**
+     * Removes an owned profile and its edges, and returns its former neighbors,
+     * so their owners can drop their side of the edges.
+     */
+    private int[] removeUser(int id) {
+        if (profiles.remove(id) == null) {
+            return null;
+        }
+
+        int[] neighbors = neighborsOf(id);
+        graph.removeVertex(id);
+        for (int neighbor : neighbors) {
+            dropIfUnusedGhost(neighbor);
+        }
+        return neighbors;
+    }
+
+    /**
+     * Adds this shard's side of an edge, a remote end becomes a ghost.
+     */
+    private boolean connect(int local, int other) {
+        if (!profiles.containsKey(local)) {
+            return false;
+        }
+        graph.addVertex(other);
+        boolean successful = graph.addEdge(local, other);
+        if (!successful) {
+            dropIfUnusedGhost(other);
+        }
+        return successful;
+    }
+
+    /**
+     * Removes this shard's side of an edge.
+     */
+    private boolean disconnect(int local, int other) {
+        if (!profiles.containsKey(local)) {
+            return false;
+        }
+        boolean successful = graph.removeEdge(local, other);
+        dropIfUnusedGhost(other);
+        return successful;
+    }
+
+    /**
+     * Returns the neighbors of all the given owned profiles.
+     */
+    private int[] expand(int[] ids) {
+        List<Integer> neighbors = new ArrayList<>();
+        for (int id : ids) {
+            if (profiles.containsKey(id)) {
+                for (int neighbor : neighborsOf(id)) {
+                    neighbors.add(neighbor);
+                }
+            }
+        }
+
+        int[] result = new int[neighbors.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = neighbors.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the IDs, names and statuses of the given profiles this shard
+     * owns.
+     */
+    private ShardMessage profilesOf(int[] ids) {
+        int count = 0;
+        for (int id : ids) {
+            if (profiles.containsKey(id)) {
+                count++;
+            }
+        }
+
+        int[] found = new int[count];
+        String[] names = new String[count];
+        String[] statuses = new String[count];
+        int i = 0;
+        for (int id : ids) {
+            String[] profile = profiles.get(id);
+            if (profile != null) {
+                found[i] = id;
+                names[i] = profile[0];
+                statuses[i] = profile[1];
+                i++;
+            }
+        }
+        return ShardMessage.reply(found, names, statuses);
+    }
+
+    /**
+     * Returns the neighbors of a vertex of the graph.
+     */
+    private int[] neighborsOf(int id) {
+        VertexInterface<Integer> vertex = graph.getVertex(id);
+        int[] neighbors = new int[vertex.getNumberOfNeighbors()];
+        Iterator<VertexInterface<Integer>> iterator = vertex.getNeighborIterator();
+        for (int i = 0; iterator.hasNext(); i++) {
+            neighbors[i] = iterator.next().getLabel();
+        }
+        return neighbors;
+    }
+
+    /**
+     * Removes a ghost vertex that has no edge left.
+     */
+    private void dropIfUnusedGhost(int id) {
+        VertexInterface<Integer> vertex = graph.getVertex(id);
+        if (vertex != null && !profiles.containsKey(id) && !vertex.hasNeighbor()) {
+            graph.removeVertex(id);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * This class measures how a ShardedSocialConnect scales with its number of
+ * shards. Every shard gets the same number of users and friendships, so a
+ * sharded app that scales linearly keeps the same heap per shard and gets a
+ * throughput proportional to its shards, as long as the machine has a core
+ * per shard. For 1, 2, 4 and 8 shards it builds an app of random friendships
+ * and prints:
+ * <ul>
+ * <li>the retained heap after a full collection, in total, per shard and per
+ * friendship,</li>
+ * <li>the throughput of hasFriendship, a message to one shard, and of
+ * friendSuggestion, two rounds of messages to many shards, from concurrent
+ * clients.</li>
+ * </ul>
+ * With "serialize" every message and reply goes through Java serialization,
+ * like it would to a shard in another process.
+ * <p>
+ * Usage: java ShardBenchmark [users per shard] [friends per user] [operations per shard] [clients] [serialize]
+ */
+public class ShardBenchmark {
+
+    private static final int[] SHARDS = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws InterruptedException {
+        int usersPerShard = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int friends = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        int clients = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        boolean serialize = args.length > 4 && "serialize".equals(args[4]);
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors, " + clients + " clients"
+                + (serialize ? ", serialized messages" : ""));
+
+        for (int shards : SHARDS) {
+            int users = usersPerShard * shards;
+            long friendships = (long) users * friends / 2;
+            System.out.println(String.format("%d shards, %,d users, %,d friendships:", shards, users, friendships));
+            try {
+                measure(shards, users, friendships, operations * shards, clients, serialize);
+            } catch (OutOfMemoryError e) {
+                System.out.println("  out of memory, give the JVM more heap with -Xmx");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Builds a sharded app and prints its measures, the app is closed
+     * afterwards.
+     */
+    private static void measure(int shards, int users, long friendships, int operations, int clients,
+                                boolean serialize) throws InterruptedException {
+        long before = retainedHeap();
+        ShardTransport transport = new InMemoryShardTransport(shards);
+        if (serialize) {
+            transport = new SerializingTransport(transport);
+        }
+        ShardedSocialConnect app = new ShardedSocialConnect(shards, transport);
+        Random random = new Random(42);
+        Profile[] profiles = new Profile[users];
+        long start = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            profiles[i] = new Profile("User " + i, "Hello");
+            app.addUser(profiles[i]);
+        }
+        for (long f = 0; f < friendships; ) {
+            if (app.createFriendship(profiles[random.nextInt(users)], profiles[random.nextInt(users)])) {
+                f++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long retained = retainedHeap() - before;
+        System.out.println(String.format("  built in %,dms, retained %,d bytes, %,d per shard, %.1f per friendship",
+                elapsed / 1000000, retained, retained / shards, (double) retained / friendships));
+
+        try {
+            System.out.println(String.format("  hasFriendship: %,.0f operations/s",
+                    throughput(operations, clients, r -> app.hasFriendship(
+                            profiles[r.nextInt(users)], profiles[r.nextInt(users)]))));
+            System.out.println(String.format("  friendSuggestion: %,.0f operations/s",
+                    throughput(operations / 10, clients, r -> app.friendSuggestion(profiles[r.nextInt(users)]))));
+        } finally {
+            app.close();
+        }
+    }
+
+    /**
+     * Runs the operation the given number of times from concurrent clients,
+     * and returns the operations per second.
+     */
+    private static double throughput(int operations, int clients, Function<Random, Object> operation)
+            throws InterruptedException {
+        AtomicInteger left = new AtomicInteger(operations);
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            Random random = new Random(c);
+            Thread thread = new Thread(() -> {
+                while (left.getAndDecrement() > 0) {
+                    operation.apply(random);
+                }
+            }, "shard-benchmark-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return operations / Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Collects until the used heap stops shrinking, at most 10 times, and
+     * returns it.
+     */
+    private static long retainedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            long now = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            if (now >= used) {
+                return now;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * A transport that serializes every message and reply on the way, so the
+     * shards only see copies, as they would in another process.
+     */
+    private static class SerializingTransport implements ShardTransport {
+
+        private ShardTransport transport;
+
+        private SerializingTransport(ShardTransport transport) {
+            this.transport = transport;
+        }
+
+        @Override
+        public void bind(int shard, Function<ShardMessage, ShardMessage> handler) {
+            transport.bind(shard, message -> copy(handler.apply(copy(message))));
+        }
+
+        @Override
+        public CompletableFuture<ShardMessage> send(int shard, ShardMessage message) {
+            return transport.send(shard, message);
+        }
+
+        @Override
+        public void close() {
+            transport.close();
+        }
+
+        private static ShardMessage copy(ShardMessage message) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(message);
+                }
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                    return (ShardMessage) in.readObject();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import java.io.Serializable;
+
+/**
+ * This class is a message between the coordinator of a ShardedSocialConnect and
+ * one of its shards, or the reply to it. Profiles are referred to by their ID,
+ * and only their name and status travel with it, never a Profile object, so a
+ * message is serializable and a transport between processes only has to carry
+ * ints, flags and strings.
+ */
+public class ShardMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * What the shard is asked to do.
+     */
+    public enum Type {
+        //ids: the user to own, names and statuses: its name and status
+        ADD_USER,
+        //ids: the user, reply ids: its former neighbors
+        REMOVE_USER,
+        //ids: local user, other user, reply flag: true if the edge was added
+        CONNECT,
+        //ids: local user, other user, reply flag: true if the edge was removed
+        DISCONNECT,
+        //ids: local user, other user, reply flag: true if the edge exists
+        HAS_EDGE,
+        //ids: local users, reply ids: all their neighbors
+        EXPAND,
+        //ids: local users, reply ids, names and statuses: the owned ones among them
+        GET_PROFILES,
+        //answer of a shard
+        REPLY
+    }
+
+    private static final String[] NO_STRINGS = new String[0];
+
+    private Type type;
+    private int[] ids;
+    private boolean flag;
+    //name and status of every ID, for ADD_USER and the reply to GET_PROFILES
+    private String[] names;
+    private String[] statuses;
+
+    /**
+     * initializes a message.
+     *
+     * @param type type of the message
+     * @param ids  profile IDs it's about
+     */
+    public ShardMessage(Type type, int... ids) {
+        this.type = type;
+        this.ids = ids;
+        this.names = NO_STRINGS;
+        this.statuses = NO_STRINGS;
+    }
+
+    /**
+     * Creates an ADD_USER message.
+     *
+     * @param id     ID of the user to own
+     * @param name   its name
+     * @param status its status
+     * @return message
+     */
+    public static ShardMessage addUser(int id, String name, String status) {
+        ShardMessage message = new ShardMessage(Type.ADD_USER, id);
+        message.names = new String[]{name};
+        message.statuses = new String[]{status};
+        return message;
+    }
+
+    /**
+     * Creates a reply with a flag.
+     *
+     * @param flag result
+     * @return message
+     */
+    public static ShardMessage reply(boolean flag) {
+        ShardMessage message = new ShardMessage(Type.REPLY);
+        message.flag = flag;
+        return message;
+    }
+
+    /**
+     * Creates a reply with IDs.
+     *
+     * @param ids result
+     * @return message
+     */
+    public static ShardMessage reply(int[] ids) {
+        return new ShardMessage(Type.REPLY, ids);
+    }
+
+    /**
+     * Creates a reply with profiles.
+     *
+     * @param ids      IDs of the profiles
+     * @param names    name of every ID
+     * @param statuses status of every ID
+     * @return message
+     */
+    public static ShardMessage reply(int[] ids, String[] names, String[] statuses) {
+        ShardMessage message = new ShardMessage(Type.REPLY, ids);
+        message.names = names;
+        message.statuses = statuses;
+        return message;
+    }
+
+    /**
+     * Getter for type
+     *
+     * @return type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Getter for ids
+     *
+     * @return profile IDs
+     */
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * Getter for flag
+     *
+     * @return result of a reply
+     */
+    public boolean getFlag() {
+        return flag;
+    }
+
+    /**
+     * Getter for names
+     *
+     * @return name of every ID of an ADD_USER message or a profiles reply
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+    /**
+     * Getter for statuses
+     *
+     * @return status of every ID of an ADD_USER message or a profiles reply
+     */
+    public String[] getStatuses() {
+        return statuses;
+    }
+}
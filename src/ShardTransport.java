@@ -0,0 +1,32 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Carries ShardMessages from the coordinator of a ShardedSocialConnect to its
+ * shards and the replies back. A shard handles one message at a time, in the
+ * order they arrive, so its state is never touched by two threads at once.
+ */
+public interface ShardTransport {
+
+    /**
+     * Connects a shard to the handler of its messages.
+     *
+     * @param shard   shard number, from 0 to the number of shards - 1
+     * @param handler turns a message into its reply
+     */
+    public void bind(int shard, Function<ShardMessage, ShardMessage> handler);
+
+    /**
+     * Sends a message to a shard.
+     *
+     * @param shard   shard number
+     * @param message message to send
+     * @return future of the reply
+     */
+    public CompletableFuture<ShardMessage> send(int shard, ShardMessage message);
+
+    /**
+     * Stops delivering messages and releases the resources.
+     */
+    public void close();
+}
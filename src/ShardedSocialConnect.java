@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This class is a social networking app split over several shards. Profiles
+ * are hash-partitioned by ID, every Shard owns its profiles and their side of
+ * every friendship, and a friend on another shard is a ghost vertex there.
+ * This class is the coordinator: it holds no graph data at all, it only sends
+ * ShardMessages through a ShardTransport and combines the replies. Traversals
+ * are level-synchronous: the frontier of a level is grouped by owner, every
+ * shard expands its part in parallel, and the union of the replies makes the
+ * next frontier. The default transport keeps all the shards in this JVM;
+ * another transport can run them as separate processes.
+ * Unlike SocialConnect, the friend lists of the Profile objects are not kept
+ * up to date, since a friend may live in another process.
+ * Only IDs, names and statuses go to the shards. The coordinator remembers the
+ * Profile objects added through it, to answer with the same objects, and
+ * builds the other ones from what their shard replies. A profile built from a
+ * reply is kept too, and updated by the later replies. It keeps its shard ID
+ * unless a profile of this process may have it already, see Profile.restore,
+ * then the coordinator remembers its shard ID.
+ */
+public class ShardedSocialConnect {
+
+    private ShardTransport transport;
+    private int shards;
+    //the profiles added through this coordinator, by ID
+    private Map<Integer, Profile> handles;
+    //the profiles built from replies, by shard ID
+    private Map<Integer, Profile> built;
+    //shard ID of every profile built from a reply that got a new ID
+    private Map<Profile, Integer> shardIds;
+
+    /**
+     * initializes the app with the given number of shards in this JVM.
+     *
+     * @param shards number of shards
+     */
+    public ShardedSocialConnect(int shards) {
+        this(shards, new InMemoryShardTransport(shards));
+    }
+
+    /**
+     * initializes the app with the given number of shards over a transport.
+     *
+     * @param shards    number of shards
+     * @param transport transport to the shards
+     */
+    public ShardedSocialConnect(int shards, ShardTransport transport) {
+        this.shards = shards;
+        this.transport = transport;
+        this.handles = new ConcurrentHashMap<>();
+        this.built = new ConcurrentHashMap<>();
+        this.shardIds = new ConcurrentHashMap<>();
+        for (int i = 0; i < shards; i++) {
+            transport.bind(i, new Shard());
+        }
+    }
+
+    /**
+     * Adds a new user to the social network
+     *
+     * @param P profile to add
+     */
+    public void addUser(Profile P) {
+        if (call(ownerOf(idOf(P)), ShardMessage.addUser(idOf(P), P.getName(), P.getStatus())).getFlag()) {
+            handles.put(idOf(P), P);
+        }
+    }
+
+    /**
+     * Removes a user from the social network
+     *
+     * @param P profile to remove
+     * @return the profile, null if it was not in the social network.
+     */
+    public Profile removeUser(Profile P) {
+        int[] neighbors = call(ownerOf(idOf(P)), new ShardMessage(ShardMessage.Type.REMOVE_USER, idOf(P))).getIds();
+        if (neighbors == null) {
+            return null;
+        }
+        handles.remove(idOf(P));
+        built.remove(idOf(P));
+        shardIds.remove(P);
+
+        //the owners of the friends drop their side of the edges
+        List<CompletableFuture<ShardMessage>> replies = new ArrayList<>();
+        for (int neighbor : neighbors) {
+            if (ownerOf(neighbor) == ownerOf(idOf(P))) {
+                //the shard already removed both sides
+                continue;
+            }
+            replies.add(transport.send(ownerOf(neighbor),
+                    new ShardMessage(ShardMessage.Type.DISCONNECT, neighbor, idOf(P))));
+        }
+        join(replies);
+        return P;
+    }
+
+    /**
+     * Creates a friendship between two users. Both owners add their side, if
+     * only one of them could, it's undone. If one shard owns both, it stores the
+     * whole edge at once.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return true if the friendship is created successfully, false otherwise.
+     */
+    public boolean createFriendship(Profile a, Profile b) {
+        if (idOf(a) == idOf(b)) {
+            return false;
+        }
+        if (ownerOf(idOf(a)) == ownerOf(idOf(b))) {
+            return exists(b) && call(ownerOf(idOf(a)),
+                    new ShardMessage(ShardMessage.Type.CONNECT, idOf(a), idOf(b))).getFlag();
+        }
+
+        CompletableFuture<ShardMessage> sideA = transport.send(ownerOf(idOf(a)),
+                new ShardMessage(ShardMessage.Type.CONNECT, idOf(a), idOf(b)));
+        CompletableFuture<ShardMessage> sideB = transport.send(ownerOf(idOf(b)),
+                new ShardMessage(ShardMessage.Type.CONNECT, idOf(b), idOf(a)));
+        boolean connectedA = get(sideA).getFlag();
+        boolean connectedB = get(sideB).getFlag();
+
+        if (connectedA && !connectedB) {
+            call(ownerOf(idOf(a)), new ShardMessage(ShardMessage.Type.DISCONNECT, idOf(a), idOf(b)));
+        } else if (connectedB && !connectedA) {
+            call(ownerOf(idOf(b)), new ShardMessage(ShardMessage.Type.DISCONNECT, idOf(b), idOf(a)));
+        }
+        return connectedA && connectedB;
+    }
+
+    /**
+     * Removes a friendship between two users.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return true if the friendship is removed successfully, false otherwise.
+     */
+    public boolean removeFriendship(Profile a, Profile b) {
+        if (ownerOf(idOf(a)) == ownerOf(idOf(b))) {
+            return call(ownerOf(idOf(a)),
+                    new ShardMessage(ShardMessage.Type.DISCONNECT, idOf(a), idOf(b))).getFlag();
+        }
+
+        CompletableFuture<ShardMessage> sideA = transport.send(ownerOf(idOf(a)),
+                new ShardMessage(ShardMessage.Type.DISCONNECT, idOf(a), idOf(b)));
+        CompletableFuture<ShardMessage> sideB = transport.send(ownerOf(idOf(b)),
+                new ShardMessage(ShardMessage.Type.DISCONNECT, idOf(b), idOf(a)));
+        return get(sideA).getFlag() & get(sideB).getFlag();
+    }
+
+    /**
+     * Returns true if there is friendship between Profiles a and b, false
+     * otherwise.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return true if there is a friendship between them, false otherwise.
+     */
+    public boolean hasFriendship(Profile a, Profile b) {
+        return call(ownerOf(idOf(a)), new ShardMessage(ShardMessage.Type.HAS_EDGE, idOf(a), idOf(b))).getFlag();
+    }
+
+    /**
+     * Returns true if a user with the given profile exists, false otherwise.
+     *
+     * @param user userProfile
+     * @return true if exist, false otherwise.
+     */
+    public boolean exists(Profile user) {
+        return call(ownerOf(idOf(user)), new ShardMessage(ShardMessage.Type.GET_PROFILES, idOf(user)))
+                .getIds().length != 0;
+    }
+
+    /**
+     * Returns a list of Profiles, who are friends with one or more of the profile's
+     * friends (but not currently the profile's friend). It returns null, if the
+     * user does not exist or if it does not have any friend suggestions.
+     *
+     * @param user user
+     * @return null, if the user does not exist or if it does not have any friend suggestions,
+     *      else a list of profile.
+     */
+    public List<Profile> friendSuggestion(Profile user) {
+        //level 1: the friends, level 2: their friends
+        Set<Integer> friends = expand(singleton(idOf(user)));
+        if (friends.isEmpty()) {
+            return null;
+        }
+        Set<Integer> candidates = expand(friends);
+        candidates.remove(idOf(user));
+        candidates.removeAll(friends);
+
+        return profilesOf(candidates);
+    }
+
+    /**
+     * Returns the friendship distance between two profiles, by a
+     * level-synchronous BFS over the shards. If either of the profiles are not
+     * in the social network or there is no path, it returns -1.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return -1 If either of the profiles are not in the social network or there is no path,
+     *      else distance between them.
+     */
+    public int friendshipDistance(Profile a, Profile b) {
+        if (!exists(a) || !exists(b)) {
+            return -1;
+        }
+
+        Set<Integer> visited = singleton(idOf(a));
+        Set<Integer> frontier = singleton(idOf(a));
+        int distance = 0;
+        while (!frontier.isEmpty()) {
+            if (frontier.contains(idOf(b))) {
+                return distance;
+            }
+
+            Set<Integer> next = expand(frontier);
+            next.removeAll(visited);
+            visited.addAll(next);
+            frontier = next;
+            distance++;
+        }
+        return -1;
+    }
+
+    /**
+     * Stops the shards.
+     */
+    public void close() {
+        transport.close();
+    }
+
+    /**
+     * Returns the shard owning a profile ID.
+     *
+     * @param id profile ID
+     * @return shard number
+     */
+    public int ownerOf(int id) {
+        //spreading consecutive IDs with the golden ratio multiplier
+        return Math.floorMod(id * 0x9E3779B9, shards);
+    }
+
+    /**
+     * Returns every neighbor of the given profiles: the profiles are grouped by
+     * owner and all the owners expand their group at the same time.
+     */
+    private Set<Integer> expand(Set<Integer> ids) {
+        List<CompletableFuture<ShardMessage>> replies = new ArrayList<>();
+        for (Map.Entry<Integer, int[]> group : groupByOwner(ids).entrySet()) {
+            replies.add(transport.send(group.getKey(), new ShardMessage(ShardMessage.Type.EXPAND, group.getValue())));
+        }
+
+        Set<Integer> neighbors = new HashSet<>();
+        for (ShardMessage reply : join(replies)) {
+            for (int id : reply.getIds()) {
+                neighbors.add(id);
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Fetches the profiles of the given IDs from their owners, a profile that
+     * was not added through this coordinator is built from its reply.
+     */
+    private List<Profile> profilesOf(Set<Integer> ids) {
+        List<CompletableFuture<ShardMessage>> replies = new ArrayList<>();
+        for (Map.Entry<Integer, int[]> group : groupByOwner(ids).entrySet()) {
+            replies.add(transport.send(group.getKey(), new ShardMessage(ShardMessage.Type.GET_PROFILES, group.getValue())));
+        }
+
+        List<Profile> profiles = new ArrayList<>();
+        for (ShardMessage reply : join(replies)) {
+            int[] found = reply.getIds();
+            for (int i = 0; i < found.length; i++) {
+                Profile profile = handles.get(found[i]);
+                if (profile == null) {
+                    profile = built(found[i], reply.getNames()[i], reply.getStatuses()[i]);
+                }
+                profiles.add(profile);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Returns the profile built for a shard ID with the name and status of the
+     * latest reply, building it the first time. Building it again would give it
+     * a new ID, as its shard ID is taken by then.
+     */
+    private Profile built(int id, String name, String status) {
+        Profile profile = built.get(id);
+        if (profile == null) {
+            Profile restored = Profile.restore(id, name, status);
+            //mapped before it's shared, so no other thread sees it without its shard ID
+            if (restored.getID() != id) {
+                shardIds.put(restored, id);
+            }
+            profile = built.putIfAbsent(id, restored);
+            if (profile == null) {
+                return restored;
+            }
+            shardIds.remove(restored);
+        }
+        profile.refresh(name, status);
+        return profile;
+    }
+
+    /**
+     * Returns the ID of a profile on the shards.
+     */
+    private int idOf(Profile profile) {
+        Integer id = shardIds.get(profile);
+        return id == null ? profile.getID() : id;
+    }
+
+    /**
+     * Splits IDs by their owner shard.
+     */
+    private Map<Integer, int[]> groupByOwner(Set<Integer> ids) {
+        Map<Integer, List<Integer>> lists = new HashMap<>();
+        for (int id : ids) {
+            lists.computeIfAbsent(ownerOf(id), k -> new ArrayList<>()).add(id);
+        }
+
+        Map<Integer, int[]> groups = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : lists.entrySet()) {
+            int[] group = new int[entry.getValue().size()];
+            for (int i = 0; i < group.length; i++) {
+                group[i] = entry.getValue().get(i);
+            }
+            groups.put(entry.getKey(), group);
+        }
+        return groups;
+    }
+
+    /**
+     * Returns a mutable set holding one ID.
+     */
+    private static Set<Integer> singleton(int id) {
+        Set<Integer> set = new HashSet<>();
+        set.add(id);
+        return set;
+    }
+
+    /**
+     * Sends a message and waits for the reply.
+     */
+    private ShardMessage call(int shard, ShardMessage message) {
+        return get(transport.send(shard, message));
+    }
+
+    /**
+     * Waits for all the replies.
+     */
+    private static List<ShardMessage> join(List<CompletableFuture<ShardMessage>> replies) {
+        List<ShardMessage> messages = new ArrayList<>();
+        for (CompletableFuture<ShardMessage> reply : replies) {
+            messages.add(get(reply));
+        }
+        return messages;
+    }
+
+    /**
+     * Waits for a reply, a failure of the shard is rethrown unchecked.
+     */
+    private static ShardMessage get(CompletableFuture<ShardMessage> reply) {
+        try {
+            return reply.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("shard failed", e.getCause());
+        }
+    }
+}
@@ -1,17 +1,120 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
 
 public class SocialConnect {
 
+    //matches of a name prefix ranked by friendship distance
+    private static final int MAX_RANKED_MATCHES = 1024;
+    //number of events in the ring buffer of the event stream
+    private static final int EVENT_CAPACITY = 1 << 16;
+    //graphs with at least this many users are traversed in parallel on the snapshot, when it pays for it
+    private static final int PARALLEL_SEARCH_VERTICES = 100000;
+    //suggestions with the same score come by profile ID, from the snapshot and from the live graph alike
+    private static final Comparator<Profile> SUGGESTION_TIES = Comparator.comparingInt(Profile::getID);
+
+    /**
+     * Publishes the name and status changes of the users of the app to the
+     * event stream. The store only keeps a weak reference to it, so the app
+     * holds it.
+     */
+    private class ProfileChanges implements ProfileStore.Listener {
+
+        //users of the app by ID, the store reports changes by ID
+        private final Map<Integer, Profile> users = new ConcurrentHashMap<>();
+
+        @Override
+        public void nameChanged(int id) {
+            Profile user = users.get(id);
+            if (user != null) {
+                events.publish(MutationEvent.Type.NAME_CHANGED, user, null);
+            }
+        }
+
+        @Override
+        public void statusChanged(int id) {
+            Profile user = users.get(id);
+            if (user != null) {
+                events.publish(MutationEvent.Type.STATUS_CHANGED, user, null);
+            }
+        }
+    }
 
     private Graph<Profile> graph;
+    //names and statuses of the users, they move in on addUser and out on removeUser
+    private ProfileStore store;
+    //one-way follows, on the same users as the friendships
+    private DirectedGraph<Profile> follows;
+    //connected components of the graph, kept up to date on every mutation
+    private ConnectedComponents<Profile> components;
+    //influence scores, recomputed from the previous ones when the graph changed
+    private PageRank<Profile> influence;
+    //link prediction over the current snapshot, null until it's first needed
+    private LinkPredictor<Profile> predictor;
+    //link prediction over the live graph, used while the snapshot is outdated
+    private LiveLinkPredictor<Profile> livePredictor;
+    //triangle counts, null until they are first asked for, then kept up to date on every change
+    private TriangleCounter<Profile> triangles;
+    //search index of the names and statuses, null until the first search, then kept up to date
+    private ProfileIndex search;
+    //stream of the changes, null until it's first asked for
+    private MutationEventStream events;
+    private ProfileChanges profileChanges;
+    //receives the operations a trace can replay, null when nothing is recorded
+    private OperationTrace.Recorder recorder;
+    //timestamped history of the friendships, and the clock of the timestamps
+    private TemporalEdgeStore<Profile> history;
+    private LongSupplier clock;
+
+    //incremented on every change of the graph, used to find out if a snapshot is outdated
+    private int modifications;
+    //last snapshot of the graph in breadth first order, and the value of modifications when it was taken
+    private GraphSnapshot<Profile> snapshot;
+    private int snapshotModifications;
+    //value of modifications when influence was last computed
+    private int influenceModifications;
+    //users of the last image load in the order of their ids, and how many of their
+    //friend lists are materialized, null once they all are
+    private Profile[] loaded;
+    private int warmed;
+    //new ID of every user of the image load whose saved ID was taken, by saved ID, empty if none was
+    private Map<Integer, Integer> renumbered = Collections.emptyMap();
 
     /**
      * constructor - initializes the social networking app.
      */
     public SocialConnect() {
-        graph = new Graph<>();
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * constructor - initializes the social networking app with the clock that
+     * timestamps the friendships.
+     *
+     * @param clock current time in milliseconds
+     */
+    public SocialConnect(LongSupplier clock) {
+        this.clock = clock;
+        store = new ProfileStore();
+        history = new TemporalEdgeStore<>();
+        graph = Metrics.ENABLED ? new MeteredGraph<>() : new Graph<>();
+        follows = new DirectedGraph<>();
+        components = new ConnectedComponents<>(graph);
+        influence = new PageRank<>();
+        influenceModifications = -1;
     }
 
     /**
@@ -20,7 +123,27 @@ public class SocialConnect {
      * @param P profile to add
      */
     public void addUser(Profile P) {
-        graph.addVertex(P);
+        long start = Metrics.start();
+        try {
+            if (graph.addVertex(P)) {
+                if (recorder != null) {
+                    recorder.record(OperationTrace.Type.ADD_USER, P, null);
+                }
+                P.attach(store);
+                follows.addVertex(P);
+                components.add(P);
+                if (search != null) {
+                    search.add(P);
+                }
+                if (events != null) {
+                    profileChanges.users.put(P.getID(), P);
+                    events.publish(MutationEvent.Type.ADD_USER, P, null);
+                }
+                modifications++;
+            }
+        } finally {
+            Metrics.stop(Metrics.Operation.ADD_USER, start);
+        }
     }
 
     /**
@@ -29,10 +152,41 @@ public class SocialConnect {
      * @param P profile to remove
      */
     public Profile removeUser(Profile P) {
-        if(graph.removeVertex(P)==null){
-            return null;
-        }else{
-            return P;
+        long start = Metrics.start();
+        try {
+            if (recorder != null) {
+                recorder.record(OperationTrace.Type.REMOVE_USER, P, null);
+            }
+            if(triangles!=null){
+                triangles.vertexRemoving(P);
+            }
+            VertexInterface<Profile> vertex=graph.getVertex(P);
+            if(vertex!=null){
+                long time=clock.getAsLong();
+                Iterator<VertexInterface<Profile>> friends=vertex.getNeighborIterator();
+                while(friends.hasNext()){
+                    history.edgeRemoved(P, friends.next().getLabel(), time);
+                }
+            }
+            if(graph.removeVertex(P)==null){
+                return null;
+            }else{
+                components.remove(P);
+                follows.removeVertex(P);
+                if (search != null) {
+                    search.remove(P);
+                }
+                if (events != null) {
+                    profileChanges.users.remove(P.getID());
+                    events.publish(MutationEvent.Type.REMOVE_USER, P, null);
+                }
+                //the profile keeps its name and status, the slot is freed
+                P.detach(store);
+                modifications++;
+                return P;
+            }
+        } finally {
+            Metrics.stop(Metrics.Operation.REMOVE_USER, start);
         }
     }
 
@@ -46,12 +200,29 @@ public class SocialConnect {
      *   created successfully, false otherwise.
      */
     public boolean createFriendship(Profile a, Profile b) {
-        boolean successful=graph.addEdge(a, b);
-        if(successful){
-            a.addFriend(b);
-            b.addFriend(a);
+        long start = Metrics.start();
+        try {
+            if (recorder != null) {
+                recorder.record(OperationTrace.Type.CREATE_FRIENDSHIP, a, b);
+            }
+            boolean successful=graph.addEdge(a, b);
+            if(successful){
+                a.addFriend(b);
+                b.addFriend(a);
+                components.union(a, b);
+                if(triangles!=null){
+                    triangles.edgeAdded(a, b);
+                }
+                history.edgeAdded(a, b, clock.getAsLong());
+                if(events!=null){
+                    events.publish(MutationEvent.Type.CREATE_FRIENDSHIP, a, b);
+                }
+                modifications++;
+            }
+            return successful;
+        } finally {
+            Metrics.stop(Metrics.Operation.CREATE_FRIENDSHIP, start);
         }
-        return successful;
     }
 
     /**
@@ -64,13 +235,29 @@ public class SocialConnect {
      *   created successfully, false otherwise.
      */
     public boolean removeFriendship(Profile a, Profile b) {
-        boolean successful=graph.removeEdge(a, b);
-        if(successful){
-            a.unFriend(b);
-            b.unFriend(a);
+        long start = Metrics.start();
+        try {
+            if (recorder != null) {
+                recorder.record(OperationTrace.Type.REMOVE_FRIENDSHIP, a, b);
+            }
+            boolean successful=graph.removeEdge(a, b);
+            if(successful){
+                a.unFriend(b);
+                b.unFriend(a);
+                components.invalidate();
+                if(triangles!=null){
+                    triangles.edgeRemoved(a, b);
+                }
+                history.edgeRemoved(a, b, clock.getAsLong());
+                if(events!=null){
+                    events.publish(MutationEvent.Type.REMOVE_FRIENDSHIP, a, b);
+                }
+                modifications++;
+            }
+            return successful;
+        } finally {
+            Metrics.stop(Metrics.Operation.REMOVE_FRIENDSHIP, start);
         }
-        return successful;
-
     }
 
     /**
@@ -82,8 +269,30 @@ public class SocialConnect {
      * @return true if there is a friendship between them, false otherwise.
      */
     public boolean hasFriendship(Profile a, Profile b) {
-        return graph.hasEdge(a, b);
+        long start = Metrics.start();
+        try {
+            return graph.hasEdge(a, b);
+        } finally {
+            Metrics.stop(Metrics.Operation.HAS_FRIENDSHIP, start);
+        }
+    }
 
+    /**
+     * Returns true if there is a chain of friendships between Profiles a and b,
+     * false otherwise. It doesn't run a traversal, so it can be used as a cheap
+     * check before the more expensive queries.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return true if they are in the same component, false otherwise.
+     */
+    public boolean inSameComponent(Profile a, Profile b) {
+        long start = Metrics.start();
+        try {
+            return components.connected(a, b);
+        } finally {
+            Metrics.stop(Metrics.Operation.IN_SAME_COMPONENT, start);
+        }
     }
 
     /**
@@ -93,8 +302,37 @@ public class SocialConnect {
      * @param startPoint source vertex
      */
     public void traverse(Profile startPoint) {
-        for (Profile profile : graph.getBreadthFirstTraversal(startPoint)) {
-            profile.display();
+        traverse(startPoint, new TraversalBudget());
+    }
+
+    /**
+     * this method displays each profile's information and friends, starting from
+     * the startPoint profile, until the budget runs out. A big graph traversed
+     * without limits is searched in parallel, the profiles are still displayed
+     * level by level but in snapshot order within a level.
+     *
+     * @param startPoint source vertex
+     * @param budget     limits of the traversal
+     * @return true if every reachable profile was displayed, false if the budget ran out.
+     */
+    public boolean traverse(Profile startPoint, TraversalBudget budget) {
+        long start = Metrics.start();
+        try {
+            if (recorder != null) {
+                recorder.record(OperationTrace.Type.TRAVERSE, startPoint, null);
+            }
+            Iterable<Profile> profiles;
+            if (parallelSearch(budget)) {
+                profiles = new DirectionOptimizingBFS<>(snapshot()).getBreadthFirstTraversal(startPoint, budget);
+            } else {
+                profiles = graph.getBreadthFirstTraversal(startPoint, budget);
+            }
+            for (Profile profile : profiles) {
+                profile.display();
+            }
+            return !budget.isExhausted();
+        } finally {
+            Metrics.stop(Metrics.Operation.TRAVERSE, start);
         }
     }
 
@@ -106,13 +344,18 @@ public class SocialConnect {
      * @return true if exist, false otherwise.
      */
     public boolean exists(Profile user) {
-        //if adding a user is unsuccessful that mean we already have it
-        boolean successful = graph.addVertex(user);
-        if (!successful) {
-            return true;
-        } else {
-            graph.removeVertex(user);
-            return false;
+        long start = Metrics.start();
+        try {
+            //if adding a user is unsuccessful that mean we already have it
+            boolean successful = graph.addVertex(user);
+            if (!successful) {
+                return true;
+            } else {
+                graph.removeVertex(user);
+                return false;
+            }
+        } finally {
+            Metrics.stop(Metrics.Operation.EXISTS, start);
         }
     }
 
@@ -127,26 +370,131 @@ public class SocialConnect {
      *      else a list of profile.
      */
     public List<Profile> friendSuggestion(Profile user) {
+        long start = Metrics.start();
+        try {
+            if (recorder != null) {
+                recorder.record(OperationTrace.Type.FRIEND_SUGGESTION, user, null);
+            }
+            //if the profile exist and profile has some friend
+            if (exists(user) && !user.getFriendProfiles().isEmpty()) {
 
-        //if the profile exist and profile has some friend
-        if (exists(user) && !user.getFriendProfiles().isEmpty()) {
-
-            //then iterate over all its friends of friends and create a set of friends for suggestion
-            List<Profile> suggestionProfiles = new ArrayList<>();
-            for (Profile friendProfile : user.getFriendProfiles()) {
-                for (Profile profile : friendProfile.getFriendProfiles()) {
-                    //don't add itself  and  add a profile only once and don't  add  profile who are already friend
-                    if (!profile.equals(user) && !suggestionProfiles.contains(profile) && !user.getFriendProfiles().contains(profile)) {
-                        suggestionProfiles.add(profile);
+                //then iterate over all its friends of friends and create a set of friends for suggestion,
+                //the set keeps the order in which they are found
+                VertexInterface<Profile> vertex = graph.getVertex(user);
+                Set<Profile> suggestionProfiles = new LinkedHashSet<>();
+                for (Profile friendProfile : user.getFriendProfiles()) {
+                    for (Profile profile : friendProfile.getFriendProfiles()) {
+                        //don't add itself and don't add profile who are already friend, the vertex finds them in its index,
+                        //a removed user is still in the friend lists but has no vertex, it's not suggested
+                        VertexInterface<Profile> candidate = graph.getVertex(profile);
+                        if (candidate != null && !profile.equals(user) && !vertex.isNeighbor(candidate)) {
+                            suggestionProfiles.add(profile);
+                        }
                     }
                 }
+
+                Metrics.suggested(suggestionProfiles.size());
+                return new ArrayList<>(suggestionProfiles);
             }
 
-            return suggestionProfiles;
+            return null;
+        } finally {
+            Metrics.stop(Metrics.Operation.FRIEND_SUGGESTION, start);
         }
+    }
 
-        return null;
+    /**
+     * Returns the friends of friends of a profile who are not its friends,
+     * ordered from the most to the least likely friendship by the given link
+     * prediction score, the same score by profile ID.
+     *
+     * @param user  user
+     * @param score way to score a candidate
+     * @param limit maximum number of suggestions
+     * @return null, if the user does not exist or if it does not have any friend suggestions,
+     *      else at most limit profiles, the best first.
+     */
+    public List<Profile> friendSuggestion(Profile user, LinkPredictor.Score score, int limit) {
+        long start = Metrics.start();
+        try {
+            List<Profile> suggestionProfiles = snapshotCurrent() ? linkPredictor().suggest(user, limit, score)
+                    : liveLinkPredictor().suggest(user, limit, score);
+            Metrics.suggested(suggestionProfiles.size());
+            return suggestionProfiles.isEmpty() ? null : suggestionProfiles;
+        } finally {
+            Metrics.stop(Metrics.Operation.LINK_PREDICTION, start);
+        }
+    }
 
+    /**
+     * Scores a list of candidate friends of a profile at once, e.g. the
+     * candidates of another source, to be ranked with friendSuggestion.
+     *
+     * @param user       user
+     * @param candidates profiles to score
+     * @param score      way to score a candidate
+     * @return score of every candidate, 0 for the ones not in the social networking app
+     */
+    public double[] scoreFriendSuggestions(Profile user, List<Profile> candidates, LinkPredictor.Score score) {
+        long start = Metrics.start();
+        try {
+            if (snapshotCurrent()) {
+                return linkPredictor().score(user, candidates, score);
+            }
+            return liveLinkPredictor().score(user, candidates, score);
+        } finally {
+            Metrics.stop(Metrics.Operation.LINK_PREDICTION, start);
+        }
+    }
+
+    /**
+     * Returns the friends two profiles have in common, in the friend order of
+     * the one with fewer friends. It returns an empty list if either of the
+     * profiles is not in the social networking app.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return mutual friends
+     */
+    public List<Profile> getMutualFriends(Profile a, Profile b) {
+        long start = Metrics.start();
+        try {
+            List<Profile> mutualFriends = new ArrayList<>();
+            VertexInterface<Profile> vertexA = graph.getVertex(a);
+            VertexInterface<Profile> vertexB = graph.getVertex(b);
+            if (vertexA != null && vertexB != null) {
+                for (VertexInterface<Profile> friend : vertexA.getCommonNeighbors(vertexB)) {
+                    mutualFriends.add(friend.getLabel());
+                }
+            }
+            return mutualFriends;
+        } finally {
+            Metrics.stop(Metrics.Operation.MUTUAL_FRIENDS, start);
+        }
+    }
+
+    /**
+     * Returns the number of friends two profiles have in common, without
+     * listing them. Two users with many friends each are compared by their
+     * neighbor indexes. It returns 0 if either of the profiles is not in the
+     * social networking app.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return number of mutual friends
+     */
+    public int getMutualFriendCount(Profile a, Profile b) {
+        long start = Metrics.start();
+        try {
+            VertexInterface<Profile> vertexA = graph.getVertex(a);
+            VertexInterface<Profile> vertexB = graph.getVertex(b);
+            if (vertexA != null && vertexB != null) {
+                return vertexA.getNumberOfCommonNeighbors(vertexB);
+            }
+            return 0;
+        } finally {
+            Metrics.stop(Metrics.Operation.MUTUAL_FRIENDS, start);
+        }
     }
 
     /**
@@ -162,17 +510,804 @@ public class SocialConnect {
      * @return -1 If either of the profiles are not in the social networking app, else distance between them.
      */
     public int friendshipDistance(Profile a, Profile b) {
-        //both vertex exist
-        if(exists(a) && exists(b)){
+        return friendshipDistance(a, b, new TraversalBudget());
+    }
+
+    /**
+     * Returns the friendship distance between two profiles like
+     * friendshipDistance(a, b), but gives up when the budget runs out.
+     *
+     * @param a      a profile
+     * @param b      another profile
+     * @param budget limits of the traversal
+     * @return -1 If either of the profiles are not in the social networking app or there is no
+     *      path, TraversalBudget.UNKNOWN_DISTANCE if the budget ran out, else distance between them.
+     */
+    public int friendshipDistance(Profile a, Profile b, TraversalBudget budget) {
+        long start = Metrics.start();
+        try {
+            if (recorder != null) {
+                recorder.record(OperationTrace.Type.FRIENDSHIP_DISTANCE, a, b);
+            }
+            //both vertex exist
+            if(exists(a) && exists(b)){
+
+                //if they are in different components there is no path, no need to do the bfs
+                if(!components.connected(a, b)){
+                    return -1;
+                }
+
+                //a point query rebuilding the snapshot after a write would cost O(V+E) for a short path
+                if (parallelSearch(budget) && snapshotCurrent()) {
+                    return new DirectionOptimizingBFS<>(snapshot).getDistance(a, b, budget);
+                }
+
+                //get path and distance
+                Stack<Profile> path=new Stack<>();
+                int result=graph.getShortestPath(a,b,path,budget);
+
+                // if distance is infinity return -1
+                if(result==Integer.MAX_VALUE)result=-1;
+                return result;
+            }
+            return -1;
+        } finally {
+            Metrics.stop(Metrics.Operation.FRIENDSHIP_DISTANCE, start);
+        }
+    }
+
+    /**
+     * Computes the friendship distance of many pairs of profiles at once, the
+     * i-th pair is origins[i] and destinations[i]. The distances are the same as
+     * the ones of friendshipDistance, but pairs sharing an origin and up to 64
+     * origins share one traversal, and the traversals run in parallel. Every
+     * distance is passed to the listener as soon as it's known, from the threads
+     * of the common fork-join pool.
+     *
+     * @param origins      profiles to start from
+     * @param destinations profiles to reach, same size as origins
+     * @param listener     receives the distances
+     */
+    public void friendshipDistances(List<Profile> origins, List<Profile> destinations,
+                                    BatchDistance.Listener<Profile> listener) {
+        long start = Metrics.start();
+        try {
+            new BatchDistance<>(snapshot()).compute(origins, destinations, listener);
+        } finally {
+            Metrics.stop(Metrics.Operation.FRIENDSHIP_DISTANCES, start);
+        }
+    }
+
+    /**
+     * Samples the friends of a profile, then the friends of the sampled friends
+     * and so on, picking at most fanouts[h] friends of every profile at hop h.
+     * The cost depends on the fanouts only, not on the number of friends.
+     *
+     * @param user    user
+     * @param fanouts number of friends to sample at every hop
+     * @param seed    seed of the random number generator
+     * @return the sampled profiles of every hop, element h holds hop h+1, null if
+     *      the user does not exist.
+     */
+    public List<List<Profile>> sampleNeighborhood(Profile user, int[] fanouts, long seed) {
+        long start = Metrics.start();
+        try {
+            return graph.sampleNeighborhood(user, fanouts, new Random(seed));
+        } finally {
+            Metrics.stop(Metrics.Operation.SAMPLE_NEIGHBORHOOD, start);
+        }
+    }
+
+    /**
+     * Performs a random walk over the friendships, starting from a profile.
+     *
+     * @param user   user
+     * @param length maximum number of steps
+     * @param bias   how the next friend is chosen
+     * @param seed   seed of the random number generator
+     * @return the visited profiles starting with user, null if the user does not exist.
+     */
+    public List<Profile> randomWalk(Profile user, int length, Graph.WalkBias bias, long seed) {
+        long start = Metrics.start();
+        try {
+            return graph.randomWalk(user, length, bias, new Random(seed));
+        } finally {
+            Metrics.stop(Metrics.Operation.RANDOM_WALK, start);
+        }
+    }
+
+    /**
+     * Returns the same profiles as friendSuggestion, ordered from the most to the
+     * least influential one.
+     *
+     * @param user user
+     * @return null, if the user does not exist or if it does not have any friend suggestions,
+     *      else a list of profile ordered by influence.
+     */
+    public List<Profile> friendSuggestionByInfluence(Profile user) {
+        long start = Metrics.start();
+        try {
+            List<Profile> suggestionProfiles = friendSuggestion(user);
+            if (suggestionProfiles != null) {
+                rankInfluence();
+                Collections.sort(suggestionProfiles, influence.byScore());
+            }
+            return suggestionProfiles;
+        } finally {
+            Metrics.stop(Metrics.Operation.INFLUENCE, start);
+        }
+    }
+
+    /**
+     * Returns the PageRank of a profile, the scores of all the profiles sum up
+     * to 1. It returns 0 if the profile is not in the social networking app.
+     *
+     * @param user user
+     * @return PageRank of the profile
+     */
+    public double getInfluence(Profile user) {
+        long start = Metrics.start();
+        try {
+            rankInfluence();
+            return influence.getScore(user);
+        } finally {
+            Metrics.stop(Metrics.Operation.INFLUENCE, start);
+        }
+    }
+
+    /**
+     * Returns the number of friends of a profile divided by the number of other
+     * profiles. It returns 0 if the profile is not in the social networking app.
+     *
+     * @param user user
+     * @return degree centrality between 0 and 1
+     */
+    public double getDegreeCentrality(Profile user) {
+        long start = Metrics.start();
+        try {
+            rankInfluence();
+            return influence.getDegreeCentrality(user);
+        } finally {
+            Metrics.stop(Metrics.Operation.INFLUENCE, start);
+        }
+    }
+
+    /**
+     * Returns the number of triangles a profile is part of, i.e. the number of
+     * pairs of its friends that are friends of each other too. The first call
+     * counts every triangle, after that the counts are updated on every change.
+     *
+     * @param user user
+     * @return number of triangles, 0 if the user does not exist
+     */
+    public long getTriangleCount(Profile user) {
+        long start = Metrics.start();
+        try {
+            return triangles().getTriangles(user);
+        } finally {
+            Metrics.stop(Metrics.Operation.TRIANGLES, start);
+        }
+    }
+
+    /**
+     * Returns the local clustering coefficient of a profile, i.e. the fraction of
+     * the pairs of its friends that are friends of each other too.
+     *
+     * @param user user
+     * @return clustering coefficient between 0 and 1, 0 if the user does not exist
+     *      or has less than two friends.
+     */
+    public double getClusteringCoefficient(Profile user) {
+        long start = Metrics.start();
+        try {
+            return triangles().getClusteringCoefficient(user);
+        } finally {
+            Metrics.stop(Metrics.Operation.TRIANGLES, start);
+        }
+    }
+
+    /**
+     * Returns a page of the friends of a user, see Profile.getFriends. Pages are
+     * addressed by a cursor, so paging through the friends while friendships
+     * change neither skips nor repeats a friend that is there all along.
+     *
+     * @param user   user
+     * @param cursor FriendPage.FIRST, or the cursor of the previous page
+     * @param limit  maximum number of friends on the page, at least 1
+     * @param order  order of the friends
+     * @return page of friends, null if the user does not exist
+     * @throws IllegalArgumentException if limit is less than 1
+     */
+    public FriendPage getFriends(Profile user, long cursor, int limit, FriendPage.Order order) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        long start = Metrics.start();
+        try {
+            if (!exists(user)) {
+                return null;
+            }
+            return user.getFriends(cursor, limit, order);
+        } finally {
+            Metrics.stop(Metrics.Operation.FRIENDS, start);
+        }
+    }
+
+    /**
+     * Makes a user follow another one. Unlike a friendship, it's one way.
+     *
+     * @param follower user following
+     * @param followee user followed
+     * @return true if the follow is created, false if it already exists or a user
+     *      does not exist.
+     */
+    public boolean follow(Profile follower, Profile followee) {
+        long start = Metrics.start();
+        try {
+            return follows.addEdge(follower, followee);
+        } finally {
+            Metrics.stop(Metrics.Operation.FOLLOW, start);
+        }
+    }
+
+    /**
+     * Makes a user stop following another one.
+     *
+     * @param follower user following
+     * @param followee user followed
+     * @return true if the follow is removed, false if there was none.
+     */
+    public boolean unfollow(Profile follower, Profile followee) {
+        long start = Metrics.start();
+        try {
+            return follows.removeEdge(follower, followee);
+        } finally {
+            Metrics.stop(Metrics.Operation.FOLLOW, start);
+        }
+    }
+
+    /**
+     * Returns true if a user follows another one.
+     *
+     * @param follower user following
+     * @param followee user followed
+     * @return true if the follow exists
+     */
+    public boolean isFollowing(Profile follower, Profile followee) {
+        long start = Metrics.start();
+        try {
+            return follows.hasEdge(follower, followee);
+        } finally {
+            Metrics.stop(Metrics.Operation.FOLLOW, start);
+        }
+    }
+
+    /**
+     * Returns a range of the followers of a user, oldest follow first. The
+     * offset counts the follows there are now, so an unfollow before it moves
+     * the next ones up by one.
+     *
+     * @param user   user
+     * @param offset number of followers to skip
+     * @param limit  maximum number of followers
+     * @return followers, null if the user does not exist
+     */
+    public List<Profile> getFollowers(Profile user, int offset, int limit) {
+        long start = Metrics.start();
+        try {
+            return follows.getNeighbors(user, DirectedGraph.Direction.IN, offset, limit);
+        } finally {
+            Metrics.stop(Metrics.Operation.FOLLOW, start);
+        }
+    }
+
+    /**
+     * Returns a range of the users a user follows, oldest follow first. The
+     * offset counts the follows there are now, so an unfollow before it moves
+     * the next ones up by one.
+     *
+     * @param user   user
+     * @param offset number of users to skip
+     * @param limit  maximum number of users
+     * @return followed users, null if the user does not exist
+     */
+    public List<Profile> getFollowing(Profile user, int offset, int limit) {
+        long start = Metrics.start();
+        try {
+            return follows.getNeighbors(user, DirectedGraph.Direction.OUT, offset, limit);
+        } finally {
+            Metrics.stop(Metrics.Operation.FOLLOW, start);
+        }
+    }
+
+    /**
+     * Returns the number of followers of a user, in constant time.
+     *
+     * @param user user
+     * @return number of followers, 0 if the user does not exist
+     */
+    public int getFollowerCount(Profile user) {
+        return follows.getInDegree(user);
+    }
+
+    /**
+     * Returns the number of users a user follows, in constant time.
+     *
+     * @param user user
+     * @return number of followed users, 0 if the user does not exist
+     */
+    public int getFollowingCount(Profile user) {
+        return follows.getOutDegree(user);
+    }
+
+    /**
+     * Returns the length of the shortest chain of follows from a user to
+     * another one, or with IN, from the other one to the user.
+     *
+     * @param a         a profile
+     * @param b         another profile
+     * @param direction OUT to follow the follows, IN to follow the followers
+     * @return -1 If either of the profiles are not in the social network or there is no chain,
+     *      else the number of follows on the chain.
+     */
+    public int followDistance(Profile a, Profile b, DirectedGraph.Direction direction) {
+        long start = Metrics.start();
+        try {
+            int distance = follows.getShortestPath(a, b, new Stack<>(), direction, new TraversalBudget());
+            return distance == Integer.MAX_VALUE ? -1 : distance;
+        } finally {
+            Metrics.stop(Metrics.Operation.FOLLOW, start);
+        }
+    }
+
+    /**
+     * Returns a compressed read-only copy of the friendships, see
+     * CompressedGraph. It's taken from the current snapshot, whose breadth
+     * first order makes the gaps between friends small, and doesn't follow
+     * later changes.
+     *
+     * @return compressed friendship graph
+     */
+    public CompressedGraph<Profile> exportCompressed() {
+        return new CompressedGraph<>(snapshot());
+    }
+
+    /**
+     * Returns the estimated heap bytes of the app by component, see
+     * MemoryFootprint. The search index, the triangle counts, the influence
+     * scores and the event stream are not counted. The profile strings are
+     * the ProfileStore of the app, the names and statuses of its users.
+     *
+     * @return footprint
+     */
+    public MemoryFootprint getFootprint() {
+        MemoryFootprint footprint = new MemoryFootprint();
+        graph.addFootprint(footprint);
+        for (VertexInterface<Profile> vertex : graph.getVertices()) {
+            vertex.getLabel().addFootprint(footprint);
+        }
+        footprint.add(MemoryFootprint.Component.PROFILE_STRINGS, store.getBytesUsed());
+        footprint.add(MemoryFootprint.Component.FOLLOWS, follows.getBytesUsed());
+        footprint.add(MemoryFootprint.Component.HISTORY, history.getBytesUsed());
+        footprint.add(MemoryFootprint.Component.COMPONENTS, components.getBytesUsed());
+        if (snapshot != null) {
+            footprint.add(MemoryFootprint.Component.SNAPSHOT, snapshot.getBytesUsed());
+        }
+        return footprint;
+    }
+
+    /**
+     * Records the calls a trace can replay into a recorder: the users added
+     * and removed, the friendships created and removed, friendSuggestion(user),
+     * the friendship distances and the traversals. The users and the
+     * friendships already in the app are recorded first, as the setup of the
+     * trace, so a replay starts from the same graph. Then the calls are
+     * recorded in the order they are made, before they run, whether they
+     * change anything or not, except addUser, which is recorded when it adds
+     * the user.
+     *
+     * @param recorder new recorder to record into, null to stop recording
+     */
+    public void setRecorder(OperationTrace.Recorder recorder) {
+        if (recorder != null) {
+            List<VertexInterface<Profile>> vertices = graph.getVertices();
+            for (VertexInterface<Profile> vertex : vertices) {
+                recorder.record(OperationTrace.Type.ADD_USER, vertex.getLabel(), null);
+            }
+            for (VertexInterface<Profile> vertex : vertices) {
+                Profile user = vertex.getLabel();
+                Iterator<VertexInterface<Profile>> friends = vertex.getNeighborIterator();
+                while (friends.hasNext()) {
+                    Profile friend = friends.next().getLabel();
+                    //every friendship is seen from both sides, it's recorded from the smaller ID
+                    if (user.getID() < friend.getID()) {
+                        recorder.record(OperationTrace.Type.CREATE_FRIENDSHIP, user, friend);
+                    }
+                }
+            }
+            recorder.endSetup();
+        }
+        this.recorder = recorder;
+    }
+
+    /**
+     * Writes the users and their friendships to an image file, see
+     * GraphImage. The follows and the history of the friendships are not
+     * part of it.
+     *
+     * @param path file to write to
+     * @throws IOException if the file can't be written
+     */
+    public void saveImage(Path path) throws IOException {
+        GraphImage.save(graph, path);
+    }
+
+    /**
+     * Creates a social networking app from an image file written by
+     * saveImage. The file is read in parallel chunks, then only the profiles
+     * and the vertices are created: the friendships stay in the loaded arrays
+     * and are read from there, every friend list and edge list is only built
+     * on the first change of its user, or by warmUp. The snapshot is taken
+     * from the arrays too, so the app answers right away. The users get back
+     * the IDs they were saved with, unless a profile of this process may have
+     * one already, e.g. when the image is loaded twice: those users get new
+     * IDs, see getLoadedId. The IDs of new profiles come after the biggest
+     * saved one. The history of the friendships starts at the load.
+     *
+     * @param path file to read
+     * @return loaded app
+     * @throws IOException if the file can't be read or is not an image
+     */
+    public static SocialConnect loadImage(Path path) throws IOException {
+        GraphImage image = GraphImage.load(path);
+        int n = image.size();
+        int[] offsets = image.getOffsets();
+        int[] neighbors = image.getNeighbors();
+
+        //profiles get their saved IDs if they are free, the counter moves past them. They are
+        //restored by increasing saved ID, so every ID that was free before the load is kept
+        long[] bySavedId = new long[n];
+        for (int i = 0; i < n; i++) {
+            bySavedId[i] = (long) image.getProfileId(i) << 32 | i;
+        }
+        Arrays.sort(bySavedId);
+        Profile[] users = new Profile[n];
+        Map<Integer, Integer> renumbered = new HashMap<>();
+        for (long key : bySavedId) {
+            int i = (int) key;
+            users[i] = Profile.restore(image.getProfileId(i), image.getName(i), image.getStatus(i));
+            if (users[i].getID() != image.getProfileId(i)) {
+                renumbered.put(image.getProfileId(i), users[i].getID());
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            users[i].setLoadedFriends(users, neighbors, offsets[i], offsets[i + 1]);
+        }
+
+        SocialConnect connect = new SocialConnect();
+        List<Profile> labels = Arrays.asList(users);
+        connect.graph.load(labels, offsets, neighbors);
+        for (Profile user : users) {
+            user.attach(connect.store);
+            connect.follows.addVertex(user);
+        }
+        //rebuilt from the rows on the first query
+        connect.components.invalidate();
+        connect.snapshot = VertexOrder.apply(new GraphSnapshot<>(labels, offsets, neighbors), VertexOrder.Strategy.BFS);
+        connect.snapshotModifications = connect.modifications;
+        connect.loaded = n > 0 ? users : null;
+        if (!renumbered.isEmpty()) {
+            connect.renumbered = renumbered;
+        }
+        return connect;
+    }
+
+    /**
+     * Materializes the friend lists and the edge lists of the next users of
+     * the last image load, so later queries and changes don't pay for it. It
+     * can be called in slices between the queries until it returns true.
+     *
+     * @param count maximum number of users to materialize
+     * @return true if every loaded user is materialized
+     */
+    public boolean warmUp(int count) {
+        if (loaded != null) {
+            int end = Math.min(loaded.length, warmed + count);
+            for (; warmed < end; warmed++) {
+                loaded[warmed].materialize();
+            }
+            if (warmed == loaded.length) {
+                loaded = null;
+            }
+        }
+        return graph.materialize(count) && loaded == null;
+    }
+
+    /**
+     * Returns the ID a user of the image load has now, from the ID it was
+     * saved with. It's the same one unless the saved ID was taken when the
+     * image was loaded.
+     *
+     * @param savedId profile ID in the image
+     * @return current profile ID
+     */
+    public int getLoadedId(int savedId) {
+        Integer id = renumbered.get(savedId);
+        return id == null ? savedId : id;
+    }
+
+    /**
+     * Returns true if no user of an image load is left to materialize.
+     *
+     * @return true if warm
+     */
+    public boolean isWarm() {
+        return loaded == null;
+    }
+
+    /**
+     * Returns every user of the social network.
+     *
+     * @return users, in no particular order
+     */
+    public List<Profile> getUsers() {
+        List<Profile> users = new ArrayList<>();
+        for (VertexInterface<Profile> vertex : graph.getVertices()) {
+            users.add(vertex.getLabel());
+        }
+        return users;
+    }
+
+    /**
+     * Returns the time since which two users are friends.
+     *
+     * @param a a profile
+     * @param b another profile
+     * @return time in milliseconds the friendship was created, -1 if they are not friends
+     */
+    public long getFriendsSince(Profile a, Profile b) {
+        long start = Metrics.start();
+        try {
+            return history.neighborsSince(a, b, Long.MAX_VALUE);
+        } finally {
+            Metrics.stop(Metrics.Operation.HISTORY, start);
+        }
+    }
+
+    /**
+     * Returns the friends a user made in a time window, and still had at its
+     * end, e.g. the new connections of the last 7 days.
+     *
+     * @param user user
+     * @param from start of the window in milliseconds, inclusive
+     * @param to   end of the window in milliseconds, exclusive
+     * @return new friends, oldest friendship first
+     */
+    public List<Profile> getNewFriends(Profile user, long from, long to) {
+        long start = Metrics.start();
+        try {
+            return history.getNeighborsAdded(user, from, to);
+        } finally {
+            Metrics.stop(Metrics.Operation.HISTORY, start);
+        }
+    }
+
+    /**
+     * Returns the friends a user had at a past time.
+     *
+     * @param user user
+     * @param time time in milliseconds
+     * @return friends at that time, oldest friendship first
+     */
+    public List<Profile> getFriendsAt(Profile user, long time) {
+        long start = Metrics.start();
+        try {
+            return history.getNeighborsAt(user, time);
+        } finally {
+            Metrics.stop(Metrics.Operation.HISTORY, start);
+        }
+    }
+
+    /**
+     * Returns the friendship distance of two users in the social network as it
+     * was at a past time. Users without any friendship at that time are only at
+     * distance 0 from themselves.
+     *
+     * @param a    a profile
+     * @param b    another profile
+     * @param time time in milliseconds
+     * @return distance at that time, -1 if there was no path
+     */
+    public int friendshipDistanceAt(Profile a, Profile b, long time) {
+        long start = Metrics.start();
+        try {
+            return history.getDistanceAt(a, b, time);
+        } finally {
+            Metrics.stop(Metrics.Operation.HISTORY, start);
+        }
+    }
+
+    /**
+     * Returns up to k users having a word of their name starting with the
+     * prefix, ignoring the case, in alphabetical order. The first search indexes
+     * every user, after that the index is updated on every change, including the
+     * changes of the names.
+     *
+     * @param prefix beginning of a word of the name, it may go on over the next words
+     * @param k      maximum number of users
+     * @return matching users
+     */
+    public List<Profile> searchByName(String prefix, int k) {
+        long start = Metrics.start();
+        try {
+            return search().searchName(prefix, k);
+        } finally {
+            Metrics.stop(Metrics.Operation.SEARCH, start);
+        }
+    }
+
+    /**
+     * Returns up to k users matching the prefix like searchByName, the closest
+     * friends of the searcher first. Users that can't be reached from the
+     * searcher come last, in alphabetical order. Only the first
+     * MAX_RANKED_MATCHES matches are ranked.
+     *
+     * @param prefix   beginning of a word of the name
+     * @param k        maximum number of users
+     * @param searcher user searching
+     * @return matching users ordered by friendship distance to the searcher
+     */
+    public List<Profile> searchByName(String prefix, int k, Profile searcher) {
+        long start = Metrics.start();
+        try {
+            List<Profile> matches = search().searchName(prefix, MAX_RANKED_MATCHES);
+            if (!exists(searcher) || matches.isEmpty()) {
+                return matches.size() > k ? new ArrayList<>(matches.subList(0, k)) : matches;
+            }
+
+            //one traversal from the searcher reaches every match
+            List<Profile> origins = Collections.nCopies(matches.size(), searcher);
+            Map<Profile, Integer> distances = new ConcurrentHashMap<>();
+            new BatchDistance<>(snapshot()).compute(origins, matches,
+                    (origin, destination, distance) -> distances.put(destination,
+                            distance < 0 ? Integer.MAX_VALUE : distance));
+
+            //the sort is stable, so equal distances keep the alphabetical order
+            Collections.sort(matches, (a, b) -> Integer.compare(distances.get(a), distances.get(b)));
+            return matches.size() > k ? new ArrayList<>(matches.subList(0, k)) : matches;
+        } finally {
+            Metrics.stop(Metrics.Operation.SEARCH, start);
+        }
+    }
+
+    /**
+     * Returns the users whose status holds every word of the query, ignoring the
+     * case.
+     *
+     * @param query words to look for
+     * @return matching users
+     */
+    public List<Profile> searchByStatus(String query) {
+        long start = Metrics.start();
+        try {
+            return search().searchStatus(query);
+        } finally {
+            Metrics.stop(Metrics.Operation.SEARCH, start);
+        }
+    }
+
+    /**
+     * Returns the stream of the changes of the app: users added and removed,
+     * friendships created and removed, and names and statuses changed. A user
+     * removal stands for the removal of their friendships too. Until this is
+     * first called, the changes cost nothing, after that publishing an event
+     * costs one atomic increment, unless a handler is so far behind that the
+     * ring buffer is full.
+     *
+     * @return event stream
+     */
+    public MutationEventStream getEventStream() {
+        if (events == null) {
+            events = new MutationEventStream(EVENT_CAPACITY);
+            profileChanges = new ProfileChanges();
+            for (VertexInterface<Profile> vertex : graph.getVertices()) {
+                profileChanges.users.put(vertex.getLabel().getID(), vertex.getLabel());
+            }
+            store.addListener(profileChanges);
+        }
+        return events;
+    }
 
-            //get path and distance
-            Stack<Profile> path=new Stack<>();
-            int result=graph.getShortestPath(a,b,path);
+    /**
+     * Returns the search index, it's built from every user on the first call.
+     */
+    private ProfileIndex search() {
+        if (search == null) {
+            search = new ProfileIndex(store);
+            for (VertexInterface<Profile> vertex : graph.getVertices()) {
+                search.add(vertex.getLabel());
+            }
+        }
+        return search;
+    }
+
+    /**
+     * Returns the triangle counter, it's created with a full count on the first
+     * call.
+     */
+    private TriangleCounter<Profile> triangles() {
+        if (triangles == null) {
+            triangles = new TriangleCounter<>(graph);
+        }
+        return triangles;
+    }
 
-            // if distance is infinity return -1
-            if(result==Integer.MAX_VALUE)result=-1;
-            return result;
+    /**
+     * Recomputes the influence scores if the graph changed since the last time,
+     * starting from the previous scores.
+     */
+    private void rankInfluence() {
+        if (influenceModifications != modifications) {
+            influence.compute(snapshot());
+            influenceModifications = modifications;
+        }
+    }
+
+    /**
+     * Returns true if a traversal could run on the snapshot with
+     * DirectionOptimizingBFS: the graph is big enough for the parallel levels
+     * to pay for themselves, and the budget has no limit, as that search
+     * can't charge it edge by edge. A full traversal takes the snapshot
+     * anyway, a point query only if it's current, see snapshotCurrent.
+     */
+    private boolean parallelSearch(TraversalBudget budget) {
+        return graph.getNumberOfVertices() >= PARALLEL_SEARCH_VERTICES && !budget.isLimited();
+    }
+
+    /**
+     * Returns the link predictor of the current snapshot, it's rebuilt when the
+     * snapshot is. It's only used while the snapshot is current, after a write
+     * the scores come from the live graph until something takes a snapshot.
+     */
+    private LinkPredictor<Profile> linkPredictor() {
+        if (predictor == null || predictor.getSnapshot() != snapshot()) {
+            predictor = new LinkPredictor<>(snapshot(), SUGGESTION_TIES);
+        }
+        return predictor;
+    }
+
+    /**
+     * Returns the link predictor of the live graph.
+     */
+    private LiveLinkPredictor<Profile> liveLinkPredictor() {
+        if (livePredictor == null) {
+            livePredictor = new LiveLinkPredictor<>(graph, SUGGESTION_TIES);
+        }
+        return livePredictor;
+    }
+
+    /**
+     * Returns true if the last snapshot is the current graph, so a search on
+     * it costs no rebuild.
+     */
+    private boolean snapshotCurrent() {
+        return snapshot != null && snapshotModifications == modifications;
+    }
+
+    /**
+     * Returns a snapshot of the current graph, a new one is taken only if the
+     * graph changed since the last one. The graph hands out its users in hash
+     * order, which scatters friends over the whole id range, so the snapshot
+     * is renumbered in breadth first order, see VertexOrder. With 500k users
+     * in communities and 5M friendships this costs well under a second per
+     * snapshot and cuts PageRank by about a quarter and full traversals by 10
+     * to 50%.
+     */
+    private GraphSnapshot<Profile> snapshot() {
+        if (!snapshotCurrent()) {
+            snapshot = VertexOrder.apply(new GraphSnapshot<>(graph), VertexOrder.Strategy.BFS);
+            snapshotModifications = modifications;
         }
-        return -1;
+        return snapshot;
     }
 }
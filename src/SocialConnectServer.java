@@ -0,0 +1,464 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * This class serves a SocialConnect over HTTP, with the server built into the
+ * JDK (com.sun.net.httpserver). Users are addressed by their profile ID.
+ * Every request is handled on a thread of its own: a virtual thread when the
+ * JVM has them (Java 21 or later), a pooled platform thread otherwise.
+ * SocialConnect is not thread safe, so every operation runs while holding one
+ * lock. It's a ReentrantLock rather than a monitor, as a virtual thread blocked
+ * on a monitor pins its carrier thread. Writes are not applied by the request
+ * threads: they are queued, and a single writer thread applies everything that
+ * piled up in one batch, under one lock acquisition, so a burst of writes takes
+ * the lock once instead of once per write. Friendship changes go through a
+ * FriendshipIngestion instead, which spreads them over several writer
+ * threads and coalesces the changes of the same pair. An app loaded from an
+ * image is served right away, its users are materialized in the background.
+ * <p>
+ * Endpoints, all parameters in the query string, answers in plain text:
+ * <pre>
+ * POST /users?name=N&amp;status=S        adds a user, answers its ID
+ * POST /friendships?a=ID&amp;b=ID        creates a friendship, answers true/false
+ * DELETE /friendships?a=ID&amp;b=ID      removes a friendship, answers true/false
+ * GET  /friendships?a=ID&amp;b=ID        answers true/false
+ * GET  /friends?user=ID&amp;cursor=C&amp;limit=L&amp;order=creation|id
+ *                                    answers the cursor of the next page, empty on
+ *                                    the last one, then a friend ID per line
+ * GET  /suggestions?user=ID          answers the suggested IDs, comma separated
+ * GET  /distance?a=ID&amp;b=ID           answers the friendship distance
+ * </pre>
+ */
+public class SocialConnectServer {
+
+    //maximum number of writes applied under one lock acquisition
+    private static final int MAX_BATCH = 1024;
+    //users of a loaded image materialized under one lock acquisition
+    private static final int WARM_UP_SLICE = 4096;
+    //friends on a page when no limit is given, and at most
+    private static final int DEFAULT_PAGE = 100;
+    private static final int MAX_PAGE = 10000;
+
+    static {
+        //the JDK server writes the headers and the body separately, with Nagle's algorithm
+        //on the body waits for the delayed ack of the client, about 40ms for every answer
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private SocialConnect connect;
+    //guards every operation on connect
+    private ReentrantLock lock;
+    private HttpServer server;
+    private ExecutorService executor;
+    //every profile of connect when the server was created, and every one added through it, by ID
+    private Map<Integer, Profile> profiles;
+    //writes waiting for the writer thread
+    private BlockingQueue<Write<?>> writes;
+    private Thread writer;
+    //materializes the users of a loaded image, null if there was nothing to do
+    private Thread warmer;
+    //friendship changes
+    private FriendshipIngestion friendships;
+
+    /**
+     * A write waiting to be applied, and the future its request thread waits on.
+     */
+    private static class Write<R> {
+        private Supplier<R> operation;
+        private CompletableFuture<R> result;
+
+        private Write(Supplier<R> operation) {
+            this.operation = operation;
+            this.result = new CompletableFuture<>();
+        }
+
+        private void apply() {
+            try {
+                result.complete(operation.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * initializes the server, it's not listening until start is called.
+     *
+     * @param connect social networking app to serve
+     * @param port    port to listen on, 0 for any free port
+     * @throws IOException if the port can not be bound
+     */
+    public SocialConnectServer(SocialConnect connect, int port) throws IOException {
+        this.connect = connect;
+        lock = new ReentrantLock();
+        profiles = new ConcurrentHashMap<>();
+        writes = new LinkedBlockingQueue<>();
+        friendships = new FriendshipIngestion(connect, lock, Runtime.getRuntime().availableProcessors());
+        for (Profile profile : connect.getUsers()) {
+            profiles.put(profile.getID(), profile);
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+
+        server.createContext("/users", exchange -> handle(exchange, "POST", params -> {
+            String name = params.get("name");
+            String status = params.get("status");
+            return String.valueOf(write(() -> {
+                Profile profile = new Profile(name == null ? "" : name, status == null ? "" : status);
+                connect.addUser(profile);
+                profiles.put(profile.getID(), profile);
+                return profile.getID();
+            }));
+        }));
+        server.createContext("/friendships", exchange -> {
+            if ("POST".equals(exchange.getRequestMethod())) {
+                handle(exchange, "POST", params -> {
+                    Profile a = profile(params, "a");
+                    Profile b = profile(params, "b");
+                    return String.valueOf(await(friendships.createFriendship(a, b)));
+                });
+            } else if ("DELETE".equals(exchange.getRequestMethod())) {
+                handle(exchange, "DELETE", params -> {
+                    Profile a = profile(params, "a");
+                    Profile b = profile(params, "b");
+                    return String.valueOf(await(friendships.removeFriendship(a, b)));
+                });
+            } else {
+                handle(exchange, "GET", params -> {
+                    Profile a = profile(params, "a");
+                    Profile b = profile(params, "b");
+                    return String.valueOf(read(() -> connect.hasFriendship(a, b)));
+                });
+            }
+        });
+        server.createContext("/friends", exchange -> handle(exchange, "GET", params -> {
+            Profile user = profile(params, "user");
+            long cursor = number(params, "cursor", FriendPage.FIRST);
+            int limit = (int) number(params, "limit", DEFAULT_PAGE);
+            FriendPage.Order order;
+            try {
+                order = FriendPage.Order.valueOf(params.getOrDefault("order", "CREATION").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RequestException(400, "bad order");
+            }
+            if (limit < 1 || limit > MAX_PAGE) {
+                throw new RequestException(400, "limit must be between 1 and " + MAX_PAGE);
+            }
+
+            //first line: cursor of the next page or nothing, then one friend ID per line
+            FriendPage page = read(() -> connect.getFriends(user, cursor, limit, order));
+            StringBuilder answer = new StringBuilder();
+            if (page != null) {
+                answer.append(page.hasMore() ? String.valueOf(page.getNextCursor()) : "");
+                for (Profile friend : page.getFriends()) {
+                    answer.append('\n').append(friend.getID());
+                }
+            }
+            return answer.toString();
+        }));
+        server.createContext("/suggestions", exchange -> handle(exchange, "GET", params -> {
+            Profile user = profile(params, "user");
+            List<Profile> suggestions = read(() -> connect.friendSuggestion(user));
+            StringBuilder answer = new StringBuilder();
+            if (suggestions != null) {
+                for (Profile suggestion : suggestions) {
+                    if (answer.length() > 0) {
+                        answer.append(',');
+                    }
+                    answer.append(suggestion.getID());
+                }
+            }
+            return answer.toString();
+        }));
+        server.createContext("/distance", exchange -> handle(exchange, "GET", params -> {
+            Profile a = profile(params, "a");
+            Profile b = profile(params, "b");
+            return String.valueOf(read(() -> connect.friendshipDistance(a, b)));
+        }));
+    }
+
+    /**
+     * Starts listening and applying writes.
+     */
+    public void start() {
+        writer = new Thread(this::applyWrites, "socialconnect-writer");
+        writer.setDaemon(true);
+        writer.start();
+        friendships.start();
+        if (read(() -> !connect.isWarm())) {
+            //a freshly loaded image is served at once, and warmed up in slices between the requests
+            warmer = new Thread(this::warmUp, "socialconnect-warmup");
+            warmer.setDaemon(true);
+            warmer.start();
+        }
+        server.start();
+    }
+
+    /**
+     * Stops listening, the requests in progress get up to a second to finish.
+     */
+    public void stop() {
+        server.stop(1);
+        writer.interrupt();
+        if (warmer != null) {
+            warmer.interrupt();
+        }
+        try {
+            friendships.stop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns a profile of the app or added through this server, by ID.
+     *
+     * @param id profile ID
+     * @return the profile, null if there is none.
+     */
+    public Profile getProfile(int id) {
+        return profiles.get(id);
+    }
+
+    /**
+     * Returns an executor that runs every task on a new virtual thread if the JVM
+     * has them, a cached pool of daemon threads otherwise. Virtual threads are
+     * looked up by reflection, so this compiles for Java 8.
+     *
+     * @return executor for request handling
+     */
+    public static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Body of the writer thread: waits for a write, then applies it and every
+     * other queued write in one batch.
+     */
+    private void applyWrites() {
+        List<Write<?>> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(writes.take());
+                writes.drainTo(batch, MAX_BATCH - 1);
+                lock.lock();
+                try {
+                    for (Write<?> write : batch) {
+                        write.apply();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            //stopped
+        }
+    }
+
+    /**
+     * Queues a write and waits for the writer thread to apply it.
+     */
+    private <R> R write(Supplier<R> operation) throws RequestException {
+        Write<R> write = new Write<>(operation);
+        writes.add(write);
+        return await(write.result);
+    }
+
+    /**
+     * Waits for the result of a write.
+     */
+    private static <R> R await(CompletableFuture<R> result) throws RequestException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestException(503, "interrupted");
+        } catch (CancellationException e) {
+            //the server or the ingestion stopped before running it
+            throw new RequestException(503, "stopped");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                //the ingestion queue is full, the client may retry later
+                throw new RequestException(503, "overloaded");
+            }
+            throw new RequestException(500, String.valueOf(e.getCause()));
+        }
+    }
+
+    /**
+     * Materializes the users of a loaded image a slice at a time, the lock is
+     * released between the slices so the requests go on.
+     */
+    private void warmUp() {
+        boolean warm = false;
+        while (!warm && !Thread.currentThread().isInterrupted()) {
+            warm = read(() -> connect.warmUp(WARM_UP_SLICE));
+        }
+    }
+
+    /**
+     * Runs a read while holding the lock.
+     */
+    private <R> R read(Supplier<R> operation) {
+        lock.lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the profile whose ID is the given parameter.
+     */
+    private Profile profile(Map<String, String> params, String name) throws RequestException {
+        String value = params.get(name);
+        if (value == null) {
+            throw new RequestException(400, "missing parameter " + name);
+        }
+
+        Profile profile;
+        try {
+            profile = profiles.get(Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "bad parameter " + name);
+        }
+        if (profile == null) {
+            throw new RequestException(404, "no user " + value);
+        }
+        return profile;
+    }
+
+    /**
+     * Returns a number parameter, or the default value if it's missing.
+     */
+    private static long number(Map<String, String> params, String name, long defaultValue) throws RequestException {
+        String value = params.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "bad parameter " + name);
+        }
+    }
+
+    /**
+     * Checks the method, runs the handler and sends its answer, a handler
+     * that fails gets a 500.
+     */
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        int code = 200;
+        String answer;
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                throw new RequestException(405, "use " + method);
+            }
+            answer = handler.handle(parse(exchange.getRequestURI().getRawQuery()));
+        } catch (RequestException e) {
+            code = e.code;
+            answer = e.getMessage();
+        } catch (RuntimeException e) {
+            code = 500;
+            answer = String.valueOf(e);
+        }
+
+        byte[] body = answer.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Parses a query string into a map.
+     */
+    private static Map<String, String> parse(String query) throws RequestException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+
+        try {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals == -1) {
+                    params.put(URLDecoder.decode(pair, "UTF-8"), "");
+                } else {
+                    params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new RequestException(400, "bad query");
+        }
+        return params;
+    }
+
+    /**
+     * Answers a request from its parameters.
+     */
+    private interface Handler {
+        String handle(Map<String, String> params) throws RequestException;
+    }
+
+    /**
+     * A request that can not be answered, with its HTTP status code.
+     */
+    private static class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private int code;
+
+        private RequestException(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+}
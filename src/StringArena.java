@@ -0,0 +1,268 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class stores strings as UTF-8 bytes, one after another in a single
+ * byte array, and hands out an int reference for each. Equal strings are
+ * stored once and get the same reference, which is found through an open
+ * addressing hash table over the bytes, so no String object is kept alive.
+ * Every reference is counted: add counts one more holder of the string and
+ * release one less, and a string nobody holds is removed, its reference is
+ * reused by a later string. Its bytes are left in place until they are more
+ * than half of the bytes and references, then the live strings are copied
+ * into a new array, so an arena under churn stays within about twice its
+ * live bytes.
+ * A null string is not stored, it gets the reference NULL, so a null name or
+ * status reads back as null.
+ * It's not thread safe.
+ */
+public class StringArena {
+
+    /**
+     * The reference of null.
+     */
+    public static final int NULL = -1;
+
+    //all the strings one after another
+    private byte[] bytes;
+    private int used;
+    //bytes of removed strings, still in the array
+    private int garbage;
+    //start, length, hash and number of holders of every reference, a free one has no holder
+    private int[] starts;
+    private int[] lengths;
+    private int[] hashes;
+    private int[] holders;
+    private int count;
+    //free references, reused first
+    private int[] free;
+    private int freeCount;
+    //open addressing table of reference + 1, 0 marks a free slot, its size is a power of two
+    private int[] table;
+
+    /**
+     * initializes an empty arena.
+     */
+    public StringArena() {
+        bytes = new byte[1024];
+        starts = new int[64];
+        lengths = new int[64];
+        hashes = new int[64];
+        holders = new int[64];
+        free = new int[16];
+        table = new int[128];
+    }
+
+    /**
+     * Returns the reference of the concatenation of the given parts, adding it
+     * if it's not in the arena yet, and counts one more holder of it. The
+     * concatenation is never built as a String. A single null part is null, a
+     * null part of a concatenation is "null", as with the + operator.
+     *
+     * @param parts strings to concatenate
+     * @return reference, NULL for null
+     */
+    public int add(String... parts) {
+        if (parts.length == 1 && parts[0] == null) {
+            return NULL;
+        }
+        //encoding the parts at the free end of the array, as if it was added
+        int start = used;
+        for (String part : parts) {
+            byte[] encoded = String.valueOf(part).getBytes(StandardCharsets.UTF_8);
+            ensureBytes(used + encoded.length);
+            System.arraycopy(encoded, 0, bytes, used, encoded.length);
+            used += encoded.length;
+        }
+        int length = used - start;
+        int hash = hash(start, length);
+
+        //if it's already there, the encoded bytes are dropped again
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int ref = table[slot] - 1;
+            if (hashes[ref] == hash && equal(starts[ref], lengths[ref], start, length)) {
+                used = start;
+                holders[ref]++;
+                return ref;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int ref;
+        if (freeCount > 0) {
+            ref = free[--freeCount];
+        } else {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                hashes = Arrays.copyOf(hashes, count * 2);
+                holders = Arrays.copyOf(holders, count * 2);
+            }
+            ref = count++;
+        }
+        starts[ref] = start;
+        lengths[ref] = length;
+        hashes[ref] = hash;
+        holders[ref] = 1;
+        table[slot] = ref + 1;
+        if (size() * 2 > table.length) {
+            rehash();
+        }
+        return ref;
+    }
+
+    /**
+     * Counts one holder less of a reference, the string is removed when it has
+     * none left.
+     *
+     * @param ref reference returned by add, NULL is ignored
+     */
+    public void release(int ref) {
+        if (ref == NULL || --holders[ref] > 0) {
+            return;
+        }
+
+        //removing it from the table, the entries after it in its run move back to fill the slot
+        int mask = table.length - 1;
+        int hole = hashes[ref] & mask;
+        while (table[hole] != ref + 1) {
+            hole = (hole + 1) & mask;
+        }
+        table[hole] = 0;
+        for (int slot = (hole + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int home = hashes[table[slot] - 1] & mask;
+            //the entry can move if its home is not in the cyclic range (hole, slot]
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                table[hole] = table[slot];
+                table[slot] = 0;
+                hole = slot;
+            }
+        }
+
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, freeCount * 2);
+        }
+        free[freeCount++] = ref;
+        garbage += lengths[ref];
+        //a compaction costs the bytes and the references, the garbage pays for it
+        if (garbage > (used + count) / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Decodes the string of a reference.
+     *
+     * @param ref reference
+     * @return string, null for NULL
+     */
+    public String get(int ref) {
+        if (ref == NULL) {
+            return null;
+        }
+        return new String(bytes, starts[ref], lengths[ref], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of UTF-8 bytes of a reference.
+     *
+     * @param ref reference
+     * @return number of bytes, 0 for NULL
+     */
+    public int length(int ref) {
+        return ref == NULL ? 0 : lengths[ref];
+    }
+
+    /**
+     * Returns the number of distinct strings.
+     *
+     * @return number of strings
+     */
+    public int size() {
+        return count - freeCount;
+    }
+
+    /**
+     * Returns the number of bytes used by the strings, the garbage not
+     * compacted yet included.
+     *
+     * @return number of bytes
+     */
+    public long getBytesUsed() {
+        return used;
+    }
+
+    /**
+     * Copies the strings that have holders into a new byte array, without
+     * the garbage. The references don't change.
+     */
+    private void compact() {
+        byte[] compacted = new byte[Math.max(1024, 2 * (used - garbage))];
+        int size = 0;
+        for (int ref = 0; ref < count; ref++) {
+            if (holders[ref] > 0) {
+                System.arraycopy(bytes, starts[ref], compacted, size, lengths[ref]);
+                starts[ref] = size;
+                size += lengths[ref];
+            }
+        }
+        bytes = compacted;
+        used = size;
+        garbage = 0;
+    }
+
+    /**
+     * Grows the byte array to hold at least the given number of bytes.
+     */
+    private void ensureBytes(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+
+    /**
+     * Doubles the hash table.
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int ref = 0; ref < count; ref++) {
+            if (holders[ref] == 0) {
+                continue;
+            }
+            int slot = hashes[ref] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = ref + 1;
+        }
+    }
+
+    /**
+     * FNV-1a hash of a range of the byte array.
+     */
+    private int hash(int start, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    /**
+     * Compares two ranges of the byte array.
+     */
+    private boolean equal(int start1, int length1, int start2, int length2) {
+        if (length1 != length2) {
+            return false;
+        }
+        for (int i = 0; i < length1; i++) {
+            if (bytes[start1 + i] != bytes[start2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,381 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * This class keeps the history of the edges of an undirected graph: every
+ * edge added or removed is an event with a timestamp, appended to the log of
+ * both ends. A log is never rewritten, so the graph as of any past time can be
+ * read from the logs, without a copy of the graph per version.
+ * The log of a vertex is stored compactly: the other end of every event is an
+ * int with the removals flagged in the lowest bit, and the timestamps are the
+ * varint-encoded differences from the previous event, usually a byte or two.
+ * Every SKIP events a checkpoint holds the full timestamp and the position in
+ * the encoded bytes, so a time window is found by a binary search over the
+ * checkpoints followed by decoding at most SKIP events.
+ * Timestamps are non-negative, like milliseconds since the epoch, and the
+ * ones of a vertex have to be non-decreasing: an earlier one is moved up to the
+ * last one. It's not thread safe.
+ *
+ * @param <T> label of the vertices
+ */
+public class TemporalEdgeStore<T> {
+
+    //events between two checkpoints
+    private static final int SKIP = 64;
+
+    /**
+     * Event log of one vertex.
+     */
+    private static class Log {
+
+        private int size;
+        //other end of every event, shifted left by one, the lowest bit is set for removals
+        private int[] ends = new int[2];
+        //varint-encoded difference between the timestamp of every event and the previous one
+        private byte[] deltas = new byte[4];
+        private int bytes;
+        private long last;
+        //timestamp of every SKIP-th event and the position of the delta after it
+        private long[] checkpointTimes = new long[1];
+        private int[] checkpointBytes = new int[1];
+
+        /**
+         * Appends an event, returns its timestamp.
+         */
+        private long append(int end, boolean removed, long time) {
+            time = Math.max(time, last);
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            ends[size] = end << 1 | (removed ? 1 : 0);
+
+            if (deltas.length - bytes < 10) {
+                deltas = Arrays.copyOf(deltas, deltas.length * 2 + 10);
+            }
+            long delta = time - last;
+            while ((delta & ~0x7FL) != 0) {
+                deltas[bytes++] = (byte) (delta & 0x7F | 0x80);
+                delta >>>= 7;
+            }
+            deltas[bytes++] = (byte) delta;
+            last = time;
+
+            if (size % SKIP == 0) {
+                int checkpoint = size / SKIP;
+                if (checkpoint == checkpointTimes.length) {
+                    checkpointTimes = Arrays.copyOf(checkpointTimes, checkpoint * 2);
+                    checkpointBytes = Arrays.copyOf(checkpointBytes, checkpoint * 2);
+                }
+                checkpointTimes[checkpoint] = time;
+                checkpointBytes[checkpoint] = bytes;
+            }
+            size++;
+            return time;
+        }
+    }
+
+    /**
+     * Reads the events of a log from a given one on, decoding the timestamps.
+     */
+    private static class Cursor {
+
+        private final Log log;
+        private int event;
+        private int position;
+        private long time;
+
+        /**
+         * Starts at the first event at or after the given time.
+         */
+        private Cursor(Log log, long from) {
+            this.log = log;
+            //the last checkpoint before the time, events with the same time may be on both sides of one
+            int checkpoints = (log.size + SKIP - 1) / SKIP;
+            int low = 0;
+            int high = checkpoints - 1;
+            int found = -1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (log.checkpointTimes[middle] < from) {
+                    found = middle;
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+
+            if (found == -1) {
+                event = -1;
+                position = 0;
+                time = 0;
+            } else {
+                event = found * SKIP;
+                position = log.checkpointBytes[found];
+                time = log.checkpointTimes[found];
+            }
+            while (event < log.size && (event < 0 || time < from)) {
+                next();
+            }
+        }
+
+        /**
+         * Moves to the next event.
+         */
+        private void next() {
+            event++;
+            if (event < log.size) {
+                long delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = log.deltas[position++];
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                time += delta;
+            }
+        }
+
+        private boolean hasEvent() {
+            return event < log.size;
+        }
+
+        private int end() {
+            return log.ends[event] >>> 1;
+        }
+
+        private boolean removed() {
+            return (log.ends[event] & 1) != 0;
+        }
+    }
+
+    private Map<T, Integer> index;
+    private List<T> labels;
+    private List<Log> logs;
+
+    /**
+     * initializes an empty history.
+     */
+    public TemporalEdgeStore() {
+        index = new HashMap<>();
+        labels = new ArrayList<>();
+        logs = new ArrayList<>();
+    }
+
+    /**
+     * Records that an edge was added.
+     *
+     * @param a    an end
+     * @param b    the other end
+     * @param time timestamp
+     */
+    public void edgeAdded(T a, T b, long time) {
+        append(a, b, false, time);
+    }
+
+    /**
+     * Records that an edge was removed.
+     *
+     * @param a    an end
+     * @param b    the other end
+     * @param time timestamp
+     */
+    public void edgeRemoved(T a, T b, long time) {
+        append(a, b, true, time);
+    }
+
+    /**
+     * Returns the time since which two vertices are neighbors.
+     *
+     * @param a    a vertex
+     * @param b    another vertex
+     * @param time time of the question
+     * @return timestamp of the addition of the edge, -1 if there was no edge at that time
+     */
+    public long neighborsSince(T a, T b, long time) {
+        Integer u = index.get(a);
+        Integer v = index.get(b);
+        if (u == null || v == null) {
+            return -1;
+        }
+
+        long since = -1;
+        for (Cursor cursor = new Cursor(logs.get(u), Long.MIN_VALUE); cursor.hasEvent() && cursor.time <= time; cursor.next()) {
+            if (cursor.end() == v) {
+                since = cursor.removed() ? -1 : cursor.time;
+            }
+        }
+        return since;
+    }
+
+    /**
+     * Returns the vertices that became neighbors of a vertex in a time window,
+     * and still were at its end.
+     *
+     * @param vertex vertex
+     * @param from   start of the window, inclusive
+     * @param to     end of the window, exclusive
+     * @return new neighbors, oldest first
+     */
+    public List<T> getNeighborsAdded(T vertex, long from, long to) {
+        Integer u = index.get(vertex);
+        if (u == null) {
+            return new ArrayList<>();
+        }
+
+        //the removals in the window cancel the additions before them
+        Set<Integer> added = new LinkedHashSet<>();
+        for (Cursor cursor = new Cursor(logs.get(u), from); cursor.hasEvent() && cursor.time < to; cursor.next()) {
+            if (cursor.removed()) {
+                added.remove(cursor.end());
+            } else {
+                added.add(cursor.end());
+            }
+        }
+        return labelsOf(added);
+    }
+
+    /**
+     * Returns the neighbors of a vertex as of a time.
+     *
+     * @param vertex vertex
+     * @param time   time
+     * @return neighbors at that time, in the order they were added
+     */
+    public List<T> getNeighborsAt(T vertex, long time) {
+        Integer u = index.get(vertex);
+        return u == null ? new ArrayList<>() : labelsOf(neighborsAt(u, time));
+    }
+
+    /**
+     * Returns the number of edges between two vertices in the graph as of a
+     * time, by a breadth first traversal that replays the logs of the vertices
+     * it reaches.
+     *
+     * @param a    a vertex
+     * @param b    another vertex
+     * @param time time
+     * @return distance, -1 if there was no path at that time
+     */
+    public int getDistanceAt(T a, T b, long time) {
+        Integer origin = index.get(a);
+        Integer destination = index.get(b);
+        if (origin == null || destination == null) {
+            return a.equals(b) ? 0 : -1;
+        }
+
+        int[] distance = new int[labels.size()];
+        Arrays.fill(distance, -1);
+        distance[origin] = 0;
+        Queue<Integer> queue = new ArrayDeque<>();
+        queue.add(origin);
+        long vertices = 0;
+        long edges = 0;
+        while (!queue.isEmpty()) {
+            int u = queue.remove();
+            vertices++;
+            if (u == destination) {
+                Metrics.scanned(vertices, edges);
+                return distance[u];
+            }
+            for (int v : neighborsAt(u, time)) {
+                edges++;
+                if (distance[v] == -1) {
+                    distance[v] = distance[u] + 1;
+                    queue.add(v);
+                }
+            }
+        }
+        Metrics.scanned(vertices, edges);
+        return -1;
+    }
+
+    /**
+     * Returns the number of events recorded.
+     *
+     * @return number of events, every edge change counts twice
+     */
+    public long getNumberOfEvents() {
+        long events = 0;
+        for (Log log : logs) {
+            events += log.size;
+        }
+        return events;
+    }
+
+    /**
+     * Returns the estimated number of bytes of the history, see
+     * MemoryFootprint.
+     *
+     * @return bytes used
+     */
+    public long getBytesUsed() {
+        long bytes = MemoryFootprint.hashMapSize(index.size()) + MemoryFootprint.boxedSize(index.size())
+                + MemoryFootprint.arrayListSize(labels.size()) + MemoryFootprint.arrayListSize(logs.size());
+        for (Log log : logs) {
+            bytes += MemoryFootprint.shallowSize(Log.class)
+                    + MemoryFootprint.arraySize(log.ends.length, 4)
+                    + MemoryFootprint.arraySize(log.deltas.length, 1)
+                    + MemoryFootprint.arraySize(log.checkpointTimes.length, 8)
+                    + MemoryFootprint.arraySize(log.checkpointBytes.length, 4);
+        }
+        return bytes;
+    }
+
+    /**
+     * Appends an event to the logs of both ends.
+     */
+    private void append(T a, T b, boolean removed, long time) {
+        int u = indexOf(a);
+        int v = indexOf(b);
+        logs.get(u).append(v, removed, time);
+        logs.get(v).append(u, removed, time);
+    }
+
+    /**
+     * Returns the index of a vertex, it gets a log if it has none.
+     */
+    private int indexOf(T label) {
+        Integer i = index.get(label);
+        if (i == null) {
+            i = labels.size();
+            index.put(label, i);
+            labels.add(label);
+            logs.add(new Log());
+        }
+        return i;
+    }
+
+    /**
+     * Replays the log of a vertex up to a time.
+     */
+    private Set<Integer> neighborsAt(int u, long time) {
+        Set<Integer> neighbors = new LinkedHashSet<>();
+        for (Cursor cursor = new Cursor(logs.get(u), Long.MIN_VALUE); cursor.hasEvent() && cursor.time <= time; cursor.next()) {
+            if (cursor.removed()) {
+                neighbors.remove(cursor.end());
+            } else {
+                neighbors.add(cursor.end());
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Returns the labels of vertex indexes.
+     */
+    private List<T> labelsOf(Set<Integer> vertices) {
+        List<T> result = new ArrayList<>(vertices.size());
+        for (int v : vertices) {
+            result.add(labels.get(v));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,335 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class replays an OperationTrace against a new SocialConnect and
+ * measures it: the throughput, the latency percentiles of every kind of
+ * operation, the allocation rate and the work of the garbage collector. The
+ * same trace gives the same load from run to run, so two builds can be
+ * compared, and a run can fail when a p99 goes over a limit.
+ * <p>
+ * The setup of the trace is applied first, on one thread, unmeasured. The
+ * other operations are dealt to the replaying threads by key, the pair of
+ * users of an operation on a pair and the user otherwise, and every thread
+ * runs its operations in trace order. So the operations on the same pair
+ * keep their order, a friendship is never removed before it's created, and
+ * every run ends with the same graph. A user is added and removed by the
+ * same thread; an operation on a pair that runs after the removal of one of
+ * its users does nothing, and one that runs before it is undone by it. Every
+ * operation runs while holding one
+ * lock, as SocialConnect is not thread safe, just like SocialConnectServer
+ * does. At a target rate operation k is due at k/rate seconds from the
+ * start, and its latency is counted from then, not from when a late thread
+ * got to it, so a stall shows up in the latency of every operation it
+ * delays. Without a target rate the operations run back to back, and the
+ * latency is the time of the call. An operation on a user that another
+ * thread has not added yet waits for it. The user is added by an earlier
+ * operation, which never waits for a later one, so every operation of the
+ * trace is applied.
+ * The profiles traverse displays are thrown away during the replay.
+ * <p>
+ * Usage:
+ * <pre>
+ * java TraceReplayer record TRACE [users] [friendships] [operations] [zipf exponent] [seed]
+ * java TraceReplayer replay TRACE [threads] [operations per second, 0 for no limit] [maximum p99 in us]
+ * </pre>
+ * record writes a generated trace, replay exits with status 1 if the p99 of
+ * an operation goes over the maximum.
+ */
+public class TraceReplayer {
+
+    //vertices a replayed traverse displays at most
+    private static final int TRAVERSE_VERTICES = 1000;
+    //time the threads get to start before the first operation is due
+    private static final long START_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private OperationTrace trace;
+    private SocialConnect app;
+    private Profile[] profiles;
+    //true once a user is added, guarded by lock
+    private boolean[] added;
+    private ReentrantLock lock;
+    //latency of every type of operation in nanoseconds
+    private Histogram[] latencies;
+    private AtomicLong allocated;
+    private long elapsed;
+    private long collections;
+    private long collectionTime;
+
+    /**
+     * initializes the replay of a trace, the profiles of its users are
+     * created right away.
+     *
+     * @param trace trace to replay
+     */
+    public TraceReplayer(OperationTrace trace) {
+        this.trace = trace;
+        app = new SocialConnect();
+        profiles = new Profile[trace.getUsers()];
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = new Profile("User " + i, "Hello");
+        }
+        added = new boolean[profiles.length];
+        lock = new ReentrantLock();
+        latencies = new Histogram[OperationTrace.Type.values().length];
+        for (int t = 0; t < latencies.length; t++) {
+            latencies[t] = new Histogram();
+        }
+        allocated = new AtomicLong(-1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: java TraceReplayer record|replay TRACE [...]");
+            return;
+        }
+        if ("record".equals(args[0])) {
+            int users = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+            int friendships = args.length > 3 ? Integer.parseInt(args[3]) : 10 * users;
+            int operations = args.length > 4 ? Integer.parseInt(args[4]) : 1000000;
+            double exponent = args.length > 5 ? Double.parseDouble(args[5]) : 0.99;
+            long seed = args.length > 6 ? Long.parseLong(args[6]) : 42;
+            OperationTrace.generate(users, friendships, operations, exponent, seed).write(Paths.get(args[1]));
+            return;
+        }
+
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        double rate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+        long maxP99 = args.length > 4 ? Long.parseLong(args[4]) : Long.MAX_VALUE;
+        OperationTrace trace = OperationTrace.read(Paths.get(args[1]));
+        System.out.println("Replaying " + (trace.size() - trace.getSetup()) + " operations on " + threads +
+                " threads" + (rate > 0 ? " at " + (long) rate + " operations/s" : "") + ", after a setup of " +
+                trace.getSetup() + " operations.");
+        TraceReplayer replayer = new TraceReplayer(trace);
+        replayer.replay(threads, rate);
+        if (!replayer.report(TimeUnit.MICROSECONDS.toNanos(maxP99))) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Applies the setup, then replays the other operations and measures them.
+     *
+     * @param threads number of replaying threads
+     * @param rate    operations per second, 0 for no limit
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public void replay(int threads, double rate) throws InterruptedException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                //thrown away
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                //thrown away
+            }
+        }));
+        try {
+            for (int i = 0; i < trace.getSetup(); i++) {
+                apply(i);
+            }
+
+            long gcCount = collections();
+            long gcTime = collectionTime();
+            int[][] dealt = deal(threads);
+            long start = System.nanoTime() + START_DELAY;
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int[] operations = dealt[t];
+                Thread worker = new Thread(() -> run(operations, rate, start), "trace-replayer-" + t);
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            elapsed = System.nanoTime() - start;
+            collections = collections() - gcCount;
+            collectionTime = collectionTime() - gcTime;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    /**
+     * Prints the throughput, the allocation, the collections and the latency
+     * of every type of operation.
+     *
+     * @param maxP99 p99 every type of operation should stay below, in nanoseconds
+     * @return true if every p99 is below maxP99
+     */
+    public boolean report(long maxP99) {
+        long operations = trace.size() - trace.getSetup();
+        double seconds = Math.max(1, elapsed) / 1e9;
+        System.out.println(String.format("throughput: %.0f operations/s", operations / seconds));
+        if (allocated.get() >= 0) {
+            System.out.println(String.format("allocation: %.1f MB/s, %d bytes/operation",
+                    allocated.get() / seconds / (1 << 20), allocated.get() / Math.max(1, operations)));
+        }
+        System.out.println("collections: " + collections + " taking " + collectionTime + "ms");
+
+        boolean passed = true;
+        for (OperationTrace.Type type : OperationTrace.Type.values()) {
+            Histogram latency = latencies[type.ordinal()];
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            long p99 = latency.getValueAtPercentile(99);
+            boolean over = p99 > maxP99;
+            passed &= !over;
+            System.out.println(type + ": count=" + latency.getCount() +
+                    ", p50=" + latency.getValueAtPercentile(50) / 1000 + "us" +
+                    ", p99=" + p99 / 1000 + "us" +
+                    ", p999=" + latency.getValueAtPercentile(99.9) / 1000 + "us" +
+                    ", max=" + latency.getMax() / 1000 + "us" + (over ? "  OVER LIMIT" : ""));
+        }
+        return passed;
+    }
+
+    /**
+     * Returns the latencies of a type of operation, in nanoseconds.
+     *
+     * @param type type of operation
+     * @return latency histogram
+     */
+    public Histogram getLatency(OperationTrace.Type type) {
+        return latencies[type.ordinal()];
+    }
+
+    /**
+     * Deals the operations after the setup to the threads by key, every
+     * thread gets its operations in trace order, numbered from the end of the
+     * setup.
+     */
+    private int[][] deal(int threads) {
+        int operations = trace.size() - trace.getSetup();
+        int[] owners = new int[operations];
+        int[] counts = new int[threads];
+        for (int k = 0; k < operations; k++) {
+            int i = trace.getSetup() + k;
+            int a = trace.getFirst(i);
+            int b = trace.getSecond(i);
+            //the key of a pair doesn't depend on the order of its users
+            int key = b == -1 ? a : 31 * Math.min(a, b) + Math.max(a, b);
+            owners[k] = Math.floorMod(key, threads);
+            counts[owners[k]]++;
+        }
+        int[][] dealt = new int[threads][];
+        for (int t = 0; t < threads; t++) {
+            dealt[t] = new int[counts[t]];
+        }
+        Arrays.fill(counts, 0);
+        for (int k = 0; k < operations; k++) {
+            dealt[owners[k]][counts[owners[k]]++] = k;
+        }
+        return dealt;
+    }
+
+    /**
+     * Replays the given operations after the setup, in order.
+     */
+    private void run(int[] operations, double rate, long start) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        //the allocated bytes of a thread are only known on HotSpot
+        com.sun.management.ThreadMXBean allocation = null;
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled()) {
+            allocation = (com.sun.management.ThreadMXBean) bean;
+        }
+        long id = Thread.currentThread().getId();
+        long allocatedBefore = allocation != null ? allocation.getThreadAllocatedBytes(id) : -1;
+
+        for (int k : operations) {
+            long begin;
+            if (rate > 0) {
+                begin = start + (long) (k * 1e9 / rate);
+                for (long wait = begin - System.nanoTime(); wait > 0; wait = begin - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                begin = System.nanoTime();
+            }
+            int i = trace.getSetup() + k;
+            while (!apply(i)) {
+                Thread.yield();
+            }
+            latencies[trace.getType(i).ordinal()].record(System.nanoTime() - begin);
+        }
+
+        if (allocatedBefore >= 0) {
+            long bytes = allocation.getThreadAllocatedBytes(id) - allocatedBefore;
+            allocated.accumulateAndGet(bytes, (total, b) -> Math.max(0, total) + b);
+        }
+    }
+
+    /**
+     * Applies an operation, returns false if it's about a user not added yet.
+     */
+    private boolean apply(int i) {
+        Profile a = profiles[trace.getFirst(i)];
+        Profile b = trace.getSecond(i) == -1 ? null : profiles[trace.getSecond(i)];
+        lock.lock();
+        try {
+            if (trace.getType(i) == OperationTrace.Type.ADD_USER) {
+                app.addUser(a);
+                added[trace.getFirst(i)] = true;
+                return true;
+            }
+            if (!added[trace.getFirst(i)] || b != null && !added[trace.getSecond(i)]) {
+                return false;
+            }
+            switch (trace.getType(i)) {
+                case CREATE_FRIENDSHIP:
+                    app.createFriendship(a, b);
+                    break;
+                case REMOVE_FRIENDSHIP:
+                    app.removeFriendship(a, b);
+                    break;
+                case FRIEND_SUGGESTION:
+                    app.friendSuggestion(a);
+                    break;
+                case FRIENDSHIP_DISTANCE:
+                    app.friendshipDistance(a, b);
+                    break;
+                case REMOVE_USER:
+                    app.removeUser(a);
+                    break;
+                default:
+                    app.traverse(a, new TraversalBudget().setMaxVertices(TRAVERSE_VERTICES));
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long collectionTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class limits the work a single traversal may do: the number of vertices
+ * it visits, the number of edges it scans, and the time it may run. It can
+ * also be cancelled from another thread. When a limit is hit the traversal
+ * stops and returns what it found so far.
+ * A budget is used up by the traversal it's passed to, so every traversal
+ * needs a new one.
+ */
+public class TraversalBudget {
+
+    /**
+     * Distance returned when the budget ran out before the destination was
+     * reached, so it's not known if there is a path.
+     */
+    public static final int UNKNOWN_DISTANCE = -2;
+
+    //the clock is only read every this many charges, as it's slower than counting
+    private static final int CLOCK_INTERVAL = 256;
+
+    private long maxVertices;
+    private long maxEdges;
+    //System.nanoTime() after which the traversal has to stop, 0 if there is none
+    private long deadline;
+
+    private long vertices;
+    private long edges;
+    private boolean exhausted;
+    //set from another thread
+    private volatile boolean cancelled;
+
+    /**
+     * initializes a budget without any limit.
+     */
+    public TraversalBudget() {
+        maxVertices = Long.MAX_VALUE;
+        maxEdges = Long.MAX_VALUE;
+        deadline = 0;
+    }
+
+    /**
+     * Sets the maximum number of vertices to visit.
+     *
+     * @param maxVertices maximum number of vertices
+     * @return this budget
+     */
+    public TraversalBudget setMaxVertices(long maxVertices) {
+        this.maxVertices = maxVertices;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of edges to scan.
+     *
+     * @param maxEdges maximum number of edges
+     * @return this budget
+     */
+    public TraversalBudget setMaxEdges(long maxEdges) {
+        this.maxEdges = maxEdges;
+        return this;
+    }
+
+    /**
+     * Sets the time the traversal may run, counted from now.
+     *
+     * @param timeout time the traversal may run
+     * @param unit    unit of timeout
+     * @return this budget
+     */
+    public TraversalBudget setTimeout(long timeout, TimeUnit unit) {
+        deadline = System.nanoTime() + unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Stops the traversal using this budget, it can be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Counts a visited vertex.
+     *
+     * @return true if the traversal may go on, false if it has to stop.
+     */
+    public boolean chargeVertex() {
+        vertices++;
+        if (vertices > maxVertices) {
+            exhausted = true;
+        }
+        return check(vertices);
+    }
+
+    /**
+     * Counts a scanned edge.
+     *
+     * @return true if the traversal may go on, false if it has to stop.
+     */
+    public boolean chargeEdge() {
+        edges++;
+        if (edges > maxEdges) {
+            exhausted = true;
+        }
+        return check(edges);
+    }
+
+    /**
+     * Returns true if any limit was set, a traversal without limits doesn't
+     * have to charge it.
+     *
+     * @return true if there is a limit, false otherwise.
+     */
+    public boolean isLimited() {
+        return maxVertices != Long.MAX_VALUE || maxEdges != Long.MAX_VALUE || deadline != 0;
+    }
+
+    /**
+     * Returns true if a limit was hit or the budget was cancelled, i.e. the
+     * result of the traversal may be partial.
+     *
+     * @return true if the budget ran out, false otherwise.
+     */
+    public boolean isExhausted() {
+        return exhausted || cancelled;
+    }
+
+    /**
+     * Returns the number of vertices visited so far.
+     *
+     * @return number of vertices
+     */
+    public long getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Returns the number of edges scanned so far.
+     *
+     * @return number of edges
+     */
+    public long getEdges() {
+        return edges;
+    }
+
+    /**
+     * Checks the deadline and the cancellation, the clock only every
+     * CLOCK_INTERVAL charges.
+     */
+    private boolean check(long charges) {
+        if (cancelled) {
+            exhausted = true;
+        } else if (deadline != 0 && charges % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+            exhausted = true;
+        }
+        return !exhausted;
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * This generic class counts the triangles every vertex of a graph is part of,
+ * and its local clustering coefficient, i.e. the fraction of the pairs of its
+ * neighbors that are neighbors of each other too.
+ * The full count runs over a GraphSnapshot: every edge is oriented from the
+ * lower to the higher ranked end (by degree, then id), so every triangle is
+ * found exactly once, from its lowest ranked vertex, by intersecting two
+ * sorted out-lists. The vertices are processed in parallel.
+ * After the full count the counts can be kept up to date incrementally with
+ * edgeAdded, edgeRemoved and vertexRemoving, which only look at the neighbors
+ * of the changed edge or vertex.
+ *
+ * @param <T> key type
+ */
+public class TriangleCounter<T> {
+
+    //below this many vertices the parallel streams cost more than they save
+    private static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    //the graph the counts belong to, used by the incremental updates
+    private GraphInterface<T> graph;
+    //number of triangles of every vertex, missing means 0
+    private Map<T, Long> triangles;
+    //number of triangles in the graph
+    private long total;
+
+    /**
+     * initializes the counter with the full count of the given graph.
+     *
+     * @param graph graph to count
+     */
+    public TriangleCounter(GraphInterface<T> graph) {
+        this.graph = graph;
+        recount();
+    }
+
+    /**
+     * Throws away the counts and counts every triangle of the graph again.
+     */
+    public void recount() {
+        GraphSnapshot<T> snapshot = new GraphSnapshot<>(graph);
+        long[] counts = count(snapshot);
+
+        triangles = new HashMap<>();
+        long sum = 0;
+        for (int v = 0; v < counts.length; v++) {
+            if (counts[v] != 0) {
+                triangles.put(snapshot.getLabel(v), counts[v]);
+                sum += counts[v];
+            }
+        }
+        total = sum / 3;
+    }
+
+    /**
+     * Counts the triangles of every dense id of a snapshot.
+     *
+     * @param snapshot snapshot to count
+     * @return number of triangles of every dense id
+     */
+    public static long[] count(GraphSnapshot<?> snapshot) {
+        int n = snapshot.size();
+        int[] offsets = snapshot.getOffsets();
+        int[] neighbors = snapshot.getNeighbors();
+
+        //out[v] keeps the neighbors ranked higher than v, still sorted by id
+        int[] outOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            int degree = 0;
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                if (isOriented(snapshot, v, neighbors[i])) {
+                    degree++;
+                }
+            }
+            outOffsets[v + 1] = outOffsets[v] + degree;
+        }
+        int[] out = new int[outOffsets[n]];
+        for (int v = 0; v < n; v++) {
+            int position = outOffsets[v];
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                if (isOriented(snapshot, v, neighbors[i])) {
+                    out[position++] = neighbors[i];
+                }
+            }
+        }
+
+        //for every oriented edge v->u the common out-neighbors w close a triangle v,u,w
+        AtomicLongArray counts = new AtomicLongArray(n);
+        IntStream range = IntStream.range(0, n);
+        (n >= PARALLEL_THRESHOLD ? range.parallel() : range).forEach(v -> {
+            long found = 0;
+            for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                int u = out[i];
+                int a = outOffsets[v];
+                int b = outOffsets[u];
+                while (a < outOffsets[v + 1] && b < outOffsets[u + 1]) {
+                    if (out[a] < out[b]) {
+                        a++;
+                    } else if (out[a] > out[b]) {
+                        b++;
+                    } else {
+                        found++;
+                        counts.incrementAndGet(u);
+                        counts.incrementAndGet(out[a]);
+                        a++;
+                        b++;
+                    }
+                }
+            }
+            counts.addAndGet(v, found);
+        });
+
+        long[] result = new long[n];
+        for (int v = 0; v < n; v++) {
+            result[v] = counts.get(v);
+        }
+        return result;
+    }
+
+    /**
+     * Updates the counts after an edge was added to the graph.
+     *
+     * @param a a vertexLabel
+     * @param b another vertexLabel
+     */
+    public void edgeAdded(T a, T b) {
+        update(a, b, 1);
+    }
+
+    /**
+     * Updates the counts after an edge was removed from the graph.
+     *
+     * @param a a vertexLabel
+     * @param b another vertexLabel
+     */
+    public void edgeRemoved(T a, T b) {
+        update(a, b, -1);
+    }
+
+    /**
+     * Updates the counts before a vertex is removed from the graph, it has to be
+     * called while the vertex and its edges are still in the graph.
+     *
+     * @param label vertexLabel
+     */
+    public void vertexRemoving(T label) {
+        VertexInterface<T> vertex = graph.getVertex(label);
+        if (vertex == null) {
+            return;
+        }
+
+        //every triangle label,u,c loses one from u and one from c
+        for (T u : neighborSet(label)) {
+            add(u, -vertex.getNumberOfCommonNeighbors(graph.getVertex(u)));
+        }
+
+        total -= getTriangles(label);
+        triangles.remove(label);
+    }
+
+    /**
+     * Returns the number of triangles a vertex is part of.
+     *
+     * @param label vertexLabel
+     * @return number of triangles
+     */
+    public long getTriangles(T label) {
+        Long count = triangles.get(label);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns the number of triangles in the graph.
+     *
+     * @return number of triangles
+     */
+    public long getTotalTriangles() {
+        return total;
+    }
+
+    /**
+     * Returns the local clustering coefficient of a vertex. It's 0 for vertices
+     * with less than two neighbors or not in the graph.
+     *
+     * @param label vertexLabel
+     * @return clustering coefficient between 0 and 1
+     */
+    public double getClusteringCoefficient(T label) {
+        VertexInterface<T> vertex = graph.getVertex(label);
+        int degree = vertex == null ? 0 : vertex.getNumberOfNeighbors();
+        if (degree < 2) {
+            return 0;
+        }
+        return 2.0 * getTriangles(label) / ((double) degree * (degree - 1));
+    }
+
+    /**
+     * Adds sign to the counts of every triangle the edge a-b closes, i.e. to a,
+     * b and every common neighbor of them.
+     */
+    private void update(T a, T b, int sign) {
+        //the common neighbors of a and b, found through the neighbor index of the larger one
+        List<VertexInterface<T>> neighbors = graph.getVertex(a).getCommonNeighbors(graph.getVertex(b));
+        long common = neighbors.size();
+        for (VertexInterface<T> c : neighbors) {
+            add(c.getLabel(), sign);
+        }
+
+        add(a, sign * common);
+        add(b, sign * common);
+        total += sign * common;
+    }
+
+    /**
+     * Returns the labels of the neighbors of a vertex.
+     */
+    private Set<T> neighborSet(T label) {
+        Set<T> set = new HashSet<>();
+        Iterator<VertexInterface<T>> iterator = graph.getVertex(label).getNeighborIterator();
+        while (iterator.hasNext()) {
+            set.add(iterator.next().getLabel());
+        }
+        return set;
+    }
+
+    /**
+     * Adds delta to the count of a vertex.
+     */
+    private void add(T label, long delta) {
+        long count = getTriangles(label) + delta;
+        if (count == 0) {
+            triangles.remove(label);
+        } else {
+            triangles.put(label, count);
+        }
+    }
+
+    /**
+     * Returns true if the edge v-u is oriented from v to u, i.e. u has a higher
+     * degree, or the same degree and a higher id.
+     */
+    private static boolean isOriented(GraphSnapshot<?> snapshot, int v, int u) {
+        int degreeV = snapshot.degree(v);
+        int degreeU = snapshot.degree(u);
+        return degreeV < degreeU || (degreeV == degreeU && v < u);
+    }
+}
@@ -1,8 +1,24 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 public class Vertex<T> implements VertexInterface<T> {
+    // Up to this degree a neighbor is found by a scan of the neighbors.
+    private static final int SMALL_DEGREE = 16;
+    // Up to this degree the neighbors are indexed by a sorted int array, above it by an IntBitmap.
+    private static final int HUB_DEGREE = 2048;
+    // Ids of the vertices, in creation order.
+    private static final AtomicInteger ids = new AtomicInteger();
+    // Neighbors of every vertex without edges.
+    @SuppressWarnings("rawtypes")
+    private static final VertexInterface[] NO_NEIGHBORS = new VertexInterface[0];
+
     // Represents the label of the vertex.
     private T label;
     // Stores if the vertex is visited or not, true if visited.
@@ -11,19 +27,40 @@ public class Vertex<T> implements VertexInterface<T> {
     private VertexInterface<T> previousVertex;
     // of path to this vertex
     private double cost;
-    // list of edges to neighbors. Note that there is an Edge class used.
-    private List<Edge<T>> edgeList;
+    // end of every edge, the first degree are used, in the order they were connected.
+    // An edge is only its end, 4 bytes, an Edge object per edge cost 36 bytes with its list slot.
+    private VertexInterface<T>[] neighbors;
+    // weight of every edge, null while every weight is 0, then a new edge to a neighbor may be a parallel edge.
+    private double[] weights;
+    private int degree;
+    // Unique id of this vertex, the neighbor indexes hold the ids of the neighbors.
+    private final int id;
+    // Index of the neighbors by degree, at most one of them is not null: none for
+    // small degrees, sortedIds (of which idCount are used) for mid degrees and hubIds for hubs.
+    private int[] sortedIds;
+    private int idCount;
+    private IntBitmap hubIds;
+    // True once a neighbor is not a Vertex, it has no id so the neighbors are always scanned.
+    private boolean unindexed;
+    // Row of a loaded graph, not yet turned into edges: the neighbors are
+    // resolver(loadedNeighbors[loadedFrom]) up to loadedTo, all unweighted.
+    // loadedNeighbors is null once the vertex is materialized.
+    private int[] loadedNeighbors;
+    private int loadedFrom;
+    private int loadedTo;
+    private IntFunction<VertexInterface<T>> resolver;
 
     /**
      * initializes label to the given value, visited -> false, cost -> 0.0,
-     * previousVertex ->null, and the edgeList to a default list.
+     * previousVertex ->null, and no edges.
      */
     public Vertex(T vertexLabel) {
         label = vertexLabel;
         visited = false;
         cost = 0.0;
         previousVertex = null;
-        edgeList = new ArrayList<>();
+        neighbors = newNeighbors(0);
+        id = ids.getAndIncrement();
     }
 
     @Override
@@ -33,8 +70,11 @@ public class Vertex<T> implements VertexInterface<T> {
 
     @Override
     public int getNumberOfNeighbors() {
-        // edgeList size also refer to number of neighbors
-        return edgeList.size();
+        if (loadedNeighbors != null) {
+            return loadedTo - loadedFrom;
+        }
+        // every edge is a neighbor
+        return degree;
     }
 
     @Override
@@ -54,64 +94,114 @@ public class Vertex<T> implements VertexInterface<T> {
 
     @Override
     public boolean connect(VertexInterface<T> endVertex, double edgeWeight) {
-        Edge<T> newEdge = new Edge<>(endVertex, edgeWeight);
-
-        //The two vertices cannot be the same, and must not already have this edge between them.
-        if (!endVertex.getLabel().equals(label) && !edgeList.contains(newEdge)) {
-            edgeList.add(newEdge);
-
-            return true;
-        }
-
-        return false;
+        return add(endVertex, edgeWeight);
     }
 
     @Override
     public boolean connect(VertexInterface<T> endVertex) {
-        Edge<T> newEdge = new Edge<>(endVertex, 0);
-
-        //The two vertices cannot be the same, and must not already have this edge between them.
-        if (!endVertex.getLabel().equals(label) && !edgeList.contains(newEdge)) {
-            edgeList.add(newEdge);
-
-            return true;
-        }
-
-        return false;
+        return add(endVertex, 0);
     }
 
     @Override
     public boolean disconnect(VertexInterface<T> endVertex, double edgeWeight) {
-        Edge<T> newEdge = new Edge<>(endVertex, edgeWeight);
+        return remove(endVertex, edgeWeight);
+    }
+
+    @Override
+    public boolean disconnect(VertexInterface<T> endVertex) {
+        return remove(endVertex, 0);
+    }
 
-        //The Edge should exist in order to be disconnected
-        if (edgeList.contains(newEdge)) {
-            edgeList.remove(newEdge);
-            return true;
+    @Override
+    public boolean isNeighbor(VertexInterface<T> vertex) {
+        if (vertex == null) {
+            return false;
+        }
+        if (loadedNeighbors != null) {
+            if (loadedTo - loadedFrom > SMALL_DEGREE) {
+                //the row is not sorted, a hub is worth indexing
+                materialize();
+            } else {
+                for (int i = loadedFrom; i < loadedTo; i++) {
+                    if (resolver.apply(loadedNeighbors[i]).getLabel().equals(vertex.getLabel())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        if (vertex instanceof Vertex && !unindexed) {
+            int other = ((Vertex<T>) vertex).id;
+            if (hubIds != null) {
+                return hubIds.contains(other);
+            }
+            if (sortedIds != null) {
+                return Arrays.binarySearch(sortedIds, 0, idCount, other) >= 0;
+            }
         }
 
+        //small degree, or a vertex without id
+        for (int i = 0; i < degree; i++) {
+            if (neighbors[i].getLabel().equals(vertex.getLabel())) {
+                return true;
+            }
+        }
         return false;
     }
 
     @Override
-    public boolean disconnect(VertexInterface<T> endVertex) {
-        Edge<T> newEdge = new Edge<>(endVertex, 0);
+    public List<VertexInterface<T>> getCommonNeighbors(VertexInterface<T> vertex) {
+        //probing the index of the larger side with the neighbors of the smaller one
+        VertexInterface<T> larger = vertex;
+        Iterator<VertexInterface<T>> smaller = getNeighborIterator();
+        if (vertex.getNumberOfNeighbors() < getNumberOfNeighbors()) {
+            larger = this;
+            smaller = vertex.getNeighborIterator();
+        }
 
-        //The Edge should exist in order to be disconnected
-        if (edgeList.contains(newEdge)) {
-            edgeList.remove(newEdge);
-            return true;
+        List<VertexInterface<T>> common = new ArrayList<>();
+        Set<T> seen = null;
+        while (smaller.hasNext()) {
+            VertexInterface<T> next = smaller.next();
+            if (larger.isNeighbor(next)) {
+                if (seen == null) {
+                    seen = new HashSet<>();
+                }
+                //parallel edges with different weights are listed once
+                if (seen.add(next.getLabel())) {
+                    common.add(next);
+                }
+            }
         }
+        return common;
+    }
 
-        return false;
+    @Override
+    public int getNumberOfCommonNeighbors(VertexInterface<T> vertex) {
+        if (vertex instanceof Vertex && !unindexed && !((Vertex<T>) vertex).unindexed) {
+            Vertex<T> other = (Vertex<T>) vertex;
+            if (hubIds != null && other.hubIds != null) {
+                return hubIds.intersectionSize(other.hubIds);
+            }
+            if (sortedIds != null && other.sortedIds != null) {
+                return intersectionSize(sortedIds, idCount, other.sortedIds, other.idCount);
+            }
+        }
+        return getCommonNeighbors(vertex).size();
     }
 
     @Override
     public Iterator<VertexInterface<T>> getNeighborIterator() {
         //creating a list with all Neighbor
         List<VertexInterface<T>> neighbors = new ArrayList<>();
-        for (Edge<T> edge : edgeList) {
-            neighbors.add(edge.getV());
+        if (loadedNeighbors != null) {
+            for (int i = loadedFrom; i < loadedTo; i++) {
+                neighbors.add(resolver.apply(loadedNeighbors[i]));
+            }
+            return neighbors.listIterator();
+        }
+        for (int i = 0; i < degree; i++) {
+            neighbors.add(this.neighbors[i]);
         }
 
         //and returning a listIterator of created list
@@ -122,25 +212,73 @@ public class Vertex<T> implements VertexInterface<T> {
     public Iterator<Double> getWeightIterator() {
         //creating a list with all Weight
         List<Double> weights = new ArrayList<>();
-        for (Edge<T> edge : edgeList) {
-            weights.add(edge.getW());
+        if (loadedNeighbors != null) {
+            //loaded edges are unweighted
+            return Collections.nCopies(loadedTo - loadedFrom, 0.0).iterator();
+        }
+        if (this.weights == null) {
+            return Collections.nCopies(degree, 0.0).iterator();
+        }
+        for (int i = 0; i < degree; i++) {
+            weights.add(this.weights[i]);
         }
 
         //and returning a listIterator of created list
         return weights.listIterator();
     }
 
+    @Override
+    public VertexInterface<T> getNeighbor(int index) {
+        if (loadedNeighbors != null) {
+            if (index < 0 || index >= loadedTo - loadedFrom) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return resolver.apply(loadedNeighbors[loadedFrom + index]);
+        }
+        if (index < 0 || index >= degree) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return neighbors[index];
+    }
+
+    @Override
+    public double getWeight(int index) {
+        if (loadedNeighbors != null) {
+            if (index < 0 || index >= loadedTo - loadedFrom) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            return 0;
+        }
+        if (index < 0 || index >= degree) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return weights == null ? 0 : weights[index];
+    }
+
     @Override
     public boolean hasNeighbor() {
-        return !edgeList.isEmpty();
+        if (loadedNeighbors != null) {
+            return loadedTo > loadedFrom;
+        }
+        return degree > 0;
     }
 
     @Override
     public VertexInterface<T> getUnvisitedNeighbor() {
-        //iterate over edgeList to search neighbor vertex that is not yet visited and return is
-        for (Edge<T> edge : edgeList) {
-            if (!edge.getV().isVisited()) {
-                return edge.getV();
+        if (loadedNeighbors != null) {
+            for (int i = loadedFrom; i < loadedTo; i++) {
+                VertexInterface<T> neighbor = resolver.apply(loadedNeighbors[i]);
+                if (!neighbor.isVisited()) {
+                    return neighbor;
+                }
+            }
+            return null;
+        }
+
+        //iterate over the neighbors to search one that is not yet visited and return it
+        for (int i = 0; i < degree; i++) {
+            if (!neighbors[i].isVisited()) {
+                return neighbors[i];
             }
         }
         return null;
@@ -173,56 +311,297 @@ public class Vertex<T> implements VertexInterface<T> {
     }
 
     /**
-     * Graph Edge that connected two vertices.
+     * Adds an edge, the two vertices cannot be the same, and must not already
+     * have this edge between them.
+     */
+    private boolean add(VertexInterface<T> endVertex, double edgeWeight) {
+        materialize();
+        if (endVertex.getLabel().equals(label)) {
+            return false;
+        }
+
+        //with only unweighted edges the neighbor is this edge, otherwise the edges are scanned for its weight
+        boolean neighbor = isNeighbor(endVertex);
+        if (neighbor && (weights == null && edgeWeight == 0 || positionOf(endVertex, edgeWeight) >= 0)) {
+            return false;
+        }
+        if (degree == neighbors.length) {
+            neighbors = Arrays.copyOf(neighbors, Math.max(4, degree * 2));
+        }
+        if (weights == null && edgeWeight != 0) {
+            weights = new double[neighbors.length];
+        } else if (weights != null && weights.length < neighbors.length) {
+            weights = Arrays.copyOf(weights, neighbors.length);
+        }
+        neighbors[degree] = endVertex;
+        if (weights != null) {
+            weights[degree] = edgeWeight;
+        }
+        degree++;
+        if (!neighbor) {
+            indexAdd(endVertex);
+        }
+        return true;
+    }
+
+    /**
+     * Removes an edge, keeping the order of the others, the edge should exist
+     * in order to be disconnected.
+     */
+    private boolean remove(VertexInterface<T> endVertex, double edgeWeight) {
+        materialize();
+        if (!isNeighbor(endVertex)) {
+            return false;
+        }
+
+        //the position of the edge, and whether another edge to the same vertex stays
+        int position = -1;
+        int sameEnd = 0;
+        for (int i = 0; i < degree; i++) {
+            if (neighbors[i].getLabel().equals(endVertex.getLabel())) {
+                sameEnd++;
+                if (position == -1 && (weights == null ? 0 : weights[i]) == edgeWeight) {
+                    position = i;
+                }
+            }
+        }
+        if (position == -1) {
+            return false;
+        }
+
+        System.arraycopy(neighbors, position + 1, neighbors, position, degree - position - 1);
+        if (weights != null) {
+            System.arraycopy(weights, position + 1, weights, position, degree - position - 1);
+        }
+        neighbors[--degree] = null;
+        if (sameEnd == 1) {
+            indexRemove(endVertex);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position of the edge to a vertex with a weight, -1 if there
+     * is none.
+     */
+    private int positionOf(VertexInterface<T> endVertex, double edgeWeight) {
+        for (int i = 0; i < degree; i++) {
+            if (neighbors[i].getLabel().equals(endVertex.getLabel()) && (weights == null ? 0 : weights[i]) == edgeWeight) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds the bytes of the edges and of the neighbor index of this vertex to
+     * a footprint, the vertex itself is counted by its graph. A row that is
+     * not materialized counts 4 bytes per neighbor, its share of the arrays
+     * of the load, the vertices without edges share their empty array.
      *
-     * @param <T> graph key type.
+     * @param footprint footprint to add to
      */
-    protected class Edge<T> {
+    public void addFootprint(MemoryFootprint footprint) {
+        if (loadedNeighbors != null) {
+            footprint.add(MemoryFootprint.Component.ADJACENCY, 4L * (loadedTo - loadedFrom));
+        } else if (neighbors != NO_NEIGHBORS) {
+            footprint.add(MemoryFootprint.Component.ADJACENCY, MemoryFootprint.arraySize(neighbors.length,
+                    MemoryFootprint.REFERENCE) + (weights == null ? 0 : MemoryFootprint.arraySize(weights.length, 8)));
+        }
+        if (sortedIds != null) {
+            footprint.add(MemoryFootprint.Component.NEIGHBOR_INDEX, MemoryFootprint.arraySize(sortedIds.length, 4));
+        }
+        if (hubIds != null) {
+            footprint.add(MemoryFootprint.Component.NEIGHBOR_INDEX,
+                    MemoryFootprint.shallowSize(IntBitmap.class) + hubIds.getBytesUsed());
+        }
+    }
 
-        private VertexInterface<T> v;
-        private double w;
+    /**
+     * Sets the edges of a vertex from the row of a loaded graph, they are only
+     * resolved into neighbors when the vertex is changed, or asked for a
+     * neighbor of a hub. Until then the neighbors are read from the row. The
+     * vertex must have no edge.
+     *
+     * @param neighbors ids of the neighbors of every loaded vertex
+     * @param from      first id of the row
+     * @param to        end of the row
+     * @param resolver  vertex of every id
+     */
+    void setLoadedNeighbors(int[] neighbors, int from, int to, IntFunction<VertexInterface<T>> resolver) {
+        if (degree > 0 || loadedNeighbors != null) {
+            throw new IllegalStateException("vertex already has edges");
+        }
+        loadedNeighbors = neighbors;
+        loadedFrom = from;
+        loadedTo = to;
+        this.resolver = resolver;
+    }
 
-        /**
-         * Default constructor, create a new edge with w weight.
-         *
-         * @param v endVertex
-         * @param w weight
-         */
-        public Edge(VertexInterface<T> v, double w) {
-            this.v = v;
-            this.w = w;
+    /**
+     * Turns the row of a loaded vertex into edges and indexes them at once,
+     * nothing happens if it has none.
+     */
+    void materialize() {
+        if (loadedNeighbors == null) {
+            return;
         }
+        neighbors = newNeighbors(loadedTo - loadedFrom);
+        for (int i = loadedFrom; i < loadedTo; i++) {
+            neighbors[degree++] = resolver.apply(loadedNeighbors[i]);
+        }
+        loadedNeighbors = null;
+        resolver = null;
 
-        /**
-         * Getter method for endVertex
-         *
-         * @return endVertex
-         */
-        public VertexInterface<T> getV() {
-            return v;
+        if (degree <= SMALL_DEGREE) {
+            return;
+        }
+        int[] neighborIds = new int[degree];
+        for (int i = 0; i < neighborIds.length; i++) {
+            VertexInterface<T> neighbor = neighbors[i];
+            if (!(neighbor instanceof Vertex)) {
+                unindexed = true;
+                return;
+            }
+            neighborIds[i] = ((Vertex<T>) neighbor).id;
+        }
+        Arrays.sort(neighborIds);
+        int count = unique(neighborIds, neighborIds.length);
+        if (count > HUB_DEGREE) {
+            hubIds = new IntBitmap();
+            for (int i = 0; i < count; i++) {
+                hubIds.add(neighborIds[i]);
+            }
+        } else {
+            sortedIds = neighborIds;
+            idCount = count;
+        }
+    }
+
+    /**
+     * Adds a new neighbor to the index, promoting it if the degree crosses a
+     * threshold.
+     */
+    private void indexAdd(VertexInterface<T> vertex) {
+        if (unindexed) {
+            return;
+        }
+        if (!(vertex instanceof Vertex)) {
+            unindexed = true;
+            sortedIds = null;
+            hubIds = null;
+            return;
+        }
+
+        int other = ((Vertex<T>) vertex).id;
+        if (hubIds != null) {
+            hubIds.add(other);
+        } else if (sortedIds != null) {
+            if (idCount == HUB_DEGREE) {
+                hubIds = new IntBitmap();
+                for (int i = 0; i < idCount; i++) {
+                    hubIds.add(sortedIds[i]);
+                }
+                hubIds.add(other);
+                sortedIds = null;
+                return;
+            }
+            int i = -Arrays.binarySearch(sortedIds, 0, idCount, other) - 1;
+            if (idCount == sortedIds.length) {
+                sortedIds = Arrays.copyOf(sortedIds, Math.min(HUB_DEGREE, idCount * 2));
+            }
+            System.arraycopy(sortedIds, i, sortedIds, i + 1, idCount - i);
+            sortedIds[i] = other;
+            idCount++;
+        } else if (degree > SMALL_DEGREE) {
+            //every neighbor is a Vertex, otherwise unindexed would be set
+            Set<Integer> distinct = new HashSet<>();
+            for (int i = 0; i < degree; i++) {
+                distinct.add(((Vertex<T>) neighbors[i]).id);
+            }
+            sortedIds = new int[Math.max(2 * SMALL_DEGREE, distinct.size())];
+            idCount = 0;
+            for (int neighbor : distinct) {
+                sortedIds[idCount++] = neighbor;
+            }
+            Arrays.sort(sortedIds, 0, idCount);
+        }
+    }
+
+    /**
+     * Removes a neighbor from the index. A representation is demoted at half
+     * its threshold, so a degree going up and down around it doesn't convert
+     * it back and forth.
+     */
+    private void indexRemove(VertexInterface<T> vertex) {
+        if (unindexed) {
+            return;
         }
 
-        /**
-         * Getter method for weight
-         *
-         * @return weight
-         */
-        public double getW() {
-            return w;
+        int other = ((Vertex<T>) vertex).id;
+        if (hubIds != null) {
+            hubIds.remove(other);
+            if (hubIds.size() < HUB_DEGREE / 2) {
+                sortedIds = new int[Math.max(HUB_DEGREE, degree)];
+                idCount = 0;
+                for (int i = 0; i < degree; i++) {
+                    sortedIds[idCount++] = ((Vertex<T>) neighbors[i]).id;
+                }
+                Arrays.sort(sortedIds, 0, idCount);
+                idCount = unique(sortedIds, idCount);
+                hubIds = null;
+            }
+        } else if (sortedIds != null) {
+            int i = Arrays.binarySearch(sortedIds, 0, idCount, other);
+            System.arraycopy(sortedIds, i + 1, sortedIds, i, idCount - i - 1);
+            idCount--;
+            if (idCount < SMALL_DEGREE / 2) {
+                sortedIds = null;
+                idCount = 0;
+            }
         }
+    }
+
+    /**
+     * Returns an array for the given number of neighbors, the shared empty one
+     * for none.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> VertexInterface<T>[] newNeighbors(int length) {
+        return length == 0 ? NO_NEIGHBORS : new VertexInterface[length];
+    }
 
-        @Override
-        @SuppressWarnings("unchecked")
-        public boolean equals(Object obj) {
-            return v.getLabel().equals(((Edge<T>) obj).getV().getLabel()) && w == ((Edge<T>) obj).getW();
+    /**
+     * Removes the duplicates of a sorted array, returns the new length.
+     */
+    private static int unique(int[] values, int length) {
+        int size = 0;
+        for (int i = 0; i < length; i++) {
+            if (size == 0 || values[size - 1] != values[i]) {
+                values[size++] = values[i];
+            }
         }
+        return size;
+    }
 
-        @Override
-        public String toString() {
-            return "Edge{" +
-                    ", v=" + v +
-                    ", w=" + w +
-                    '}';
+    /**
+     * Size of the intersection of two sorted arrays, by a merge.
+     */
+    private static int intersectionSize(int[] a, int lengthA, int[] b, int lengthB) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < lengthA && j < lengthB) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
         }
+        return count;
     }
 }
@@ -1,4 +1,5 @@
 import java.util.Iterator;
+import java.util.List;
 
 public interface VertexInterface<T> {
 
@@ -80,6 +81,33 @@ public interface VertexInterface<T> {
      */
     public boolean disconnect(VertexInterface<T> endVertex);
 
+    /**
+     * Returns true if this vertex has an edge to the given vertex of the same
+     * graph, whatever its weight.
+     *
+     * @param vertex vertex of the same graph, or null
+     * @return true if it's a neighbor, false for null
+     */
+    public boolean isNeighbor(VertexInterface<T> vertex);
+
+    /**
+     * Returns the neighbors this vertex shares with the given vertex of the
+     * same graph, each one once.
+     *
+     * @param vertex vertex of the same graph
+     * @return common neighbors
+     */
+    public List<VertexInterface<T>> getCommonNeighbors(VertexInterface<T> vertex);
+
+    /**
+     * Returns the number of neighbors this vertex shares with the given vertex
+     * of the same graph.
+     *
+     * @param vertex vertex of the same graph
+     * @return number of common neighbors
+     */
+    public int getNumberOfCommonNeighbors(VertexInterface<T> vertex);
+
     /**
      * creates an iterator of this vertex's neighbors by following all edges that
      * begin at this vertex.
@@ -96,6 +124,24 @@ public interface VertexInterface<T> {
      */
     public Iterator<Double> getWeightIterator();
 
+    /**
+     * Returns the neighbor at the given position of this vertex's edge list, in
+     * constant time. The positions go from 0 to getNumberOfNeighbors()-1.
+     *
+     * @param index position of the edge
+     * @return Neighbor vertex
+     */
+    public VertexInterface<T> getNeighbor(int index);
+
+    /**
+     * Returns the weight of the edge at the given position of this vertex's edge
+     * list, in constant time.
+     *
+     * @param index position of the edge
+     * @return weight
+     */
+    public double getWeight(int index);
+
     /**
      * Sees whether this vertex has at least one neighbor.
      *
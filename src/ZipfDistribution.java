@@ -0,0 +1,57 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class draws ranks from 0 to n-1 with a Zipfian distribution: rank k
+ * is drawn with a probability proportional to 1/(k+1)^s, so a few ranks get
+ * most of the draws, like the few users of a network that most requests are
+ * about. The cumulative probabilities are computed once, and a draw is a
+ * binary search over them, O(log n).
+ */
+public class ZipfDistribution {
+
+    //cumulative probability of every rank, the last one is 1
+    private double[] cumulative;
+
+    /**
+     * initializes the distribution.
+     *
+     * @param n        number of ranks
+     * @param exponent skew s, 0 is uniform, about 1 for the popularity of users
+     */
+    public ZipfDistribution(int n, double exponent) {
+        if (n < 1 || exponent < 0) {
+            throw new IllegalArgumentException("n must be positive and exponent not negative");
+        }
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+        cumulative[n - 1] = 1;
+    }
+
+    /**
+     * Draws a rank.
+     *
+     * @param random random number generator
+     * @return rank, 0 is the most frequent
+     */
+    public int next(Random random) {
+        int k = Arrays.binarySearch(cumulative, random.nextDouble());
+        return k >= 0 ? k : -k - 1;
+    }
+
+    /**
+     * Returns the number of ranks.
+     *
+     * @return number of ranks
+     */
+    public int size() {
+        return cumulative.length;
+    }
+}